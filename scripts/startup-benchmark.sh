@@ -0,0 +1,83 @@
+#!/usr/bin/env sh
+# Measures time-to-ready: JVM launch until /readyz answers 200.
+#
+#   scripts/startup-benchmark.sh [runs] [java options...]
+#
+#   # plain jar
+#   scripts/startup-benchmark.sh 5 -jar target/chat-0.0.1-SNAPSHOT.jar
+#   # CDS only (after mvn -Pfast-start -Dspring-boot.aot.skip=true package and an extract + training run, see Dockerfile)
+#   scripts/startup-benchmark.sh 5 -XX:SharedArchiveFile=extracted/app.jsa -jar extracted/app.jar
+#   # CDS + AOT (after mvn -Pfast-start package; fixes the profiles and conditional beans at build time)
+#   scripts/startup-benchmark.sh 5 -XX:SharedArchiveFile=extracted/app.jsa -Dspring.aot.enabled=true -jar extracted/app.jar
+#
+# Needs the same environment as a normal start (DATASOURCE_URL, MONGO_DB_URI, ...).
+# Each run is appended to target/startup-times.csv as: timestamp,commit,options,millis
+
+set -eu
+
+RUNS=${1:-5}
+shift || true
+if [ "$#" -eq 0 ]; then
+    set -- -jar target/chat-0.0.1-SNAPSHOT.jar
+fi
+
+PORT=${PORT:-8080}
+READY_URL="http://localhost:${PORT}/readyz"
+TIMEOUT_SECONDS=${TIMEOUT_SECONDS:-120}
+RESULTS=target/startup-times.csv
+COMMIT=$(git rev-parse --short HEAD 2>/dev/null || echo unknown)
+
+mkdir -p target
+[ -f "$RESULTS" ] || echo "timestamp,commit,options,millis" > "$RESULTS"
+
+# Milliseconds since the epoch. %N is a GNU extension; BSD/macOS date prints it literally, so fall back to perl
+if date +%s%N | grep -q '^[0-9]*$'; then
+    now_millis() {
+        echo $(( $(date +%s%N) / 1000000 ))
+    }
+elif command -v perl > /dev/null 2>&1; then
+    now_millis() {
+        perl -MTime::HiRes=time -e 'printf("%d\n", time() * 1000)'
+    }
+elif command -v python3 > /dev/null 2>&1; then
+    now_millis() {
+        python3 -c 'import time; print(int(time.time() * 1000))'
+    }
+else
+    echo "needs GNU date, perl or python3 for millisecond timing" >&2
+    exit 1
+fi
+
+i=1
+total=0
+while [ "$i" -le "$RUNS" ]; do
+    start=$(now_millis)
+    java "$@" --server.port="$PORT" > "target/startup-run-$i.log" 2>&1 &
+    pid=$!
+
+    ready=""
+    while [ $(( $(now_millis) - start )) -lt $(( TIMEOUT_SECONDS * 1000 )) ]; do
+        if curl -fs -o /dev/null "$READY_URL"; then
+            ready=$(( $(now_millis) - start ))
+            break
+        fi
+        if ! kill -0 "$pid" 2>/dev/null; then
+            break
+        fi
+        sleep 0.05
+    done
+
+    kill "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+
+    if [ -z "$ready" ]; then
+        echo "run $i: not ready (see target/startup-run-$i.log)" >&2
+        exit 1
+    fi
+    echo "run $i: ready in ${ready} ms"
+    echo "$(date -u +%Y-%m-%dT%H:%M:%SZ),$COMMIT,\"$*\",$ready" >> "$RESULTS"
+    total=$(( total + ready ))
+    i=$(( i + 1 ))
+done
+
+echo "mean time-to-ready over $RUNS runs: $(( total / RUNS )) ms"
@@ -0,0 +1,164 @@
+package com.chat.benchmark;
+
+import com.chat.model.ChatMember;
+import com.chat.model.ChatMessage;
+import com.chat.model.ChatMessageDTO;
+import com.chat.model.ChatModelCreation;
+import com.chat.model.UserModel;
+import com.chat.service.ChatMembershipService;
+import com.chat.service.ChatSubscriptionRegistry;
+import com.chat.service.ChatVersionTracker;
+import com.chat.service.MessageBroadcaster;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.user.DefaultUserDestinationResolver;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.socket.messaging.DefaultSimpUserRegistry;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of one message to a group room of 10/100/1000 members, each with a subscription on this node:
+ * the real simple broker matches the subscriptions and hands one frame per member to the outbound
+ * channel, which only counts. This is all the per-member work a node does, with no I/O involved.
+ * <p>
+ * {@code delivery} compares the per-chat topic with per-user queues, where each member has a single
+ * {@code /user/queue/messages} subscription and the real user destination resolver routes every copy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupFanOutBenchmark {
+
+    private static final long GROUP_ID = 1L;
+
+    @Param({"10", "100", "1000"})
+    private int members;
+
+    @Param({"TOPIC", "USER_QUEUE"})
+    private MessageBroadcaster.DeliveryMode delivery;
+
+    private SimpleBrokerMessageHandler broker;
+    private MessageBroadcaster broadcaster;
+    private ChatMembershipService membershipService;
+    private ChatMessageDTO dto;
+    private final AtomicLong delivered = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(),
+                (message, timeout) -> delivered.incrementAndGet() > 0,
+                brokerChannel, List.of("/topic", "/queue"));
+
+        UserModel[] users = new UserModel[members];
+        ChatMember[] memberRows = new ChatMember[members];
+        for (int i = 0; i < members; i++) {
+            users[i] = StandIns.user(i + 1L, "member-" + i);
+            memberRows[i] = new ChatMember(GROUP_ID, i + 1L);
+        }
+        ChatModelCreation group = StandIns.chat(GROUP_ID, 1L, 1L);
+        group.setGroupChat(true);
+        membershipService = new ChatMembershipService(StandIns.chatRepository(group),
+                StandIns.chatMemberRepo(memberRows), StandIns.userRepo(users), Duration.ofHours(1), 100_000);
+
+        broker.setSubscriptionRegistry(new ChatSubscriptionRegistry(membershipService));
+        broker.start();
+
+        DefaultSimpUserRegistry userRegistry = new DefaultSimpUserRegistry();
+        for (int i = 0; i < members; i++) {
+            String sessionId = "session-" + i;
+
+            // The broker only delivers to sessions it saw CONNECT for
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId(sessionId);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+            SimpMessageHeaderAccessor connected = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+            connected.setSessionId(sessionId);
+            Principal principal = new UsernamePasswordAuthenticationToken(users[i].getUsername(), null);
+            userRegistry.onApplicationEvent(new SessionConnectedEvent(this,
+                    MessageBuilder.createMessage(new byte[0], connected.getMessageHeaders()), principal));
+
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId(sessionId);
+            subscribe.setSubscriptionId("sub-0");
+            // What the user destination resolver turns a SUBSCRIBE to /user/queue/messages into
+            subscribe.setDestination(delivery == MessageBroadcaster.DeliveryMode.TOPIC
+                    ? "/topic/chat/" + GROUP_ID
+                    : MessageBroadcaster.USER_QUEUE + "-user" + sessionId);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+
+        UserDestinationMessageHandler userDestinations = new UserDestinationMessageHandler(
+                new ExecutorSubscribableChannel(), brokerChannel, new DefaultUserDestinationResolver(userRegistry));
+        userDestinations.start();
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            if (destination != null && destination.startsWith("/user/")) {
+                userDestinations.handleMessage(message);
+            } else {
+                broker.handleMessage(message);
+            }
+            return true;
+        });
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(StandIns.objectMapper());
+        template.setMessageConverter(converter);
+
+        broadcaster = new MessageBroadcaster(template, false, 5, 32, delivery, membershipService,
+                new ChatVersionTracker(Duration.ofSeconds(30), 100_000));
+
+        ChatMessage entity = new ChatMessage(GROUP_ID, "alice", "Standup in five minutes", "TEXT");
+        entity.setId("66a1f0c2e4b0a1b2c3d4e5f6");
+        entity.setSeq(7L);
+        dto = ChatMessageDTO.fromEntity(entity);
+
+        delivered.set(0);
+        broadcaster.broadcastToChat(GROUP_ID, dto);
+        if (delivered.get() != members) {
+            throw new IllegalStateException("Expected one frame per member but the broker delivered "
+                    + delivered.get() + "; the benchmark would measure the wrong path");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+    }
+
+    @Benchmark
+    public void broadcastToGroup() {
+        broadcaster.broadcastToChat(GROUP_ID, dto);
+    }
+
+    @Benchmark
+    public boolean membershipCheck() {
+        return membershipService.isMember(GROUP_ID, members / 2);
+    }
+}
@@ -0,0 +1,104 @@
+package com.chat.benchmark;
+
+import com.chat.model.ChatMessage;
+import com.chat.model.ChatMessageDTO;
+import com.chat.model.EncodedMessage;
+import com.chat.service.ChatMembershipService;
+import com.chat.service.ChatVersionTracker;
+import com.chat.service.MessageBroadcaster;
+import com.chat.service.MessageEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing a message per use versus sharing the bytes encoded when it was persisted. {@code *Dto}
+ * methods are the old paths (a DTO built and written by Jackson for every broadcast and history read),
+ * {@code *Encoded} the pre-encoded ones; {@code history} is the page size. Run with {@code -prof gc}
+ * (the profile default) to compare allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageEncodingBenchmark {
+
+    private static final long CHAT_ID = 1L;
+
+    @Param({"50", "500"})
+    private int history;
+
+    private ObjectMapper objectMapper;
+    private MessageBroadcaster broadcaster;
+    private MessageEncoder encoder;
+    private ChatMessage entity;
+    private EncodedMessage encoded;
+    private List<ChatMessage> messages;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = StandIns.objectMapper();
+        ChatMembershipService membershipService = new ChatMembershipService(StandIns.chatRepository(),
+                StandIns.chatMemberRepo(), StandIns.userRepo(), Duration.ofHours(1), 100_000);
+        broadcaster = new MessageBroadcaster(StandIns.discardingTemplate(), false, 5, 32,
+                MessageBroadcaster.DeliveryMode.TOPIC, membershipService, new ChatVersionTracker(Duration.ofSeconds(30), 100_000));
+        encoder = new MessageEncoder(objectMapper, 50000);
+
+        messages = new ArrayList<>(history);
+        for (int i = 0; i < history; i++) {
+            ChatMessage message = new ChatMessage(CHAT_ID, i % 2 == 0 ? "alice" : "bob",
+                    "Message number " + i + ", are we still on for tomorrow?", "TEXT");
+            message.setId(String.format("66a1f0c2e4b0a1b2%08x", i));
+            message.setSeq(i + 1L);
+            messages.add(message);
+        }
+        entity = messages.get(history - 1);
+        encoded = encoder.encode(entity);
+        encoder.encodeAll(messages); // Warm, as after the messages were broadcast
+
+        if (!Arrays.equals(historyDto(), historyEncoded())) {
+            throw new IllegalStateException("Encoded history differs from the Jackson output");
+        }
+    }
+
+    @Benchmark
+    public void broadcastDto() {
+        broadcaster.broadcastToChat(CHAT_ID, ChatMessageDTO.fromEntity(entity));
+    }
+
+    @Benchmark
+    public void broadcastEncoded() {
+        broadcaster.broadcastToChat(CHAT_ID, encoded);
+    }
+
+    @Benchmark
+    public byte[] historyDto() throws Exception {
+        List<ChatMessageDTO> dtos = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            dtos.add(ChatMessageDTO.fromEntity(message));
+        }
+        return objectMapper.writeValueAsBytes(dtos);
+    }
+
+    @Benchmark
+    public byte[] historyEncoded() {
+        return encoder.toJsonArray(messages);
+    }
+}
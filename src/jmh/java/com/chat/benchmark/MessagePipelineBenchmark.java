@@ -0,0 +1,158 @@
+package com.chat.benchmark;
+
+import com.chat.controller.ChatController;
+import com.chat.loadtest.InMemoryMessageSegmentRepo;
+import com.chat.loadtest.InMemorySequenceBlockSource;
+import com.chat.loadtest.LoadTestTransactionManager;
+import com.chat.model.ChatMessage;
+import com.chat.model.ChatMessageDTO;
+import com.chat.monitoring.ChatHotspots;
+import com.chat.monitoring.MessagePipelineMetrics;
+import com.chat.repo.ChatMemberRepo;
+import com.chat.repo.ChatMessageRepo;
+import com.chat.repo.ChatRepository;
+import com.chat.repo.MessageSegmentRepo;
+import com.chat.repo.ReplicaRouting;
+import com.chat.repo.UserRepo;
+import com.chat.service.ChatMembershipService;
+import com.chat.service.ChatSequenceAllocator;
+import com.chat.service.ChatService;
+import com.chat.service.ChatSubscriptionRegistry;
+import com.chat.service.ChatVersionTracker;
+import com.chat.service.GeminiService;
+import com.chat.service.LinkPreviewService;
+import com.chat.service.MessageArchiveService;
+import com.chat.service.MessageBroadcaster;
+import com.chat.service.MessageChangeService;
+import com.chat.service.MessageDeduplicator;
+import com.chat.service.MessageEncoder;
+import com.chat.service.MessageHistoryService;
+import com.chat.service.UserService;
+import com.chat.service.UsernameIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the individual steps a chat message goes through, plus the whole
+ * {@link ChatController#handleAndBroadcastMessage} path with repositories and the broker stubbed out.
+ * Run with {@code -prof gc} (the profile default) to see allocation per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessagePipelineBenchmark {
+
+    private static final long CHAT_ID = 1L;
+
+    private ObjectMapper objectMapper;
+    private ChatMessage entity;
+    private ChatMessageDTO dto;
+    private ChatController chatController;
+    private Authentication authentication;
+
+    @Setup
+    public void setUp() {
+        objectMapper = StandIns.objectMapper();
+
+        entity = new ChatMessage(CHAT_ID, "alice", "Hey, are we still on for tomorrow?", "TEXT");
+        entity.setId("66a1f0c2e4b0a1b2c3d4e5f6");
+        entity.setSeq(42L);
+        dto = ChatMessageDTO.fromEntity(entity);
+
+        ChatMessageRepo chatMessageRepo = StandIns.chatMessageRepo();
+        ChatRepository chatRepository = StandIns.chatRepository(StandIns.chat(CHAT_ID, 1L, 2L));
+        UserRepo userRepo = StandIns.userRepo(StandIns.user(1L, "alice"), StandIns.user(2L, "bob"));
+        SimpMessagingTemplate messagingTemplate = StandIns.discardingTemplate();
+
+        ChatSequenceAllocator sequenceAllocator = new ChatSequenceAllocator(new InMemorySequenceBlockSource(), 100,
+                Duration.ofSeconds(1), Duration.ofSeconds(1));
+        MessagePipelineMetrics pipelineMetrics = new MessagePipelineMetrics(new SimpleMeterRegistry());
+        ChatMemberRepo chatMemberRepo = StandIns.chatMemberRepo();
+        MessageSegmentRepo segmentRepo = new InMemoryMessageSegmentRepo();
+        ChatMembershipService membershipService =
+                new ChatMembershipService(chatRepository, chatMemberRepo, userRepo, Duration.ofMinutes(1), 100_000);
+        ChatVersionTracker versionTracker = new ChatVersionTracker(Duration.ofSeconds(30), 100_000);
+        MessageEncoder messageEncoder = new MessageEncoder(objectMapper, 50000);
+        MessageBroadcaster broadcaster = new MessageBroadcaster(messagingTemplate, false, 5, 32,
+                MessageBroadcaster.DeliveryMode.TOPIC, membershipService, versionTracker);
+        ChatService chatService = new ChatService(chatRepository, userRepo, chatMessageRepo,
+                chatMemberRepo, membershipService, new ChatSubscriptionRegistry(membershipService), segmentRepo, versionTracker);
+        UserService userService = new UserService(userRepo, new BCryptPasswordEncoder(), chatRepository,
+                new TransactionTemplate(new LoadTestTransactionManager()),
+                new UsernameIndex(userRepo, Duration.ofMinutes(5), 256, 20));
+        GeminiService geminiService = new GeminiService(new RestTemplate(), chatMessageRepo, broadcaster,
+                sequenceAllocator, pipelineMetrics, messageEncoder);
+        MessageArchiveService archiveService = new MessageArchiveService(chatRepository, chatMessageRepo, segmentRepo,
+                objectMapper, versionTracker, false, Duration.ofDays(30), Duration.ofHours(1), 1000, Duration.ofDays(7), 0);
+        MessageHistoryService historyService = new MessageHistoryService(chatService, chatMessageRepo, archiveService,
+                messageEncoder, sequenceAllocator);
+
+        LinkPreviewService linkPreviewService = new LinkPreviewService(chatMessageRepo, broadcaster, sequenceAllocator,
+                false, 1, Duration.ofSeconds(3), DataSize.ofKilobytes(256), 2, Duration.ofHours(6), Duration.ofMinutes(10),
+                10000, false);
+
+        chatController = new ChatController(chatService, userService, chatMessageRepo, broadcaster,
+                geminiService, historyService, sequenceAllocator, pipelineMetrics,
+                new MessageChangeService(chatMessageRepo, chatService, sequenceAllocator, broadcaster, linkPreviewService),
+                linkPreviewService,
+                versionTracker, objectMapper, messageEncoder,
+                new ChatHotspots(true, Duration.ofMinutes(5), 5, 20, 1024, 4),
+                new MessageDeduplicator(chatMessageRepo, Duration.ofMinutes(10), 100000),
+                new ReplicaRouting(Duration.ofSeconds(5)));
+        authentication = UsernamePasswordAuthenticationToken.authenticated("alice", null, List.of());
+    }
+
+    @Benchmark
+    public ChatMessageDTO dtoFromEntity() {
+        return ChatMessageDTO.fromEntity(entity);
+    }
+
+    @Benchmark
+    public byte[] serializeDto() throws Exception {
+        return objectMapper.writeValueAsBytes(dto);
+    }
+
+    @Benchmark
+    public ChatMessage constructTextMessage() {
+        return new ChatMessage(CHAT_ID, "alice", "Hey, are we still on for tomorrow?", "TEXT");
+    }
+
+    @Benchmark
+    public ChatMessage constructFileMessage() {
+        return new ChatMessage(CHAT_ID, "alice", "https://res.cloudinary.com/demo/image/upload/sample.jpg",
+                "sample.jpg", "image/jpeg", "FILE_URL");
+    }
+
+    @Benchmark
+    public void handleAndBroadcastMessage() {
+        // Fresh payload each time: the controller may rewrite the sender on the incoming DTO
+        ChatMessageDTO incoming = new ChatMessageDTO(null, CHAT_ID, "alice", "TEXT",
+                "Hey, are we still on for tomorrow?", null, null, LocalDateTime.now(), null);
+        chatController.handleAndBroadcastMessage(CHAT_ID, incoming, authentication);
+    }
+}
@@ -0,0 +1,92 @@
+package com.chat.benchmark;
+
+import com.chat.loadtest.InMemoryChatMemberRepo;
+import com.chat.loadtest.InMemoryChatMessageRepo;
+import com.chat.loadtest.InMemoryChatRepository;
+import com.chat.loadtest.InMemoryUserRepo;
+import com.chat.model.ChatMember;
+import com.chat.model.ChatMessage;
+import com.chat.model.ChatModelCreation;
+import com.chat.model.UserModel;
+import com.chat.repo.ChatMemberRepo;
+import com.chat.repo.ChatMessageRepo;
+import com.chat.repo.ChatRepository;
+import com.chat.repo.UserRepo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+
+/**
+ * Wires the load-test in-memory repositories and a discarding broker template, so benchmarks
+ * measure our own code instead of Postgres, Mongo or network I/O.
+ */
+final class StandIns {
+
+    private StandIns() {
+    }
+
+    static ObjectMapper objectMapper() {
+        // Same builder Spring uses for the STOMP Jackson converter (registers JavaTimeModule)
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    static SimpMessagingTemplate discardingTemplate() {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> true);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper());
+        template.setMessageConverter(converter);
+        return template;
+    }
+
+    static ChatMessageRepo chatMessageRepo() {
+        // Assign ids like the real repo but keep nothing, so long runs don't fill the heap
+        return new InMemoryChatMessageRepo() {
+            @Override
+            public <S extends ChatMessage> S save(S entity) {
+                if (entity.getId() == null) {
+                    assignId(entity);
+                }
+                return entity;
+            }
+        };
+    }
+
+    static ChatRepository chatRepository(ChatModelCreation... chats) {
+        InMemoryChatRepository repository = new InMemoryChatRepository();
+        repository.saveAll(List.of(chats));
+        return repository;
+    }
+
+    static ChatMemberRepo chatMemberRepo(ChatMember... members) {
+        InMemoryChatMemberRepo repository = new InMemoryChatMemberRepo();
+        repository.saveAll(List.of(members));
+        return repository;
+    }
+
+    static UserRepo userRepo(UserModel... users) {
+        InMemoryUserRepo repository = new InMemoryUserRepo(0L);
+        repository.saveAll(List.of(users));
+        return repository;
+    }
+
+    static UserModel user(long id, String username) {
+        UserModel user = new UserModel();
+        user.setId(id);
+        user.setUsername(username);
+        user.setPassword("unused");
+        return user;
+    }
+
+    static ChatModelCreation chat(long chatId, long ownerId, long receiverId) {
+        ChatModelCreation chat = new ChatModelCreation();
+        chat.setChatId(chatId);
+        chat.setChatName("bench-" + chatId);
+        chat.setOwnerId(ownerId);
+        chat.setReceiverId(receiverId);
+        chat.setReceiverName("receiver-" + receiverId);
+        return chat;
+    }
+}
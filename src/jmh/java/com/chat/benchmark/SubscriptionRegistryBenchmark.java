@@ -0,0 +1,122 @@
+package com.chat.benchmark;
+
+import com.chat.service.ChatMembershipService;
+import com.chat.service.ChatSubscriptionRegistry;
+import com.chat.util.LongOpenHashSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.util.MultiValueMap;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscriber lookup for one chat message as the node's subscription count grows. Each chat has
+ * {@link #SUBSCRIBERS_PER_CHAT} subscribed sessions and every session is in as many chats, and messages
+ * go to chats in turn, the way busy nodes see them. The default registry's destination cache covers
+ * 1024 destinations; past that it scans every session on a miss. The chat registry's membership re-check
+ * runs against member sets held in memory, the way a warm membership cache serves them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubscriptionRegistryBenchmark {
+
+    private static final int SUBSCRIBERS_PER_CHAT = 10;
+
+    @Param({"1000", "100000", "400000"})
+    private int subscriptions;
+
+    @Param({"DEFAULT", "CHAT"})
+    private String registryType;
+
+    private SubscriptionRegistry registry;
+    private Message<?>[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        int chats = subscriptions / SUBSCRIBERS_PER_CHAT;
+        LongOpenHashSet[] members = new LongOpenHashSet[chats];
+        for (int chat = 0; chat < chats; chat++) {
+            members[chat] = new LongOpenHashSet(SUBSCRIBERS_PER_CHAT);
+            for (int k = 0; k < SUBSCRIBERS_PER_CHAT; k++) {
+                members[chat].add((chat + k) % chats);
+            }
+        }
+        registry = "CHAT".equals(registryType)
+                ? new ChatSubscriptionRegistry(warmMembership(members))
+                : new DefaultSubscriptionRegistry();
+        for (int chat = 0; chat < chats; chat++) {
+            for (int k = 0; k < SUBSCRIBERS_PER_CHAT; k++) {
+                // Session s is in chats s, s+1, ... so sessions and chats are both N/10
+                int session = (chat + k) % chats;
+                SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+                subscribe.setSessionId("session-" + session);
+                subscribe.setUser(new UsernamePasswordAuthenticationToken("user-" + session, null));
+                subscribe.setSubscriptionId("sub-" + chat);
+                subscribe.setDestination(ChatSubscriptionRegistry.CHAT_TOPIC_PREFIX + chat);
+                registry.registerSubscription(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+            }
+        }
+
+        messages = new Message<?>[chats];
+        for (int chat = 0; chat < chats; chat++) {
+            SimpMessageHeaderAccessor send = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            send.setDestination(ChatSubscriptionRegistry.CHAT_TOPIC_PREFIX + chat);
+            messages[chat] = MessageBuilder.createMessage(new byte[0], send.getMessageHeaders());
+        }
+        if (registry.findSubscriptions(messages[0]).size() != SUBSCRIBERS_PER_CHAT) {
+            throw new IllegalStateException("Registry did not return the chat's subscribers");
+        }
+    }
+
+    // User n holds session n; no repositories behind it, so only the registry's own work is timed
+    private static ChatMembershipService warmMembership(LongOpenHashSet[] members) {
+        return new ChatMembershipService(null, null, null, Duration.ofHours(1), members.length) {
+            @Override
+            public LongOpenHashSet members(Long chatId) {
+                return members[chatId.intValue()];
+            }
+
+            @Override
+            public List<String> memberUsernames(Long chatId) {
+                List<String> usernames = new ArrayList<>();
+                members[chatId.intValue()].forEach(userId -> usernames.add("user-" + userId));
+                return usernames;
+            }
+        };
+    }
+
+    @Benchmark
+    public int findSubscribers() {
+        Message<?> message = messages[next];
+        next = next + 1 == messages.length ? 0 : next + 1;
+        // Walk the result the way the broker does when it builds one frame per subscription
+        MultiValueMap<String, String> subscribers = registry.findSubscriptions(message);
+        int[] count = new int[1];
+        subscribers.forEach((sessionId, subscriptionIds) -> count[0] += subscriptionIds.size());
+        return count[0];
+    }
+}
@@ -0,0 +1,87 @@
+package com.chat.benchmark;
+
+import com.chat.loadtest.InMemoryUserRepo;
+import com.chat.service.UsernameIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Autocomplete queries against the in-memory username index as the user count grows. Prefixes are the
+ * first one to three characters of random existing names, typed in mixed case, so most queries match
+ * far more names than the result limit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UsernameIndexBenchmark {
+
+    private static final int QUERIES = 4096;
+
+    @Param({"10000", "1000000"})
+    private int users;
+
+    private UsernameIndex index;
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] names = new String[users];
+        InMemoryUserRepo repo = new InMemoryUserRepo(0L) {
+            @Override
+            public List<String> findAllUsernames() {
+                return List.of(names);
+            }
+        };
+        for (int i = 0; i < users; i++) {
+            names[i] = randomName(random) + i;
+        }
+        index = new UsernameIndex(repo, Duration.ofDays(1), 256, 20);
+        index.reload();
+
+        prefixes = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String name = names[random.nextInt(users)];
+            String prefix = name.substring(0, 1 + random.nextInt(3));
+            prefixes[i] = random.nextBoolean() ? prefix.toUpperCase() : prefix;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        index.shutdown();
+    }
+
+    @Benchmark
+    public List<String> search() {
+        return index.search(prefixes[next++ & (QUERIES - 1)], 10, Set.of());
+    }
+
+    private static String randomName(Random random) {
+        char[] chars = new char[4 + random.nextInt(8)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
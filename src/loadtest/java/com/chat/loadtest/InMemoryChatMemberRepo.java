@@ -0,0 +1,59 @@
+package com.chat.loadtest;
+
+import com.chat.model.ChatMember;
+import com.chat.repo.ChatMemberRepo;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Repository
+@Profile("loadtest")
+public class InMemoryChatMemberRepo extends InMemoryJpaRepository<ChatMember, Long> implements ChatMemberRepo {
+
+    private final AtomicLong ids = new AtomicLong();
+
+    @Override
+    protected Long getId(ChatMember entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected Long assignId(ChatMember entity) {
+        entity.setId(ids.incrementAndGet());
+        return entity.getId();
+    }
+
+    @Override
+    public List<Long> findUserIdsByChatId(Long chatId) {
+        return filter(m -> Objects.equals(m.getChatId(), chatId)).stream().map(ChatMember::getUserId).toList();
+    }
+
+    @Override
+    public List<Long> findChatIdsByUserId(Long userId) {
+        return filter(m -> Objects.equals(m.getUserId(), userId)).stream().map(ChatMember::getChatId).toList();
+    }
+
+    @Override
+    public synchronized int addIfAbsent(Long chatId, Long userId) {
+        if (!filter(m -> Objects.equals(m.getChatId(), chatId) && Objects.equals(m.getUserId(), userId)).isEmpty()) {
+            return 0;
+        }
+        save(new ChatMember(chatId, userId));
+        return 1;
+    }
+
+    @Override
+    public int deleteByChatIdAndUserId(Long chatId, Long userId) {
+        List<ChatMember> matches = filter(m -> Objects.equals(m.getChatId(), chatId) && Objects.equals(m.getUserId(), userId));
+        deleteAll(matches);
+        return matches.size();
+    }
+
+    @Override
+    public void deleteByChatId(Long chatId) {
+        deleteAll(filter(m -> Objects.equals(m.getChatId(), chatId)));
+    }
+}
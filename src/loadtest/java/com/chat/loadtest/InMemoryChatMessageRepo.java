@@ -0,0 +1,224 @@
+package com.chat.loadtest;
+
+import com.chat.model.ChatMessage;
+import com.chat.model.LinkPreview;
+import com.chat.model.MessageReaction;
+import com.chat.repo.ChatMessageRepo;
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+@Repository
+@Profile("loadtest")
+public class InMemoryChatMessageRepo extends InMemoryRepository<ChatMessage, String> implements ChatMessageRepo {
+
+    private static final Sort BY_ID = Sort.by("id");
+
+    // Mirrors the unique chat_client_message_idx; entries whose message was since removed don't count
+    private final Map<String, String> idsByClientMessageId = new ConcurrentHashMap<>();
+
+    @Override
+    protected String getId(ChatMessage entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected String assignId(ChatMessage entity) {
+        // Real ObjectIds keep the id-cursor sync queries meaningful
+        entity.setId(new ObjectId().toHexString());
+        return entity.getId();
+    }
+
+    @Override
+    public <S extends ChatMessage> S save(S entity) {
+        if (entity.getClientMessageId() == null) {
+            return super.save(entity);
+        }
+        String key = entity.getChatId() + ":" + entity.getSender() + ":" + entity.getClientMessageId();
+        String id = entity.getId() != null ? entity.getId() : assignId(entity);
+        // Stored inside compute so a concurrent save of the same key sees this one
+        String winner = idsByClientMessageId.compute(key, (k, current) -> {
+            if (current != null && !current.equals(id) && store.containsKey(current)) {
+                return current;
+            }
+            super.save(entity);
+            return id;
+        });
+        if (!winner.equals(id)) {
+            throw new DuplicateKeyException("Message already stored for client id: " + entity.getClientMessageId());
+        }
+        return entity;
+    }
+
+    @Override
+    public <S extends ChatMessage> S insert(S entity) {
+        return save(entity);
+    }
+
+    @Override
+    public <S extends ChatMessage> List<S> insert(Iterable<S> entities) {
+        return saveAll(entities);
+    }
+
+    @Override
+    public List<ChatMessage> findByChatId(Long chatId) {
+        return filter(m -> Objects.equals(m.getChatId(), chatId));
+    }
+
+    @Override
+    public List<ChatMessage> findByChatIdOrderBySeqAscTimestampAsc(Long chatId) {
+        return filter(m -> Objects.equals(m.getChatId(), chatId), Sort.by("seq", "timestamp"));
+    }
+
+    @Override
+    public List<ChatMessage> findByChatIdAndIdGreaterThanOrderByIdAsc(Long chatId, String lastSeenId, Pageable pageable) {
+        return page(filter(m -> Objects.equals(m.getChatId(), chatId) && m.getId().compareTo(lastSeenId) > 0, BY_ID), pageable);
+    }
+
+    @Override
+    public List<ChatMessage> findByChatIdAndSeqGreaterThanOrderBySeqAsc(Long chatId, Long lastSeenSeq, Pageable pageable) {
+        return page(filter(m -> Objects.equals(m.getChatId(), chatId) && m.getSeq() != null && m.getSeq() > lastSeenSeq,
+                Sort.by("seq")), pageable);
+    }
+
+    @Override
+    public List<ChatMessage> findByChatIdOrderByIdAsc(Long chatId, Pageable pageable) {
+        return page(filter(m -> Objects.equals(m.getChatId(), chatId), BY_ID), pageable);
+    }
+
+    @Override
+    public Optional<ChatMessage> findByChatIdAndSenderAndClientMessageId(Long chatId, String sender,
+                                                                         String clientMessageId) {
+        return Optional.ofNullable(idsByClientMessageId.get(chatId + ":" + sender + ":" + clientMessageId))
+                .map(store::get);
+    }
+
+    @Override
+    public void deleteByChatId(Long chatId) {
+        store.values().removeIf(m -> Objects.equals(m.getChatId(), chatId));
+    }
+
+    @Override
+    public long deleteByIdIn(Collection<String> ids) {
+        Set<String> targets = new HashSet<>(ids);
+        return removeIf(m -> targets.contains(m.getId()));
+    }
+
+    @Override
+    public List<ChatMessage> findInSeqRange(Long chatId, Long afterSeq, Long throughSeq, Pageable pageable) {
+        return page(filter(m -> Objects.equals(m.getChatId(), chatId) && m.getSeq() != null
+                && m.getSeq() > afterSeq && m.getSeq() <= throughSeq, Sort.by("seq")), pageable);
+    }
+
+    @Override
+    public long deleteByChatIdAndTimestampLessThan(Long chatId, LocalDateTime cutoff) {
+        return removeIf(m -> Objects.equals(m.getChatId(), chatId) && m.getTimestamp() != null
+                && m.getTimestamp().isBefore(cutoff));
+    }
+
+    @Override
+    public List<ChatMessage> findChangesInRange(Long chatId, Long afterChangeSeq, Long throughChangeSeq,
+                                                Long lastSeenSeq, Pageable pageable) {
+        return page(filter(m -> Objects.equals(m.getChatId(), chatId)
+                && m.getChangeSeq() != null && m.getChangeSeq() > afterChangeSeq && m.getChangeSeq() <= throughChangeSeq
+                && m.getSeq() != null && m.getSeq() <= lastSeenSeq, Sort.by("changeSeq")), pageable);
+    }
+
+    @Override
+    public long updateContent(String id, String content, LocalDateTime editedAt, Long changeSeq) {
+        return change(id, changeSeq, m -> {
+            m.setContent(content);
+            m.setEditedAt(editedAt);
+            m.setLinkPreview(null);
+            return true;
+        });
+    }
+
+    @Override
+    public long markDeleted(String id, Long changeSeq) {
+        return change(id, changeSeq, m -> {
+            m.setDeleted(true);
+            m.setContent(null);
+            m.setFileName(null);
+            m.setFileType(null);
+            m.setReactions(new ArrayList<>());
+            m.setLinkPreview(null);
+            return true;
+        });
+    }
+
+    @Override
+    public long addReaction(String id, String emoji, String user, Long changeSeq) {
+        MessageReaction reaction = new MessageReaction(emoji, user);
+        return change(id, changeSeq, m -> {
+            if (m.getReactions() == null) {
+                m.setReactions(new ArrayList<>());
+            }
+            return !m.getReactions().contains(reaction) && m.getReactions().add(reaction);
+        });
+    }
+
+    @Override
+    public long removeReaction(String id, String emoji, String user, Long changeSeq) {
+        return change(id, changeSeq, m -> m.getReactions() != null
+                && m.getReactions().remove(new MessageReaction(emoji, user)));
+    }
+
+    @Override
+    public long setLinkPreview(String id, String content, String url, String title, String description,
+                               String imageUrl, String siteName, Long changeSeq) {
+        LinkPreview preview = new LinkPreview(url, title, description, imageUrl, siteName);
+        return change(id, changeSeq, m -> {
+            if (!Objects.equals(m.getContent(), content)) {
+                return false;
+            }
+            m.setLinkPreview(preview);
+            return true;
+        });
+    }
+
+    // Applies the change atomically per message, like the single-document updates in Mongo
+    private long change(String id, Long changeSeq, Predicate<ChatMessage> apply) {
+        boolean[] changed = new boolean[1];
+        store.computeIfPresent(id, (key, message) -> {
+            if (!Boolean.TRUE.equals(message.getDeleted()) && apply.test(message)) {
+                message.setChangeSeq(message.getChangeSeq() == null ? changeSeq : Math.max(message.getChangeSeq(), changeSeq));
+                changed[0] = true;
+            }
+            return message;
+        });
+        return changed[0] ? 1 : 0;
+    }
+
+    private long removeIf(Predicate<ChatMessage> predicate) {
+        List<String> ids = filter(predicate).stream().map(ChatMessage::getId).toList();
+        ids.forEach(store::remove);
+        return ids.size();
+    }
+
+    private static List<ChatMessage> page(List<ChatMessage> sorted, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return sorted;
+        }
+        return sorted.stream()
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .collect(Collectors.toList());
+    }
+}
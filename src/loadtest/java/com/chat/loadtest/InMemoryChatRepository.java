@@ -0,0 +1,50 @@
+package com.chat.loadtest;
+
+import com.chat.model.ChatModelCreation;
+import com.chat.repo.ChatRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Repository
+@Profile("loadtest")
+public class InMemoryChatRepository extends InMemoryJpaRepository<ChatModelCreation, Long> implements ChatRepository {
+
+    private final AtomicLong ids = new AtomicLong();
+
+    @Override
+    protected Long getId(ChatModelCreation entity) {
+        return entity.getChatId();
+    }
+
+    @Override
+    protected Long assignId(ChatModelCreation entity) {
+        entity.setChatId(ids.incrementAndGet());
+        return entity.getChatId();
+    }
+
+    @Override
+    public List<ChatModelCreation> findByOwnerIdOrReceiverId(Long ownerId, Long receiverId) {
+        return filter(c -> Objects.equals(c.getOwnerId(), ownerId) || Objects.equals(c.getReceiverId(), receiverId));
+    }
+
+    @Override
+    public Optional<ChatModelCreation> findByChatId(Long chatId) {
+        return findById(chatId);
+    }
+
+    @Override
+    public void deleteByChatId(Long chatId) {
+        deleteById(chatId);
+    }
+
+    @Override
+    public Optional<ChatModelCreation> findByOwnerIdAndReceiverId(Long ownerId, Long receiverId) {
+        return filter(c -> Objects.equals(c.getOwnerId(), ownerId) && Objects.equals(c.getReceiverId(), receiverId))
+                .stream().findFirst();
+    }
+}
@@ -0,0 +1,57 @@
+package com.chat.loadtest;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+/** Adds the JPA-specific operations (flush, batch deletes, references) as plain map operations. */
+public abstract class InMemoryJpaRepository<T, ID> extends InMemoryRepository<T, ID> implements JpaRepository<T, ID> {
+
+    @Override
+    public void flush() {
+        // Nothing is buffered
+    }
+
+    @Override
+    public <S extends T> S saveAndFlush(S entity) {
+        return save(entity);
+    }
+
+    @Override
+    public <S extends T> List<S> saveAllAndFlush(Iterable<S> entities) {
+        return saveAll(entities);
+    }
+
+    @Override
+    public void deleteAllInBatch(Iterable<T> entities) {
+        deleteAll(entities);
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<ID> ids) {
+        deleteAllById(ids);
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        deleteAll();
+    }
+
+    @Override
+    @Deprecated
+    public T getOne(ID id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    @Deprecated
+    public T getById(ID id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    public T getReferenceById(ID id) {
+        return findById(id).orElseThrow(() -> new EntityNotFoundException("No entity with id " + id));
+    }
+}
@@ -0,0 +1,106 @@
+package com.chat.loadtest;
+
+import com.chat.model.MessageSegment;
+import com.chat.repo.MessageSegmentRepo;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+@Repository
+@Profile("loadtest")
+public class InMemoryMessageSegmentRepo extends InMemoryRepository<MessageSegment, String> implements MessageSegmentRepo {
+
+    private static final Sort BY_FIRST_SEQ = Sort.by("firstSeq");
+
+    @Override
+    protected String getId(MessageSegment entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected String assignId(MessageSegment entity) {
+        entity.setId(MessageSegment.idFor(entity.getChatId(), entity.getFirstSeq()));
+        return entity.getId();
+    }
+
+    @Override
+    public <S extends MessageSegment> S insert(S entity) {
+        // Mirror Mongo's insert: an existing _id is an error, not an overwrite
+        if (entity.getId() != null && store.putIfAbsent(entity.getId(), entity) != null) {
+            throw new DuplicateKeyException("Segment already exists: " + entity.getId());
+        }
+        return save(entity);
+    }
+
+    @Override
+    public <S extends MessageSegment> List<S> insert(Iterable<S> entities) {
+        List<S> inserted = new ArrayList<>();
+        entities.forEach(entity -> inserted.add(insert(entity)));
+        return inserted;
+    }
+
+    @Override
+    public List<MessageSegment> findIndexByChatId(Long chatId) {
+        return filter(s -> Objects.equals(s.getChatId(), chatId), BY_FIRST_SEQ);
+    }
+
+    @Override
+    public List<MessageSegment> findIndexByChatIdAndLastSeqGreaterThan(Long chatId, Long seq) {
+        return filter(s -> Objects.equals(s.getChatId(), chatId) && s.getLastSeq() > seq, BY_FIRST_SEQ);
+    }
+
+    @Override
+    public List<MessageSegment> findIndexByChatIdAndLastMessageIdGreaterThan(Long chatId, String messageId) {
+        return filter(s -> Objects.equals(s.getChatId(), chatId) && s.getLastMessageId().compareTo(messageId) > 0,
+                BY_FIRST_SEQ);
+    }
+
+    @Override
+    public List<MessageSegment> findLatestIndexByChatId(Long chatId, Pageable pageable) {
+        return filter(s -> Objects.equals(s.getChatId(), chatId), Sort.by(Sort.Direction.DESC, "lastSeq")).stream()
+                .limit(pageable.isPaged() ? pageable.getPageSize() : Long.MAX_VALUE)
+                .toList();
+    }
+
+    @Override
+    public List<MessageSegment> findArchivedThroughByChatIdIn(Collection<Long> chatIds) {
+        Map<Long, MessageSegment> latest = new HashMap<>();
+        for (MessageSegment segment : filter(s -> chatIds.contains(s.getChatId()))) {
+            MessageSegment summary = latest.computeIfAbsent(segment.getChatId(), chatId -> {
+                MessageSegment created = new MessageSegment();
+                created.setChatId(chatId);
+                return created;
+            });
+            if (summary.getLastSeq() == null || segment.getLastSeq() > summary.getLastSeq()) {
+                summary.setLastSeq(segment.getLastSeq());
+            }
+            if (summary.getLastMessageId() == null || segment.getLastMessageId().compareTo(summary.getLastMessageId()) > 0) {
+                summary.setLastMessageId(segment.getLastMessageId());
+            }
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    @Override
+    public long deleteByChatIdAndLastTimestampLessThan(Long chatId, LocalDateTime cutoff) {
+        List<String> expired = filter(s -> Objects.equals(s.getChatId(), chatId) && s.getLastTimestamp().isBefore(cutoff))
+                .stream().map(MessageSegment::getId).toList();
+        expired.forEach(store::remove);
+        return expired.size();
+    }
+
+    @Override
+    public void deleteByChatId(Long chatId) {
+        store.values().removeIf(s -> Objects.equals(s.getChatId(), chatId));
+    }
+}
@@ -0,0 +1,343 @@
+package com.chat.loadtest;
+
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.ListPagingAndSortingRepository;
+import org.springframework.data.repository.query.FluentQuery;
+import org.springframework.data.repository.query.ListQueryByExampleExecutor;
+import org.springframework.data.support.ExampleMatcherAccessor;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Map-backed base for the {@code loadtest} profile repositories, which the tests and benchmarks also use
+ * directly. Implements the generic CRUD/paging contract and query-by-example, so code written against the
+ * Spring Data interfaces behaves the same here as on Postgres and Mongo.
+ */
+public abstract class InMemoryRepository<T, ID> implements ListCrudRepository<T, ID>,
+        ListPagingAndSortingRepository<T, ID>, ListQueryByExampleExecutor<T> {
+
+    protected final Map<ID, T> store = new ConcurrentHashMap<>();
+
+    protected abstract ID getId(T entity);
+
+    /** Called on save for entities without an id; must set and return a new one. */
+    protected abstract ID assignId(T entity);
+
+    protected List<T> filter(Predicate<T> predicate) {
+        return store.values().stream().filter(predicate).collect(Collectors.toList());
+    }
+
+    protected List<T> filter(Predicate<T> predicate, Sort sort) {
+        List<T> matches = filter(predicate);
+        matches.sort(comparator(sort));
+        return matches;
+    }
+
+    @Override
+    public <S extends T> S save(S entity) {
+        ID id = getId(entity);
+        if (id == null) {
+            id = assignId(entity);
+        }
+        store.put(id, entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        entities.forEach(entity -> saved.add(save(entity)));
+        return saved;
+    }
+
+    @Override
+    public Optional<T> findById(ID id) {
+        return Optional.ofNullable(store.get(id));
+    }
+
+    @Override
+    public boolean existsById(ID id) {
+        return store.containsKey(id);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return new ArrayList<>(store.values());
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<ID> ids) {
+        return StreamSupport.stream(ids.spliterator(), false)
+                .map(store::get)
+                .filter(entity -> entity != null)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long count() {
+        return store.size();
+    }
+
+    @Override
+    public void deleteById(ID id) {
+        store.remove(id);
+    }
+
+    @Override
+    public void delete(T entity) {
+        store.remove(getId(entity));
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends ID> ids) {
+        ids.forEach(store::remove);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        entities.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        store.clear();
+    }
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        return filter(entity -> true, sort);
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        return page(filter(entity -> true, pageable.getSort()), pageable);
+    }
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example) {
+        return findBy(example, FluentQuery.FetchableFluentQuery::one);
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example) {
+        return matching(example, Sort.unsorted());
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+        return matching(example, sort);
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+        return page(matching(example, pageable.getSort()), pageable);
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example) {
+        return matching(example, Sort.unsorted()).size();
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example) {
+        return store.values().stream().anyMatch(entity -> matches(example, entity));
+    }
+
+    @Override
+    public <S extends T, R> R findBy(Example<S> example, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        return queryFunction.apply(new ExampleQuery<>(example, Sort.unsorted(), 0, example.getProbeType()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <S extends T> List<S> matching(Example<S> example, Sort sort) {
+        return (List<S>) filter(entity -> matches(example, entity), sort);
+    }
+
+    private static <S> Page<S> page(List<S> all, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(all);
+        }
+        int from = (int) Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        return new PageImpl<>(all.subList(from, to), pageable, all.size());
+    }
+
+    /**
+     * Matches the probe's fields against the entity the way Spring Data's stores do: null probe values are
+     * skipped unless the matcher includes nulls, strings follow the matcher's string matching and case
+     * rules, everything else must be equal.
+     */
+    private static boolean matches(Example<?> example, Object entity) {
+        if (!example.getProbeType().isInstance(entity)) {
+            return false;
+        }
+        ExampleMatcher matcher = example.getMatcher();
+        ExampleMatcherAccessor accessor = new ExampleMatcherAccessor(matcher);
+        Object probe = example.getProbe();
+        boolean[] any = {false};
+        boolean[] all = {true};
+        boolean[] compared = {false};
+        ReflectionUtils.doWithFields(example.getProbeType(), field -> {
+            String path = field.getName();
+            if (accessor.isIgnoredPath(path)) {
+                return;
+            }
+            ReflectionUtils.makeAccessible(field);
+            Object expected = accessor.getValueTransformerForPath(path)
+                    .apply(Optional.ofNullable(field.get(probe)))
+                    .orElse(null);
+            if (expected == null && accessor.getNullHandler() == ExampleMatcher.NullHandler.IGNORE) {
+                return;
+            }
+            boolean match = matches(accessor, path, expected, field.get(entity));
+            compared[0] = true;
+            any[0] |= match;
+            all[0] &= match;
+        }, field -> !Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()));
+        return !compared[0] || (matcher.isAllMatching() ? all[0] : any[0]);
+    }
+
+    private static boolean matches(ExampleMatcherAccessor accessor, String path, Object expected, Object actual) {
+        if (!(expected instanceof String pattern) || !(actual instanceof String value)) {
+            return Objects.equals(expected, actual);
+        }
+        boolean ignoreCase = accessor.isIgnoreCaseForPath(path);
+        if (ignoreCase) {
+            pattern = pattern.toLowerCase(Locale.ROOT);
+            value = value.toLowerCase(Locale.ROOT);
+        }
+        return switch (accessor.getStringMatcherForPath(path)) {
+            case DEFAULT, EXACT -> value.equals(pattern);
+            case STARTING -> value.startsWith(pattern);
+            case ENDING -> value.endsWith(pattern);
+            case CONTAINING -> value.contains(pattern);
+            case REGEX -> Pattern.compile(pattern, ignoreCase ? Pattern.CASE_INSENSITIVE : 0).matcher(value).matches();
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Comparator<T> comparator(Sort sort) {
+        Comparator<T> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            // Nulls first, matching Mongo's ascending order for missing fields
+            Comparator<T> byProperty = Comparator.comparing(
+                    entity -> (Comparable) new BeanWrapperImpl(entity).getPropertyValue(order.getProperty()),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    /**
+     * The fluent form of a query by example. Results are the stored entities themselves, so {@link #project}
+     * is only a hint and {@link #as} accepts the entity's own types; there is nothing to map other types from.
+     */
+    private final class ExampleQuery<S extends T, R> implements FluentQuery.FetchableFluentQuery<R> {
+
+        private final Example<S> example;
+        private final Sort sort;
+        private final int limit;
+        private final Class<R> resultType;
+
+        private ExampleQuery(Example<S> example, Sort sort, int limit, Class<R> resultType) {
+            this.example = example;
+            this.sort = sort;
+            this.limit = limit;
+            this.resultType = resultType;
+        }
+
+        @Override
+        public FluentQuery.FetchableFluentQuery<R> sortBy(Sort sort) {
+            return new ExampleQuery<>(example, this.sort.and(sort), limit, resultType);
+        }
+
+        @Override
+        public FluentQuery.FetchableFluentQuery<R> limit(int limit) {
+            return new ExampleQuery<>(example, sort, limit, resultType);
+        }
+
+        @Override
+        public <N> FluentQuery.FetchableFluentQuery<N> as(Class<N> resultType) {
+            if (!resultType.isAssignableFrom(example.getProbeType())) {
+                throw new UnsupportedOperationException("In-memory repositories cannot project "
+                        + example.getProbeType().getSimpleName() + " to " + resultType.getSimpleName());
+            }
+            return new ExampleQuery<>(example, sort, limit, resultType);
+        }
+
+        @Override
+        public FluentQuery.FetchableFluentQuery<R> project(Collection<String> properties) {
+            return this;
+        }
+
+        @Override
+        public R oneValue() {
+            List<R> results = limited(matching(example, sort), 2);
+            if (results.size() > 1) {
+                throw new IncorrectResultSizeDataAccessException(1, results.size());
+            }
+            return results.isEmpty() ? null : results.get(0);
+        }
+
+        @Override
+        public R firstValue() {
+            List<R> results = limited(matching(example, sort), 1);
+            return results.isEmpty() ? null : results.get(0);
+        }
+
+        @Override
+        public List<R> all() {
+            return limited(matching(example, sort), limit);
+        }
+
+        @Override
+        public Page<R> page(Pageable pageable) {
+            Sort order = pageable.getSort().isSorted() ? pageable.getSort() : sort;
+            return InMemoryRepository.page(limited(matching(example, order), limit), pageable);
+        }
+
+        @Override
+        public Stream<R> stream() {
+            return all().stream();
+        }
+
+        @Override
+        public long count() {
+            return all().size();
+        }
+
+        @Override
+        public boolean exists() {
+            return InMemoryRepository.this.exists(example);
+        }
+
+        private List<R> limited(List<S> results, int limit) {
+            List<S> kept = limit > 0 && results.size() > limit ? results.subList(0, limit) : results;
+            return kept.stream().map(resultType::cast).collect(Collectors.toList());
+        }
+    }
+}
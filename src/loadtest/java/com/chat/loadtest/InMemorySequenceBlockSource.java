@@ -0,0 +1,69 @@
+package com.chat.loadtest;
+
+import com.chat.service.SequenceBlockSource;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@Profile("loadtest")
+public class InMemorySequenceBlockSource implements SequenceBlockSource {
+
+    private static final class Counter {
+        private long next;
+        private final Map<String, Long> floors = new HashMap<>();
+    }
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public long reserve(Long chatId, int size, String node) {
+        Counter counter = counters.computeIfAbsent(chatId, id -> new Counter());
+        synchronized (counter) {
+            long first = counter.next + 1;
+            counter.next += size;
+            counter.floors.merge(node, first, Math::min);
+            return first;
+        }
+    }
+
+    @Override
+    public void publishFloors(String node, Map<Long, Long> floors, Collection<Long> released) {
+        floors.forEach((chatId, seq) -> {
+            Counter counter = counters.computeIfAbsent(chatId, id -> new Counter());
+            synchronized (counter) {
+                counter.floors.put(node, seq);
+            }
+        });
+        for (Long chatId : released) {
+            Counter counter = counters.get(chatId);
+            if (counter != null) {
+                synchronized (counter) {
+                    counter.floors.remove(node);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Map<Long, Long> watermarks(Collection<Long> chatIds) {
+        Map<Long, Long> watermarks = new HashMap<>();
+        for (Long chatId : chatIds) {
+            Counter counter = counters.get(chatId);
+            if (counter != null) {
+                synchronized (counter) {
+                    long watermark = counter.next;
+                    for (long floor : counter.floors.values()) {
+                        watermark = Math.min(watermark, floor - 1);
+                    }
+                    watermarks.put(chatId, watermark);
+                }
+            }
+        }
+        return watermarks;
+    }
+}
@@ -0,0 +1,78 @@
+package com.chat.loadtest;
+
+import com.chat.model.UserModel;
+import com.chat.repo.UserRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Repository
+@Profile("loadtest")
+public class InMemoryUserRepo extends InMemoryJpaRepository<UserModel, Long> implements UserRepo {
+
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<String, UserModel> byUsername = new ConcurrentHashMap<>();
+
+    public InMemoryUserRepo(@Value("${ai.user.id}") Long aiUserId) {
+        // Same seed row data.sql inserts into Postgres
+        UserModel ai = new UserModel();
+        ai.setId(aiUserId);
+        ai.setUsername("GeminiAI");
+        ai.setPassword("$2a$10$XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX");
+        save(ai);
+    }
+
+    @Override
+    protected Long getId(UserModel entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected Long assignId(UserModel entity) {
+        entity.setId(ids.incrementAndGet());
+        return entity.getId();
+    }
+
+    @Override
+    public <S extends UserModel> S save(S entity) {
+        // Mirror the unique constraint on users.username
+        UserModel existing = byUsername.putIfAbsent(entity.getUsername(), entity);
+        if (existing != null && existing != entity) {
+            if (entity.getId() == null || !entity.getId().equals(existing.getId())) {
+                throw new DuplicateKeyException("Username already exists: " + entity.getUsername());
+            }
+            byUsername.put(entity.getUsername(), entity);
+        }
+        return super.save(entity);
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        findById(id).ifPresent(user -> byUsername.remove(user.getUsername()));
+        super.deleteById(id);
+    }
+
+    @Override
+    public Optional<UserModel> findByUsername(String username) {
+        return Optional.ofNullable(byUsername.get(username));
+    }
+
+    @Override
+    public List<UserModel> findByUsernameIn(Collection<String> usernames) {
+        return usernames.stream().distinct().map(byUsername::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public List<String> findAllUsernames() {
+        return List.copyOf(byUsername.keySet());
+    }
+}
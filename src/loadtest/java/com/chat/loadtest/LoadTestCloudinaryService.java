@@ -0,0 +1,39 @@
+package com.chat.loadtest;
+
+import com.chat.service.CloudinaryService;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/** Accepts uploads without sending them anywhere and returns a plausible Cloudinary result. */
+@Service
+@Primary
+@Profile("loadtest")
+public class LoadTestCloudinaryService extends CloudinaryService {
+
+    @Override
+    public Map<String, Object> uploadFile(MultipartFile file, String originalFilename) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("File to upload cannot be null or empty.");
+        }
+        String publicId = "chat_uploads/" + UUID.randomUUID();
+        return Map.of(
+                "secure_url", "https://res.cloudinary.com/loadtest/raw/upload/" + publicId,
+                "public_id", publicId,
+                "resource_type", "raw",
+                "original_filename", originalFilename != null ? originalFilename : "upload",
+                "format", "",
+                "bytes", file.getSize()
+        );
+    }
+
+    @Override
+    public void deleteFile(String publicId, String resourceType) {
+        // Nothing was stored
+    }
+}
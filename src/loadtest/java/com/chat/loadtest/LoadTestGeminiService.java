@@ -0,0 +1,66 @@
+package com.chat.loadtest;
+
+import com.chat.model.ChatMessage;
+import com.chat.monitoring.MessagePipelineMetrics;
+import com.chat.repo.ChatMessageRepo;
+import com.chat.service.ChatSequenceAllocator;
+import com.chat.service.GeminiService;
+import com.chat.service.MessageBroadcaster;
+import com.chat.service.MessageEncoder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Replies with a canned answer after a fixed delay instead of calling the Gemini API,
+ * so AI chats cost the same server-side work as in production minus the upstream call.
+ */
+@Service
+@Primary
+@Profile("loadtest")
+public class LoadTestGeminiService extends GeminiService {
+
+    private final ChatMessageRepo chatMessageRepo;
+    private final MessageBroadcaster messageBroadcaster;
+    private final ChatSequenceAllocator sequenceAllocator;
+    private final MessageEncoder messageEncoder;
+
+    @Value("${loadtest.gemini.delay-ms:200}")
+    private long replyDelayMs;
+
+    @Autowired
+    public LoadTestGeminiService(RestTemplate restTemplate, ChatMessageRepo chatMessageRepo,
+                                 MessageBroadcaster messageBroadcaster, ChatSequenceAllocator sequenceAllocator,
+                                 MessagePipelineMetrics pipelineMetrics, MessageEncoder messageEncoder) {
+        super(restTemplate, chatMessageRepo, messageBroadcaster, sequenceAllocator, pipelineMetrics, messageEncoder);
+        this.chatMessageRepo = chatMessageRepo;
+        this.messageBroadcaster = messageBroadcaster;
+        this.sequenceAllocator = sequenceAllocator;
+        this.messageEncoder = messageEncoder;
+    }
+
+    @Async
+    @Override
+    public void generateResponseAndBroadcast(Long chatId, String userMessage) {
+        try {
+            Thread.sleep(replyDelayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        ChatMessage aiMessage = new ChatMessage(chatId, "GeminiAI", "Load-test reply to: " + userMessage, "TEXT");
+        long seq = sequenceAllocator.next(chatId);
+        aiMessage.setSeq(seq);
+        ChatMessage savedAiMessage;
+        try {
+            savedAiMessage = chatMessageRepo.save(aiMessage);
+        } finally {
+            sequenceAllocator.finished(chatId, seq);
+        }
+        messageBroadcaster.broadcastToChat(chatId, messageEncoder.encode(savedAiMessage));
+    }
+}
@@ -0,0 +1,23 @@
+package com.chat.loadtest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.session.MapSessionRepository;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Configuration
+@Profile("loadtest")
+public class LoadTestSessionConfig {
+
+    // No datasource under loadtest; sessions stay in this JVM
+    @Bean
+    public MapSessionRepository sessionRepository(@Value("${server.servlet.session.timeout:30m}") Duration timeout) {
+        MapSessionRepository repository = new MapSessionRepository(new ConcurrentHashMap<>());
+        repository.setDefaultMaxInactiveInterval(timeout);
+        return repository;
+    }
+}
@@ -0,0 +1,291 @@
+package com.chat.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.converter.SimpleMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Drives N simulated users across M two-party chats against a running node's {@code /ws-chat}
+ * endpoint and reports end-to-end delivery latency percentiles and sustained throughput.
+ * <p>
+ * Start the server with {@code mvn -Ploadtest spring-boot:test-run}, then run
+ * {@code mvn -Ploadtest test-compile exec:exec -Dload.args="users=200 chats=400 rate=2 duration=60"}.
+ * Latency is measured from send to receipt by each subscribed participant (sender's own echo included),
+ * using the send timestamp carried in the message body.
+ * <p>
+ * Pass {@code delivery=user} when the server runs with {@code chat.delivery.mode=user-queue}: each session
+ * then subscribes once to {@code /user/queue/messages} instead of once per chat.
+ */
+public class StompLoadDriver {
+
+    private static final String MARKER = "lt:";
+
+    private final String baseUrl;
+    private final int users;
+    private final int chats;
+    private final double ratePerUser;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final boolean userQueue;
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private volatile boolean recording;
+
+    public StompLoadDriver(Map<String, String> options) {
+        this.baseUrl = options.getOrDefault("url", "http://localhost:8080");
+        this.users = Integer.parseInt(options.getOrDefault("users", "50"));
+        this.chats = Integer.parseInt(options.getOrDefault("chats", "100"));
+        this.ratePerUser = Double.parseDouble(options.getOrDefault("rate", "1"));
+        this.warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        this.durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        this.userQueue = "user".equals(options.getOrDefault("delivery", "topic"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String option = arg.replaceFirst("^--", "");
+            if (option.contains("=")) {
+                options.put(option.substring(0, option.indexOf('=')), option.substring(option.indexOf('=') + 1));
+            }
+        }
+        new StompLoadDriver(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        System.out.printf("Preparing %d users and %d chats against %s%n", users, chats, baseUrl);
+
+        List<String> usernames = new ArrayList<>();
+        Map<String, String> cookies = new HashMap<>();
+        for (int i = 0; i < users; i++) {
+            String username = "lt-" + runId + "-" + i;
+            postJson("/api/auth/register", Map.of("username", username, "password", "secret"), null);
+            cookies.put(username, login(username));
+            usernames.add(username);
+        }
+
+        Map<String, List<Long>> chatsByUser = createChats(usernames, cookies);
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new SimpleMessageConverter()); // Raw bytes both ways, JSON handled here
+        String wsUrl = baseUrl.replaceFirst("^http", "ws") + "/ws-chat/websocket";
+
+        Map<String, StompSession> sessions = new HashMap<>();
+        for (String username : usernames) {
+            WebSocketHttpHeaders handshakeHeaders = new WebSocketHttpHeaders();
+            handshakeHeaders.add("Cookie", cookies.get(username));
+            StompSession session = stompClient
+                    .connectAsync(wsUrl, handshakeHeaders, new StompSessionHandlerAdapter() { })
+                    .get(10, TimeUnit.SECONDS);
+            if (userQueue) {
+                session.subscribe("/user/queue/messages", new DeliveryHandler());
+            } else {
+                for (Long chatId : chatsByUser.getOrDefault(username, List.of())) {
+                    session.subscribe("/topic/chat/" + chatId, new DeliveryHandler());
+                }
+            }
+            sessions.put(username, session);
+        }
+        System.out.printf("Connected %d STOMP sessions; warming up for %ds%n", sessions.size(), warmupSeconds);
+
+        ScheduledExecutorService senders = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        long periodMicros = (long) (1_000_000 / ratePerUser);
+        for (String username : usernames) {
+            List<Long> myChats = chatsByUser.getOrDefault(username, List.of());
+            if (myChats.isEmpty()) {
+                continue;
+            }
+            StompSession session = sessions.get(username);
+            long initialDelay = ThreadLocalRandom.current().nextLong(periodMicros);
+            senders.scheduleAtFixedRate(() -> send(session, username, myChats), initialDelay, periodMicros, TimeUnit.MICROSECONDS);
+        }
+
+        Thread.sleep(warmupSeconds * 1000L);
+        recording = true;
+        long start = System.nanoTime();
+        Thread.sleep(durationSeconds * 1000L);
+        recording = false;
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        senders.shutdownNow();
+
+        System.out.printf("%nSent:       %,d messages (%.1f msg/s)%n", sent.get(), sent.get() / elapsedSeconds);
+        System.out.printf("Delivered:  %,d frames   (%.1f msg/s)%n", delivered.get(), delivered.get() / elapsedSeconds);
+        System.out.printf("Latency ms: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                histogram.percentileMillis(50), histogram.percentileMillis(90), histogram.percentileMillis(99),
+                histogram.percentileMillis(99.9), histogram.maxMillis());
+
+        sessions.values().forEach(StompSession::disconnect);
+        stompClient.stop();
+    }
+
+    private void send(StompSession session, String username, List<Long> myChats) {
+        Long chatId = myChats.get(ThreadLocalRandom.current().nextInt(myChats.size()));
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(Map.of(
+                    "chatId", chatId,
+                    "sender", username,
+                    "type", "TEXT",
+                    "content", MARKER + System.nanoTime()));
+            StompHeaders headers = new StompHeaders();
+            headers.setDestination("/app/chat/" + chatId + "/send");
+            headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            session.send(headers, payload);
+            if (recording) {
+                sent.incrementAndGet();
+            }
+        } catch (Exception e) {
+            System.err.println("Send failed for " + username + ": " + e.getMessage());
+        }
+    }
+
+    private Map<String, List<Long>> createChats(List<String> usernames, Map<String, String> cookies) throws Exception {
+        Map<String, List<Long>> chatsByUser = new HashMap<>();
+        Set<String> pairs = new HashSet<>();
+        int created = 0;
+        // Walk distinct user pairs (i, i+k) until we have enough chats
+        for (int k = 1; k < users && created < chats; k++) {
+            for (int i = 0; i < users && created < chats; i++) {
+                int j = (i + k) % users;
+                String pair = Math.min(i, j) + ":" + Math.max(i, j);
+                if (!pairs.add(pair)) {
+                    continue;
+                }
+                String owner = usernames.get(i);
+                String receiver = usernames.get(j);
+                HttpResponse<String> response = postJson("/api/chat/create",
+                        Map.of("chatName", owner + "-" + receiver, "receiverName", receiver), cookies.get(owner));
+                if (response.statusCode() != 200) {
+                    continue;
+                }
+                Long chatId = objectMapper.readTree(response.body()).get("chatId").asLong();
+                chatsByUser.computeIfAbsent(owner, u -> new ArrayList<>()).add(chatId);
+                chatsByUser.computeIfAbsent(receiver, u -> new ArrayList<>()).add(chatId);
+                created++;
+            }
+        }
+        if (created < chats) {
+            System.out.printf("Only %d distinct chats are possible with %d users%n", created, users);
+        }
+        return chatsByUser;
+    }
+
+    private String login(String username) throws Exception {
+        HttpResponse<String> response = postJson("/api/auth/login", Map.of("username", username, "password", "secret"), null);
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed for " + username + ": " + response.body());
+        }
+        return response.headers().allValues("Set-Cookie").stream()
+                .map(cookie -> cookie.split(";", 2)[0])
+                .filter(cookie -> cookie.startsWith("JSESSIONID=") || cookie.startsWith("SESSION="))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No session cookie returned for " + username));
+    }
+
+    private HttpResponse<String> postJson(String path, Object body, String cookie) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        if (cookie != null) {
+            request.header("Cookie", cookie);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private final class DeliveryHandler implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            long now = System.nanoTime();
+            try {
+                JsonNode frame = objectMapper.readTree((byte[]) payload);
+                // Coalesced broadcasts arrive as arrays of messages
+                if (frame.isArray()) {
+                    frame.forEach(message -> record(message, now));
+                } else {
+                    record(frame, now);
+                }
+            } catch (Exception e) {
+                System.err.println("Unreadable frame: " + e.getMessage());
+            }
+        }
+
+        private void record(JsonNode message, long receivedAt) {
+            String content = message.path("content").asText("");
+            if (!recording || !content.startsWith(MARKER)) {
+                return;
+            }
+            delivered.incrementAndGet();
+            histogram.record(receivedAt - Long.parseLong(content.substring(MARKER.length())));
+        }
+    }
+
+    /** Fixed 0.1 ms buckets up to 60 s; plenty of resolution for end-to-end chat latency. */
+    private static final class LatencyHistogram {
+        private static final long BUCKET_NANOS = 100_000;
+        private final AtomicLongArray buckets = new AtomicLongArray(600_000);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            int bucket = (int) Math.min(buckets.length() - 1, Math.max(0, nanos / BUCKET_NANOS));
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            max.accumulateAndGet(nanos, Math::max);
+        }
+
+        double percentileMillis(double percentile) {
+            long target = (long) Math.ceil(count.get() * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= target && target > 0) {
+                    return (i + 1) * BUCKET_NANOS / 1e6;
+                }
+            }
+            return 0;
+        }
+
+        double maxMillis() {
+            return max.get() / 1e6;
+        }
+    }
+}
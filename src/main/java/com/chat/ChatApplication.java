@@ -1,13 +1,10 @@
 package com.chat;
 
-import com.chat.repo.ChatMessageRepo;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 import org.springframework.scheduling.annotation.EnableAsync;
 
 @SpringBootApplication
-@EnableMongoRepositories(basePackageClasses = ChatMessageRepo.class)
 @EnableAsync
 public class ChatApplication {
 
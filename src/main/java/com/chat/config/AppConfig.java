@@ -1,5 +1,6 @@
 package com.chat.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -7,8 +8,12 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 @Configuration
 public class AppConfig {
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(@Value("${chat.auth.hashing.threads:0}") int threads,
+                                                 @Value("${chat.auth.hashing.queue-capacity:64}") int queueCapacity,
+                                                 @Value("${chat.auth.hashing.timeout-ms:5000}") long timeoutMs) {
+        // 0 = half the cores, leaving the rest for message handling
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedBCryptPasswordEncoder(poolSize, queueCapacity, timeoutMs);
     }
 
-}
\ No newline at end of file
+}
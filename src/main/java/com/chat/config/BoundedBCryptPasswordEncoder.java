@@ -0,0 +1,87 @@
+package com.chat.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BCrypt, but every hash and verification runs on a small fixed pool with a bounded queue.
+ * A login or registration burst can then use at most {@code threads} cores; callers beyond the
+ * queue capacity, or whose work doesn't start in time, get a {@link PasswordHashingBusyException}
+ * instead of piling onto the CPU that chat traffic needs.
+ */
+public class BoundedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+
+    public BoundedBCryptPasswordEncoder(int threads, int queueCapacity, long timeoutMs) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "password-hashing-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return runBounded(() -> super.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return runBounded(() -> super.matches(rawPassword, encodedPassword));
+    }
+
+    public int queuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T runBounded(Callable<T> work) {
+        Future<T> future;
+        try {
+            future = executor.submit(work);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingBusyException("Password hashing queue is full");
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new PasswordHashingBusyException("Password hashing did not complete in " + timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** The hashing pool is saturated; the caller should answer 503 and let the client retry. */
+    public static class PasswordHashingBusyException extends RuntimeException {
+        public PasswordHashingBusyException(String message) {
+            super(message);
+        }
+    }
+}
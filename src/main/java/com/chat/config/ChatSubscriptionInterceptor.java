@@ -0,0 +1,61 @@
+package com.chat.config;
+
+import com.chat.service.ChatService;
+import com.chat.service.ChatSubscriptionRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * Authorizes STOMP SUBSCRIBE frames before they reach the broker. A chat topic may only be subscribed to
+ * as an exact {@code /topic/chat/{chatId}} by a member of that chat; the check goes through the cached
+ * membership sets, so it costs no query once warm. Raw {@code /queue/...} destinations are refused too:
+ * user queues must be reached through {@code /user/queue/...}, which binds them to the caller's session.
+ * A refused frame makes the broker answer with a STOMP ERROR.
+ */
+@Component
+public class ChatSubscriptionInterceptor implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatSubscriptionInterceptor.class);
+
+    private final ChatService chatService;
+
+    @Autowired
+    public ChatSubscriptionInterceptor(ChatService chatService) {
+        this.chatService = chatService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.SUBSCRIBE) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) {
+            return message;
+        }
+        if (destination.startsWith("/queue/")) {
+            throw new AccessDeniedException("Subscribe to user queues through /user" + destination);
+        }
+        if (!destination.startsWith(ChatSubscriptionRegistry.CHAT_TOPIC_PREFIX)) {
+            return message;
+        }
+
+        Long chatId = ChatSubscriptionRegistry.chatIdOf(destination);
+        Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+        if (chatId == null || user == null || !chatService.isUserInChat(user.getName(), chatId)) {
+            log.warn("SUBSCRIBE denied: user {} to {}", user != null ? user.getName() : "<anonymous>", destination);
+            throw new AccessDeniedException("Not authorized to subscribe to " + destination);
+        }
+        return message;
+    }
+}
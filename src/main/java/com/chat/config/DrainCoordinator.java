@@ -0,0 +1,215 @@
+package com.chat.config;
+
+import com.chat.service.LinkPreviewService;
+import com.chat.service.MessageBroadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes this node out of rotation before it stops, so a rolling deploy loses no connections or work.
+ * <p>
+ * Runs when the context starts closing (SIGTERM), before any lifecycle bean stops, or earlier from a preStop
+ * hook through {@code POST /actuator/drain} on the loopback management port:
+ * <ol>
+ *   <li>readiness goes to REFUSING_TRAFFIC and {@code /api/health} answers 503, so the load balancer stops
+ *       routing here; new WebSocket handshakes get 503 with Retry-After;</li>
+ *   <li>every connected user gets a {@code RECONNECT} frame on {@code /user/queue/control} with a random delay
+ *       within {@code chat.drain.reconnect-spread}, and their sessions are closed with 1012 (service restart)
+ *       at that time, so the reconnects land on the other nodes spread out instead of as one wave;</li>
+ *   <li>coalesced broadcasts are flushed, and @Async AI replies, link previews and queued outbound frames are
+ *       given until {@code chat.drain.timeout} to finish.</li>
+ * </ol>
+ * The pod's termination grace period must exceed the drain timeout plus the web server's own graceful
+ * shutdown phase.
+ */
+@Component
+public class DrainCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(DrainCoordinator.class);
+
+    public static final String CONTROL_QUEUE = "/queue/control";
+
+    private final ApplicationEventPublisher publisher;
+    private final WebSocketConnectionGuard connectionGuard;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageBroadcaster messageBroadcaster;
+    private final LinkPreviewService linkPreviewService;
+    private final ObjectProvider<Executor> asyncExecutor;
+    private final Executor outboundExecutor;
+    private final boolean enabled;
+    private final Duration timeout;
+    private final Duration reconnectSpread;
+
+    private volatile boolean draining;
+    private volatile Map<String, Object> lastResult;
+
+    @Autowired
+    public DrainCoordinator(ApplicationEventPublisher publisher,
+                            WebSocketConnectionGuard connectionGuard,
+                            SimpMessagingTemplate messagingTemplate,
+                            MessageBroadcaster messageBroadcaster,
+                            LinkPreviewService linkPreviewService,
+                            @Qualifier("applicationTaskExecutor") ObjectProvider<Executor> asyncExecutor,
+                            @Qualifier("clientOutboundChannelExecutor") Executor outboundExecutor,
+                            @Value("${chat.drain.enabled:true}") boolean enabled,
+                            @Value("${chat.drain.timeout:30s}") Duration timeout,
+                            @Value("${chat.drain.reconnect-spread:10s}") Duration reconnectSpread) {
+        this.publisher = publisher;
+        this.connectionGuard = connectionGuard;
+        this.messagingTemplate = messagingTemplate;
+        this.messageBroadcaster = messageBroadcaster;
+        this.linkPreviewService = linkPreviewService;
+        this.asyncExecutor = asyncExecutor;
+        this.outboundExecutor = outboundExecutor;
+        this.enabled = enabled;
+        this.timeout = timeout;
+        this.reconnectSpread = reconnectSpread.compareTo(timeout) < 0 ? reconnectSpread : timeout;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void onContextClosed() {
+        if (enabled) {
+            drain();
+        }
+    }
+
+    /**
+     * Drains this node and blocks until it is idle or the timeout passes. Later calls return the first
+     * call's result straight away.
+     */
+    public synchronized Map<String, Object> drain() {
+        if (draining) {
+            return lastResult;
+        }
+        draining = true;
+        long started = System.nanoTime();
+        long deadline = started + timeout.toNanos();
+        publisher.publishEvent(new AvailabilityChangeEvent<>(this, ReadinessState.REFUSING_TRAFFIC));
+        connectionGuard.startDraining();
+
+        List<WebSocketSession> sessions = connectionGuard.openSessions();
+        log.info("Draining: {} WebSocket sessions, reconnects spread over {}s", sessions.size(),
+                reconnectSpread.toSeconds());
+        ScheduledExecutorService closer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "drain-closer");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            scheduleReconnects(sessions, closer);
+            messageBroadcaster.flushPending();
+            while (!idle() && System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            closer.shutdownNow();
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>(remaining());
+        boolean clean = idle();
+        result.put("idle", clean);
+        result.put("tookMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        if (clean) {
+            log.info("Drain finished in {} ms", result.get("tookMs"));
+        } else {
+            // No shared queue to hand these to: whatever is left is cut off when the executors stop
+            log.warn("Drain timed out after {}s with work left: {}", timeout.toSeconds(), remaining());
+        }
+        lastResult = result;
+        return result;
+    }
+
+    // One delay per user, so a user's tabs reconnect together and the users are spread over the window
+    private void scheduleReconnects(List<WebSocketSession> sessions, ScheduledExecutorService closer) {
+        Map<String, Long> delays = new HashMap<>();
+        long spreadMs = Math.max(1, reconnectSpread.toMillis());
+        for (WebSocketSession session : sessions) {
+            Principal principal = session.getPrincipal();
+            String user = principal != null ? principal.getName() : null;
+            long delay = user != null
+                    ? delays.computeIfAbsent(user, u -> ThreadLocalRandom.current().nextLong(spreadMs))
+                    : ThreadLocalRandom.current().nextLong(spreadMs);
+            closer.schedule(() -> close(session), delay, TimeUnit.MILLISECONDS);
+        }
+        delays.forEach((user, delay) -> {
+            try {
+                messagingTemplate.convertAndSendToUser(user, CONTROL_QUEUE,
+                        Map.of("type", "RECONNECT", "reconnectInMs", delay));
+            } catch (Exception e) {
+                log.debug("Could not send reconnect notice to {}: {}", user, e.getMessage());
+            }
+        });
+    }
+
+    private void close(WebSocketSession session) {
+        try {
+            if (session.isOpen()) {
+                session.close(CloseStatus.SERVICE_RESTARTED);
+            }
+        } catch (IOException e) {
+            log.debug("Closing session {} while draining failed: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private boolean idle() {
+        for (Object count : remaining().values()) {
+            if (((Number) count).intValue() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<String, Object> remaining() {
+        Map<String, Object> remaining = new LinkedHashMap<>();
+        remaining.put("sessions", connectionGuard.openConnections());
+        remaining.put("asyncTasks", pending(asyncExecutor.getIfAvailable()));
+        remaining.put("linkPreviews", linkPreviewService.pendingCount());
+        remaining.put("coalescedBroadcasts", messageBroadcaster.pendingCount());
+        remaining.put("outboundFrames", pending(outboundExecutor));
+        return remaining;
+    }
+
+    private static int pending(Executor executor) {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            return pool.getActiveCount() + pool.getThreadPoolExecutor().getQueue().size();
+        }
+        return 0;
+    }
+}
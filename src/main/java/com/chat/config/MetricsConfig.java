@@ -0,0 +1,49 @@
+package com.chat.config;
+
+import com.chat.service.MessageBroadcaster;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder webSocketMeters(WebSocketMessageBrokerStats brokerStats,
+                                       @Qualifier("clientInboundChannelExecutor") Executor inboundExecutor,
+                                       @Qualifier("clientOutboundChannelExecutor") Executor outboundExecutor,
+                                       @Qualifier("brokerChannelExecutor") Executor brokerExecutor,
+                                       MessageBroadcaster messageBroadcaster) {
+        return registry -> {
+            Gauge.builder("chat.stomp.sessions.active", brokerStats,
+                            stats -> stats.getWebSocketSessionStats() != null
+                                    ? stats.getWebSocketSessionStats().getWebSocketSessions() : 0)
+                    .description("Open WebSocket/SockJS sessions on this node")
+                    .register(registry);
+
+            Map<String, Executor> channels = Map.of(
+                    "inbound", inboundExecutor,
+                    "outbound", outboundExecutor,
+                    "broker", brokerExecutor);
+            channels.forEach((channel, executor) -> {
+                if (executor instanceof ThreadPoolTaskExecutor pool) {
+                    Gauge.builder("chat.channel.queue.depth", pool, p -> p.getThreadPoolExecutor().getQueue().size())
+                            .description("Messages waiting in a STOMP channel executor queue")
+                            .tag("channel", channel)
+                            .register(registry);
+                }
+            });
+
+            Gauge.builder("chat.broadcast.pending", messageBroadcaster, MessageBroadcaster::pendingCount)
+                    .description("Payloads held back by broadcast coalescing")
+                    .register(registry);
+        };
+    }
+}
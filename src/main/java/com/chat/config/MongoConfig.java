@@ -0,0 +1,33 @@
+package com.chat.config;
+
+import com.chat.repo.ChatMessageRepo;
+import com.chat.repo.ReplicaAwareMongoTemplate;
+import com.chat.repo.ReplicaRouting;
+import com.mongodb.ReadPreference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+
+@Configuration
+@Profile("!loadtest") // The loadtest profile supplies in-memory repositories instead
+@EnableMongoRepositories(basePackageClasses = ChatMessageRepo.class)
+public class MongoConfig {
+
+    // Message queries may be served by secondaries (see ReplicaRouting); "primary" keeps every read on the primary
+    @Bean
+    public MongoTemplate mongoTemplate(MongoDatabaseFactory databaseFactory, MongoConverter converter,
+                                       ReplicaRouting replicaRouting,
+                                       @Value("${chat.replicas.mongodb.messages-read-preference:primary}") String readPreference) {
+        ReadPreference replicaReadPreference = ReadPreference.valueOf(readPreference);
+        if (replicaReadPreference.equals(ReadPreference.primary())) {
+            return new MongoTemplate(databaseFactory, converter);
+        }
+        return new ReplicaAwareMongoTemplate(databaseFactory, converter, "messages", replicaReadPreference,
+                replicaRouting);
+    }
+}
@@ -0,0 +1,97 @@
+package com.chat.config;
+
+import com.chat.repo.ReplicaRouting;
+import com.chat.repo.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.Set;
+
+/**
+ * Postgres read replica and read-your-writes bookkeeping.
+ * <p>
+ * With {@code chat.replicas.datasource.url} set, the application's DataSource becomes a
+ * {@link ReplicaRoutingDataSource} over two Hikari pools, {@code spring.datasource.*} (primary) and
+ * {@code chat.replicas.datasource.*} (replica, credentials default to the primary's); without it Boot's single DataSource is used as before. Every
+ * successful state-changing request marks its user as a recent writer, so their reads stay on the primaries
+ * for the read-your-writes window.
+ */
+@Configuration
+public class ReadReplicaConfig implements WebMvcConfigurer {
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final ReplicaRouting replicaRouting;
+
+    public ReadReplicaConfig(ReplicaRouting replicaRouting) {
+        this.replicaRouting = replicaRouting;
+    }
+
+    @Bean
+    @Profile("!loadtest")
+    @ConditionalOnProperty("chat.replicas.datasource.url")
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @Profile("!loadtest")
+    @ConditionalOnProperty("chat.replicas.datasource.url")
+    @ConfigurationProperties("chat.replicas.datasource.hikari")
+    public HikariDataSource replicaDataSource(
+            @Value("${chat.replicas.datasource.url}") String url,
+            @Value("${chat.replicas.datasource.username:${spring.datasource.username:}}") String username,
+            @Value("${chat.replicas.datasource.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url).username(username).password(password).build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    @Profile("!loadtest")
+    @ConditionalOnProperty("chat.replicas.datasource.url")
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica) {
+        return ReplicaRoutingDataSource.lazy(primary, replica, replicaRouting);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                if (ex != null || response.getStatus() >= 400 || SAFE_METHODS.contains(request.getMethod())) {
+                    return;
+                }
+                Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+                if (authentication != null && authentication.isAuthenticated()) {
+                    replicaRouting.wrote(authentication.getName());
+                }
+            }
+        });
+    }
+}
@@ -9,6 +9,8 @@ import org.springframework.http.HttpHeaders; // Import HttpHeaders
 import org.springframework.http.HttpMethod; // Import HttpMethod
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -17,11 +19,14 @@ import org.springframework.security.config.http.SessionCreationPolicy; // Import
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.logout.HttpStatusReturningLogoutSuccessHandler;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -72,7 +77,10 @@ public class SecurityConfig {
                         // Public endpoints: login, register, session check, WS handshake
                         .requestMatchers("/api/auth/login", "/api/auth/register", "/api/auth/session","/api/health").permitAll()
                         .requestMatchers("/ws-chat/**").permitAll() // Permit WebSocket handshake/upgrades
-                        .requestMatchers("/actuator/health/**").permitAll()
+                        .requestMatchers("/livez", "/readyz", "/actuator/health/**").permitAll() // Probes
+                        // Metrics, on-demand JFR recordings, hotspot reports (user names, chat ids) and drain: only from the node itself
+                        // (scrape agent, exec / port-forward, preStop), which is all the loopback-bound management port accepts
+                        .requestMatchers("/actuator/**").access(onLoopbackSocket())
                         // Secured endpoints: everything else requiring authentication
                         .requestMatchers("/api/chat/**", "/api/files/**").authenticated() // Simplified files path
                         .anyRequest().authenticated() // Default deny any other request unless authenticated
@@ -90,6 +98,20 @@ public class SecurityConfig {
     }
 
 
+    // Decided on the address the connection was accepted on, not the client address: X-Forwarded-For rewrites the
+    // latter, but only a loopback connection can arrive on a loopback socket
+    private static AuthorizationManager<RequestAuthorizationContext> onLoopbackSocket() {
+        return (authentication, context) -> {
+            String localAddress = context.getRequest().getLocalAddr();
+            try {
+                return new AuthorizationDecision(localAddress != null
+                        && InetAddress.getByName(localAddress).isLoopbackAddress());
+            } catch (UnknownHostException e) {
+                return new AuthorizationDecision(false);
+            }
+        };
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
@@ -2,15 +2,19 @@ package com.chat.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
 import org.springframework.session.web.http.CookieSerializer;
 import org.springframework.session.web.http.DefaultCookieSerializer;
 
+// Sessions come from the SessionRepository bean (JdbcSessionRepository, or the in-memory one under loadtest)
 @Configuration
+@EnableSpringHttpSession
 public class SessionConfig {
 
     @Bean
     public CookieSerializer cookieSerializer() {
         DefaultCookieSerializer serializer = new DefaultCookieSerializer();
+        serializer.setCookieName("JSESSIONID"); // Same name as before, so existing clients and logout keep working
         // Crucial for cross-domain cookie handling with HTTPS
         serializer.setSameSite("None");
         serializer.setUseSecureCookie(true); // Ensure the 'Secure' flag is set
@@ -1,11 +1,26 @@
 package com.chat.config;
 
+import com.chat.service.ChatSubscriptionRegistry;
+import com.chat.service.MessageBroadcaster;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.time.Duration;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -14,16 +29,90 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Value("${frontend.url}")
     private String frontendUrl;
 
+    @Value("${chat.delivery.mode:topic}")
+    private MessageBroadcaster.DeliveryMode deliveryMode;
+
+    @Value("${chat.ws.send-time-limit:10s}")
+    private Duration sendTimeLimit;
+
+    @Value("${chat.ws.send-buffer-size-limit:512KB}")
+    private DataSize sendBufferSizeLimit;
+
+    @Value("${chat.ws.message-size-limit:64KB}")
+    private DataSize messageSizeLimit;
+
+    @Value("${chat.ws.time-to-first-message:30s}")
+    private Duration timeToFirstMessage;
+
+    @Value("${chat.ws.heartbeat.server-ms:10000}")
+    private long serverHeartbeatMs;
+
+    @Value("${chat.ws.heartbeat.client-ms:10000}")
+    private long clientHeartbeatMs;
+
+    @Autowired
+    private ChatSubscriptionInterceptor subscriptionInterceptor;
+
+    @Autowired
+    private WebSocketConnectionGuard connectionGuard;
+
+    private TaskScheduler heartbeatScheduler;
+
+    // Lazy: the broker's scheduler is itself defined by the configuration this class feeds
+    @Autowired
+    public void setHeartbeatScheduler(@Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler heartbeatScheduler) {
+        this.heartbeatScheduler = heartbeatScheduler;
+    }
+
+    // The broker registration has no hook for a custom registry, so swap it in before the broker starts
+    @Bean
+    public static BeanPostProcessor chatSubscriptionRegistryInstaller(ObjectProvider<ChatSubscriptionRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleBrokerMessageHandler broker) {
+                    broker.setSubscriptionRegistry(registry.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws-chat")
                 .setAllowedOrigins(frontendUrl)
-                .withSockJS();
+                .addInterceptors(connectionGuard)
+                .withSockJS()
+                .setHeartbeatTime(Math.max(1000, serverHeartbeatMs));
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic");
+        // Server heartbeats keep idle sockets alive through proxies; a client silent for three of its
+        // intervals is disconnected, which reaps sockets that died without a close
+        registry.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[]{serverHeartbeatMs, clientHeartbeatMs})
+                .setTaskScheduler(heartbeatScheduler);
         registry.setApplicationDestinationPrefixes("/app");
+        registry.setUserDestinationPrefix("/user");
+        // One user queue carries many chats, so keep each session's frames in broadcast order on the way out
+        registry.setPreservePublishOrder(deliveryMode != MessageBroadcaster.DeliveryMode.TOPIC);
+    }
+
+    // A session whose outbound frames back up past either limit is closed (SESSION_NOT_RELIABLE) rather
+    // than buffered without bound; the client reconnects and catches up through delta sync
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit((int) sendTimeLimit.toMillis())
+                .setSendBufferSizeLimit((int) sendBufferSizeLimit.toBytes())
+                .setMessageSizeLimit((int) messageSizeLimit.toBytes())
+                .setTimeToFirstMessage((int) timeToFirstMessage.toMillis())
+                .addDecoratorFactory(connectionGuard);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(subscriptionInterceptor);
     }
 }
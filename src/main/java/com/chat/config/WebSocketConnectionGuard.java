@@ -0,0 +1,156 @@
+package com.chat.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-node admission control and accounting for STOMP connections.
+ * <p>
+ * Handshakes are refused with 503 and {@code Retry-After} once {@code chat.ws.max-connections} sessions
+ * are open (0 disables the ceiling). The check runs before the upgrade, so a burst of simultaneous
+ * handshakes can overshoot the ceiling by the number in flight. The handler decorator keeps the open
+ * count and tags every close with its reason, including sessions Spring terminated for exceeding the
+ * send buffer or send time limits ({@link CloseStatus#SESSION_NOT_RELIABLE}).
+ * <p>
+ * While the node drains ({@link #startDraining()}) every handshake is refused the same way, and the open
+ * sessions are available to {@link DrainCoordinator} to close.
+ */
+@Component
+public class WebSocketConnectionGuard implements HandshakeInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(WebSocketConnectionGuard.class);
+
+    private final int maxConnections;
+    private final long retryAfterSeconds;
+    private final AtomicInteger open = new AtomicInteger();
+    private final Counter rejected;
+    private final MeterRegistry registry;
+    private final Map<String, Counter> closedByReason = new ConcurrentHashMap<>();
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private volatile boolean draining;
+
+    @Autowired
+    public WebSocketConnectionGuard(MeterRegistry registry,
+                                    @Value("${chat.ws.max-connections:10000}") int maxConnections,
+                                    @Value("${chat.ws.rejected-retry-after-seconds:5}") long retryAfterSeconds) {
+        this.registry = registry;
+        this.maxConnections = maxConnections;
+        this.retryAfterSeconds = retryAfterSeconds;
+        Gauge.builder("chat.ws.connections.open", open, AtomicInteger::get)
+                .description("WebSocket/SockJS sessions currently open on this node")
+                .register(registry);
+        Gauge.builder("chat.ws.connections.max", () -> maxConnections)
+                .description("Connection ceiling for this node (0 = unlimited)")
+                .register(registry);
+        this.rejected = Counter.builder("chat.ws.handshakes.rejected")
+                .description("Handshakes refused because the node was at its connection ceiling or draining")
+                .register(registry);
+    }
+
+    public int openConnections() {
+        return open.get();
+    }
+
+    /** Refuses every handshake from now on; existing sessions are left alone. */
+    public void startDraining() {
+        draining = true;
+    }
+
+    public List<WebSocketSession> openSessions() {
+        return List.copyOf(sessions.values());
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (draining) {
+            rejected.increment();
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set("Retry-After", Long.toString(retryAfterSeconds));
+            return false;
+        }
+        if (maxConnections > 0 && open.get() >= maxConnections) {
+            rejected.increment();
+            log.warn("Rejecting WebSocket handshake from {}: {} connections open (max {})",
+                    request.getRemoteAddress(), open.get(), maxConnections);
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set("Retry-After", Long.toString(retryAfterSeconds));
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                open.incrementAndGet();
+                sessions.put(session.getId(), session);
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                open.decrementAndGet();
+                sessions.remove(session.getId());
+                String reason = reasonOf(closeStatus);
+                closedByReason.computeIfAbsent(reason, r -> Counter.builder("chat.ws.connections.closed")
+                        .description("WebSocket/SockJS sessions closed, by reason")
+                        .tag("reason", r)
+                        .register(registry)).increment();
+                if (CloseStatus.SESSION_NOT_RELIABLE.equalsCode(closeStatus)) {
+                    log.info("Disconnected slow consumer {} ({})", session.getId(), closeStatus.getReason());
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    private static String reasonOf(CloseStatus status) {
+        if (CloseStatus.NORMAL.equalsCode(status)) {
+            return "normal";
+        }
+        if (CloseStatus.GOING_AWAY.equalsCode(status)) {
+            return "going_away";
+        }
+        if (CloseStatus.SERVICE_RESTARTED.equalsCode(status)) {
+            return "drained";
+        }
+        if (CloseStatus.SESSION_NOT_RELIABLE.equalsCode(status)) {
+            return "slow_consumer";
+        }
+        if (CloseStatus.NO_STATUS_CODE.equalsCode(status) || CloseStatus.NO_CLOSE_FRAME.equalsCode(status)) {
+            return "dropped";
+        }
+        if (CloseStatus.PROTOCOL_ERROR.equalsCode(status) || CloseStatus.SERVER_ERROR.equalsCode(status)) {
+            return "error";
+        }
+        return "other";
+    }
+}
@@ -3,25 +3,50 @@ package com.chat.controller;
 import com.chat.model.ChatModelCreation;
 import com.chat.model.ChatMessage;
 import com.chat.model.ChatMessageDTO;
+import com.chat.model.ChatSyncResult;
+import com.chat.model.EncodedMessage;
+import com.chat.model.GroupChatRequest;
+import com.chat.model.MessageAck;
+import com.chat.model.MessageChangeRequest;
+import com.chat.model.RetentionRequest;
+import com.chat.model.SyncRequest;
+import com.chat.monitoring.ChatHotspots;
+import com.chat.monitoring.MessageBroadcastEvent;
+import com.chat.monitoring.MessagePersistEvent;
+import com.chat.monitoring.MessagePipelineMetrics;
+import com.chat.monitoring.MessageReceiveEvent;
 import com.chat.repo.ChatMessageRepo;
+import com.chat.repo.ReplicaRouting;
+import com.chat.service.ChatSequenceAllocator;
 import com.chat.service.ChatService;
+import com.chat.service.ChatVersionTracker;
 import com.chat.service.GeminiService;
+import com.chat.service.LinkPreviewService;
+import com.chat.service.MessageBroadcaster;
+import com.chat.service.MessageChangeService;
+import com.chat.service.MessageDeduplicator;
+import com.chat.service.MessageEncoder;
+import com.chat.service.MessageHistoryService;
 import com.chat.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -32,18 +57,45 @@ public class ChatController {
     private final ChatService chatService;
     private final UserService userService;
     private final ChatMessageRepo chatMessageRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageBroadcaster messageBroadcaster;
     private final GeminiService geminiService;
+    private final MessageHistoryService messageHistoryService;
+    private final ChatSequenceAllocator sequenceAllocator;
+    private final MessagePipelineMetrics pipelineMetrics;
+    private final MessageChangeService messageChangeService;
+    private final LinkPreviewService linkPreviewService;
+    private final ChatVersionTracker versionTracker;
+    private final ObjectMapper objectMapper;
+    private final MessageEncoder messageEncoder;
+    private final ChatHotspots hotspots;
+    private final MessageDeduplicator deduplicator;
+    private final ReplicaRouting replicaRouting;
 
     @Autowired
     public ChatController(ChatService chatService, UserService userService,
                           ChatMessageRepo chatMessageRepository,
-                          SimpMessagingTemplate messagingTemplate, GeminiService geminiService) {
+                          MessageBroadcaster messageBroadcaster, GeminiService geminiService,
+                          MessageHistoryService messageHistoryService, ChatSequenceAllocator sequenceAllocator,
+                          MessagePipelineMetrics pipelineMetrics, MessageChangeService messageChangeService,
+                          LinkPreviewService linkPreviewService, ChatVersionTracker versionTracker,
+                          ObjectMapper objectMapper, MessageEncoder messageEncoder, ChatHotspots hotspots,
+                          MessageDeduplicator deduplicator, ReplicaRouting replicaRouting) {
         this.chatService = chatService;
         this.userService = userService;
         this.chatMessageRepository = chatMessageRepository;
-        this.messagingTemplate = messagingTemplate;
+        this.messageBroadcaster = messageBroadcaster;
         this.geminiService = geminiService;
+        this.messageHistoryService = messageHistoryService;
+        this.sequenceAllocator = sequenceAllocator;
+        this.pipelineMetrics = pipelineMetrics;
+        this.messageChangeService = messageChangeService;
+        this.linkPreviewService = linkPreviewService;
+        this.versionTracker = versionTracker;
+        this.objectMapper = objectMapper;
+        this.messageEncoder = messageEncoder;
+        this.hotspots = hotspots;
+        this.deduplicator = deduplicator;
+        this.replicaRouting = replicaRouting;
     }
 
     @PostMapping("/create")
@@ -67,18 +119,119 @@ public class ChatController {
         }
     }
 
-    @GetMapping("/list")
-    public ResponseEntity<?> getChats(Authentication authentication) {
+    @PostMapping("/group")
+    public ResponseEntity<?> createGroupChat(@RequestBody GroupChatRequest request, Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
             return ResponseEntity.status(401).body(Map.of("message", "Authentication required."));
         }
         String username = authentication.getName();
         try {
-            Long userId = userService.getUserModelByUsername(username)
+            Long ownerId = userService.getUserModelByUsername(username)
                     .orElseThrow(() -> new RuntimeException("Authenticated user profile not found"))
                     .getId();
-            List<ChatModelCreation> chats = chatService.getChatsForUser(userId);
-            return ResponseEntity.ok(chats);
+            ChatModelCreation group = chatService.createGroupChat(request.getChatName(), ownerId, request.getMembers());
+            return ResponseEntity.ok(group);
+        } catch (RuntimeException e) {
+            log.warn("Failed to create group chat for user {}: {}", username, e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Unexpected error creating group chat for user {}", username, e);
+            return ResponseEntity.status(500).body(Map.of("message", "An internal error occurred while creating the group chat."));
+        }
+    }
+
+    @GetMapping("/{chatId}/members")
+    public ResponseEntity<?> getMembers(@PathVariable Long chatId, Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Authentication required."));
+        }
+        String username = authentication.getName();
+        if (!chatService.isUserInChat(username, chatId)) {
+            return ResponseEntity.status(403).body(Map.of("message", "Not authorized for this chat."));
+        }
+        return ResponseEntity.ok(chatService.getMemberUsernames(chatId));
+    }
+
+    @PostMapping("/{chatId}/members")
+    public ResponseEntity<?> addMembers(@PathVariable Long chatId, @RequestBody GroupChatRequest request,
+                                        Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Authentication required."));
+        }
+        String username = authentication.getName();
+        try {
+            Long requesterId = userService.getUserModelByUsername(username)
+                    .orElseThrow(() -> new RuntimeException("Authenticated user profile not found"))
+                    .getId();
+            int added = chatService.addGroupMembers(chatId, requesterId, request.getMembers());
+            return ResponseEntity.ok(Map.of("message", "Members added.", "added", added));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(403).body(Map.of("message", e.getMessage()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to add members to chat {} for user {}: {}", chatId, username, e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{chatId}/members/{member}")
+    public ResponseEntity<?> removeMember(@PathVariable Long chatId, @PathVariable String member,
+                                          Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Authentication required."));
+        }
+        String username = authentication.getName();
+        try {
+            Long requesterId = userService.getUserModelByUsername(username)
+                    .orElseThrow(() -> new RuntimeException("Authenticated user profile not found"))
+                    .getId();
+            if (!chatService.removeGroupMember(chatId, requesterId, member)) {
+                return ResponseEntity.status(404).body(Map.of("message", "Not a member of this group."));
+            }
+            return ResponseEntity.ok(Map.of("message", "Member removed."));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(403).body(Map.of("message", e.getMessage()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove {} from chat {} for user {}: {}", member, chatId, username, e.getMessage());
+            return ResponseEntity.status(404).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{chatId}/retention")
+    public ResponseEntity<?> setRetention(@PathVariable Long chatId, @RequestBody RetentionRequest request,
+                                          Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Authentication required."));
+        }
+        String username = authentication.getName();
+        try {
+            Long requesterId = userService.getUserModelByUsername(username)
+                    .orElseThrow(() -> new RuntimeException("Authenticated user profile not found"))
+                    .getId();
+            return ResponseEntity.ok(chatService.setRetentionDays(chatId, requesterId, request.getRetentionDays()));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(403).body(Map.of("message", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to set retention on chat {} for user {}: {}", chatId, username, e.getMessage());
+            return ResponseEntity.status(404).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/list")
+    public ResponseEntity<?> getChats(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                      Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Authentication required."));
+        }
+        String username = authentication.getName();
+        try {
+            Long userId = chatService.userIdFor(username);
+            if (userId == null) {
+                throw new RuntimeException("Authenticated user profile not found");
+            }
+            return conditional(ChatVersionTracker.inboxKey(userId), ifNoneMatch,
+                    () -> objectMapper.writeValueAsBytes(chatService.getChatsForUser(userId)));
         } catch (RuntimeException e) {
             log.warn("Failed to list chats for user {}: {}", username, e.getMessage());
             return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
@@ -118,7 +271,9 @@ public class ChatController {
     }
 
     @GetMapping("/{chatId}")
-    public ResponseEntity<?> getMessages(@PathVariable Long chatId, Authentication authentication) {
+    public ResponseEntity<?> getMessages(@PathVariable Long chatId,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                         Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
             return ResponseEntity.status(401).body(Map.of("message", "Authentication required."));
         }
@@ -129,11 +284,8 @@ public class ChatController {
                 return ResponseEntity.status(403).body(Map.of("message", "Not authorized for this chat."));
             }
 
-            List<ChatMessage> messages = chatMessageRepository.findByChatIdOrderByTimestampAsc(chatId);
-            List<ChatMessageDTO> messageDTOs = messages.stream()
-                    .map(ChatMessageDTO::fromEntity) // Use the static factory method
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(messageDTOs);
+            return conditional(ChatVersionTracker.chatKey(chatId), ifNoneMatch,
+                    () -> messageEncoder.toJsonArray(messageHistoryService.fullHistory(chatId)));
         } catch (RuntimeException e) {
             log.warn("Failed to get messages for chat {} for user {}: {}", chatId, username, e.getMessage());
             return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
@@ -143,10 +295,118 @@ public class ChatController {
         }
     }
 
+    @PatchMapping("/{chatId}/messages/{messageId}")
+    public ResponseEntity<?> editMessage(@PathVariable Long chatId, @PathVariable String messageId,
+                                         @RequestBody MessageChangeRequest request, Authentication authentication) {
+        return changeMessage(chatId, messageId, authentication,
+                username -> messageChangeService.edit(chatId, messageId, username, request.getContent()),
+                "Message edited.", "Message not found or deleted.");
+    }
+
+    @DeleteMapping("/{chatId}/messages/{messageId}")
+    public ResponseEntity<?> deleteMessage(@PathVariable Long chatId, @PathVariable String messageId,
+                                           Authentication authentication) {
+        return changeMessage(chatId, messageId, authentication,
+                username -> messageChangeService.delete(chatId, messageId, username),
+                "Message deleted.", "Message not found or already deleted.");
+    }
+
+    @PutMapping("/{chatId}/messages/{messageId}/reactions")
+    public ResponseEntity<?> addReaction(@PathVariable Long chatId, @PathVariable String messageId,
+                                         @RequestBody MessageChangeRequest request, Authentication authentication) {
+        return changeMessage(chatId, messageId, authentication,
+                username -> messageChangeService.react(chatId, messageId, username, request.getEmoji(), true),
+                "Reaction saved.", null);
+    }
+
+    @DeleteMapping("/{chatId}/messages/{messageId}/reactions")
+    public ResponseEntity<?> removeReaction(@PathVariable Long chatId, @PathVariable String messageId,
+                                            @RequestParam String emoji, Authentication authentication) {
+        return changeMessage(chatId, messageId, authentication,
+                username -> messageChangeService.react(chatId, messageId, username, emoji, false),
+                "Reaction removed.", null);
+    }
+
+    /**
+     * Answers a poll for an inbox or chat: 304 straight from the version tracker when the client's tag is
+     * still current, otherwise loads and serializes the body and tags it (still 304 if the hash matches).
+     */
+    private ResponseEntity<?> conditional(String key, String ifNoneMatch, Callable<byte[]> body) throws Exception {
+        String current = versionTracker.currentMatch(key, ifNoneMatch);
+        if (current != null) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+        }
+        long generation = versionTracker.generation();
+        byte[] json = body.call();
+        String etag = versionTracker.tag(key, generation, json);
+        if (ifNoneMatch != null && ChatVersionTracker.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON).body(json);
+    }
+
+    // Shared error mapping for the message change endpoints. A null notChanged marks an idempotent change
+    // (reactions), where "nothing to do" is still a success
+    private ResponseEntity<?> changeMessage(Long chatId, String messageId, Authentication authentication,
+                                            Predicate<String> change, String done, String notChanged) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Authentication required."));
+        }
+        String username = authentication.getName();
+        try {
+            boolean changed = change.test(username);
+            if (!changed && notChanged != null) {
+                return ResponseEntity.status(404).body(Map.of("message", notChanged));
+            }
+            return ResponseEntity.ok(Map.of("message", done, "changed", changed));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(403).body(Map.of("message", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to change message {} in chat {} for user {}: {}", messageId, chatId, username, e.getMessage());
+            return ResponseEntity.status(404).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/sync")
+    public ResponseEntity<?> syncMessages(@RequestBody SyncRequest syncRequest, Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Authentication required."));
+        }
+        String username = authentication.getName();
+        try {
+            Long userId = userService.getUserModelByUsername(username)
+                    .orElseThrow(() -> new RuntimeException("Authenticated user profile not found"))
+                    .getId();
+            Map<Long, ChatSyncResult> missed = messageHistoryService.syncChats(userId,
+                    syncRequest.getLastSeenIds(), syncRequest.getLastSeenSeqs(), syncRequest.getLastSeenChangeSeqs());
+            return ResponseEntity.ok(missed);
+        } catch (RuntimeException e) {
+            log.warn("Failed to sync messages for user {}: {}", username, e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Unexpected error syncing messages for user {}", username, e);
+            return ResponseEntity.status(500).body(Map.of("message", "An internal error occurred while syncing messages."));
+        }
+    }
+
     @MessageMapping("/chat/{chatId}/send")
     public void handleAndBroadcastMessage(@DestinationVariable Long chatId,
                                           @Payload ChatMessageDTO messageDTO,
                                            Authentication authentication) {
+        MessageReceiveEvent receiveEvent = new MessageReceiveEvent();
+        receiveEvent.begin();
+        try {
+            processIncomingMessage(chatId, messageDTO, authentication);
+        } finally {
+            receiveEvent.finish(chatId,
+                    messageDTO != null ? messageDTO.getType() : null,
+                    messageDTO != null ? messageDTO.getContent() : null);
+        }
+    }
+
+    private void processIncomingMessage(Long chatId, ChatMessageDTO messageDTO, Authentication authentication) {
 
         if (messageDTO == null || messageDTO.getType() == null || messageDTO.getSender() == null) {
             log.warn("WS Request Invalid: Received null/incomplete message payload for chat {}: {}", chatId, messageDTO);
@@ -163,11 +423,29 @@ public class ChatController {
                     authenticatedUsername, messageDTO.getSender(), chatId);
             messageDTO.setSender(authenticatedUsername);
         }
-        if (!chatService.isUserInChat(authenticatedUsername, chatId)) {
+        boolean member = pipelineMetrics.recordStage(MessagePipelineMetrics.STAGE_AUTHORIZE,
+                () -> chatService.isUserInChat(authenticatedUsername, chatId));
+        if (!member) {
             log.warn("WS Auth Denied: User '{}' attempted to send message to chat {} but is not a member.", authenticatedUsername, chatId);
             return;
         }
 
+        String clientMessageId = messageDTO.getClientMessageId();
+        if (clientMessageId != null) {
+            if (!MessageDeduplicator.isValid(clientMessageId)) {
+                log.warn("WS Invalid clientMessageId from '{}' for chat {} (blank or over {} chars)",
+                        authenticatedUsername, chatId, MessageDeduplicator.MAX_CLIENT_MESSAGE_ID_LENGTH);
+                return;
+            }
+            // Memory only; resends it doesn't know are caught by the unique index on insert
+            MessageAck earlier = deduplicator.recentAck(chatId, authenticatedUsername, clientMessageId);
+            if (earlier != null) {
+                log.debug("WS Duplicate: clientMessageId {} already stored as {}", clientMessageId, earlier.getId());
+                messageBroadcaster.sendAck(authenticatedUsername, earlier);
+                return;
+            }
+        }
+
         ChatMessage messageEntity = null;
         log.debug("WS Processing: Chat={}, Type='{}', Sender='{}'", chatId, messageDTO.getType(), messageDTO.getSender());
 
@@ -202,23 +480,57 @@ public class ChatController {
         }
 
         // Save and Broadcast if entity was successfully created
-        ChatMessage savedMessage = chatMessageRepository.save(messageEntity);
+        messageEntity.setClientMessageId(clientMessageId);
+        long seq = sequenceAllocator.next(chatId);
+        messageEntity.setSeq(seq);
+        ChatMessage toSave = messageEntity;
+        MessagePersistEvent persistEvent = new MessagePersistEvent();
+        persistEvent.begin();
+        ChatMessage savedMessage;
+        try {
+            savedMessage = pipelineMetrics.recordStage(MessagePipelineMetrics.STAGE_PERSIST,
+                    () -> chatMessageRepository.save(toSave));
+        } catch (DuplicateKeyException e) {
+            // A retry from another node, past the window, or racing the original's insert; its seq is left unused
+            MessageAck stored = clientMessageId != null
+                    ? deduplicator.storedAck(chatId, authenticatedUsername, clientMessageId) : null;
+            if (stored == null) {
+                throw e;
+            }
+            log.debug("WS Duplicate: clientMessageId {} already stored as {}", clientMessageId, stored.getId());
+            messageBroadcaster.sendAck(authenticatedUsername, stored);
+            return;
+        } finally {
+            sequenceAllocator.finished(chatId, seq);
+        }
+        persistEvent.finish(chatId, savedMessage.getType(), savedMessage.getContent());
+        // WebSocket sends bypass the MVC write hook; the sender's next history read must include this
+        replicaRouting.wrote(authenticatedUsername);
         log.info("DB Saved: Message ID {} (Type: {}) for chat {}", savedMessage.getId(), savedMessage.getType(), chatId);
 
-        // Convert the *saved* entity back to DTO (uses the fixed fromEntity method)
-        ChatMessageDTO broadcastDTO = ChatMessageDTO.fromEntity(savedMessage);
+        // Encode the *saved* entity once; the broadcast and later history reads share these bytes
+        EncodedMessage encoded = messageEncoder.encode(savedMessage);
+        hotspots.recordMessage(chatId, savedMessage.getSender(), encoded.json().length);
 
-        if (broadcastDTO == null) {
-            log.error("WS Broadcast Error: Failed to convert saved entity (ID: {}) back to DTO for chat {}", savedMessage.getId(), chatId);
-            return;
-        }
+        MessageBroadcastEvent broadcastEvent = new MessageBroadcastEvent();
+        broadcastEvent.begin();
+        pipelineMetrics.recordStage(MessagePipelineMetrics.STAGE_BROADCAST,
+                () -> messageBroadcaster.broadcastToChat(chatId, encoded));
+        broadcastEvent.finish(chatId, savedMessage.getType(), savedMessage.getContent());
+        log.debug("WS Broadcast: Sent DTO for chat {}", chatId);
 
-        String destination = "/topic/chat/" + chatId;
-        messagingTemplate.convertAndSend(destination, broadcastDTO);
-        log.debug("WS Broadcast: Sent DTO to {} for chat {}", destination, chatId);
+        if (clientMessageId != null) {
+            deduplicator.remember(savedMessage);
+            messageBroadcaster.sendAck(authenticatedUsername, MessageAck.of(savedMessage, false));
+        }
 
-        if (chatService.isAiChat(chatId) && "TEXT".equals(savedMessage.getType())) {
-            geminiService.generateResponseAndBroadcast(chatId, savedMessage.getContent());
+        if ("TEXT".equals(savedMessage.getType())) {
+            linkPreviewService.unfurl(savedMessage); // Preview follows later as a delta
+            if (chatService.isAiChat(chatId)) {
+                hotspots.recordAiCall(chatId, savedMessage.getSender());
+                pipelineMetrics.recordStage(MessagePipelineMetrics.STAGE_AI_DISPATCH,
+                        () -> geminiService.generateResponseAndBroadcast(chatId, savedMessage.getContent()));
+            }
         }
 
     }
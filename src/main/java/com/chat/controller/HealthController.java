@@ -1,5 +1,7 @@
 package com.chat.controller;
 
+import com.chat.config.DrainCoordinator;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -7,9 +9,20 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class HealthController {
 
+    private final DrainCoordinator drainCoordinator;
+
+    @Autowired
+    public HealthController(DrainCoordinator drainCoordinator) {
+        this.drainCoordinator = drainCoordinator;
+    }
+
     @GetMapping("/api/health") // Or just /health
     public ResponseEntity<String> healthCheck() {
         // Simply return 200 OK. Avoid heavy logic or DB calls here.
+        if (drainCoordinator.isDraining()) {
+            // Load balancer health check: take this node out before it shuts down
+            return ResponseEntity.status(503).body("DRAINING");
+        }
         return ResponseEntity.ok("OK");
     }
-}
\ No newline at end of file
+}
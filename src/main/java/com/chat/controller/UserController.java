@@ -1,7 +1,9 @@
 package com.chat.controller;
 
+import com.chat.config.BoundedBCryptPasswordEncoder.PasswordHashingBusyException;
 import com.chat.model.UserModel;
 // import com.chat.model.LoginRequest; // DTO defined below or in separate file
+import com.chat.service.LoginThrottle;
 import com.chat.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
@@ -10,6 +12,7 @@ import lombok.Setter; // Lombok for DTO getters/setters
 import org.slf4j.Logger; // Import Logger
 import org.slf4j.LoggerFactory; // Import LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException; // Specific exception
@@ -33,11 +36,14 @@ public class UserController {
 
     private final UserService userService;
     private final AuthenticationManager authenticationManager;
+    private final LoginThrottle loginThrottle;
 
     @Autowired
-    public UserController(UserService userService, AuthenticationManager authenticationManager) {
+    public UserController(UserService userService, AuthenticationManager authenticationManager,
+                          LoginThrottle loginThrottle) {
         this.userService = userService;
         this.authenticationManager = authenticationManager;
+        this.loginThrottle = loginThrottle;
     }
 
     @PostMapping("/register")
@@ -56,6 +62,9 @@ public class UserController {
                 log.warn("Registration attempt failed for existing username: {}", registerRequest.getUsername());
                 return ResponseEntity.status(409).body(Map.of("message", "Username already exists!"));
             }
+        } catch (PasswordHashingBusyException e) {
+            log.warn("Registration rejected for user {}: {}", registerRequest.getUsername(), e.getMessage());
+            return serverBusy();
         } catch (Exception e) {
             log.error("Error during registration for user {}: {}", registerRequest.getUsername(), e.getMessage());
             return ResponseEntity.status(500).body(Map.of("message", "Registration failed due to a server error."));
@@ -71,6 +80,15 @@ public class UserController {
 
         log.info("Login attempt for user: {}", loginRequest.getUsername()); // Log attempt
 
+        // The client's address: with server.forward-headers-strategy=native, Tomcat takes it from X-Forwarded-For
+        // when (and only when) the request came through a trusted proxy, so clients cannot pick their own
+        if (!loginThrottle.tryAcquire(loginRequest.getUsername(), request.getRemoteAddr())) {
+            log.warn("Login throttled for user '{}' from {}", loginRequest.getUsername(), request.getRemoteAddr());
+            return ResponseEntity.status(429)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(loginThrottle.retryAfter().toSeconds()))
+                    .body(Map.of("message", "Too many login attempts. Please try again later."));
+        }
+
         try {
             UsernamePasswordAuthenticationToken token =
                     new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword());
@@ -100,6 +118,10 @@ public class UserController {
             log.warn("Authentication failed for user '{}': {}", loginRequest.getUsername(), e.getMessage(), e);
             SecurityContextHolder.clearContext();
             return ResponseEntity.status(401).body(Map.of("message", "Authentication failed: " + e.getMessage()));
+        } catch (PasswordHashingBusyException e) {
+            log.warn("Login rejected for user '{}': {}", loginRequest.getUsername(), e.getMessage());
+            SecurityContextHolder.clearContext();
+            return serverBusy();
         } catch (Exception e) {
             log.error("Unexpected error during login for user '{}'", loginRequest.getUsername(), e);
             SecurityContextHolder.clearContext();
@@ -107,6 +129,12 @@ public class UserController {
         }
     }
 
+    private ResponseEntity<?> serverBusy() {
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("message", "Server is busy. Please try again shortly."));
+    }
+
     @GetMapping("/session")
     public ResponseEntity<?> checkSession(Authentication authentication) {
         if (authentication != null && authentication.isAuthenticated() &&
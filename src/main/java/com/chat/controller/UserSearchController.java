@@ -0,0 +1,46 @@
+package com.chat.controller;
+
+import com.chat.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/users")
+public class UserSearchController {
+
+    private final UserService userService;
+    private final int minPrefixLength;
+
+    @Autowired
+    public UserSearchController(UserService userService,
+                                @Value("${chat.users.search.min-prefix-length:1}") int minPrefixLength) {
+        this.userService = userService;
+        this.minPrefixLength = Math.max(1, minPrefixLength);
+    }
+
+    /**
+     * Autocomplete for the receiver of a new chat: usernames starting with {@code prefix}, ignoring case,
+     * other than the caller's own and the AI user's.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit,
+                                    Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Authentication required."));
+        }
+        String trimmed = prefix.trim();
+        if (trimmed.length() < minPrefixLength) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", "Prefix must be at least " + minPrefixLength + " characters."));
+        }
+        return ResponseEntity.ok(userService.searchUsernames(trimmed, limit, authentication.getName()));
+    }
+}
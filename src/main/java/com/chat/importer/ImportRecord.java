@@ -0,0 +1,41 @@
+package com.chat.importer;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * One line of an NDJSON dump. {@code kind} selects which fields apply:
+ * <pre>
+ * {"kind":"user","ref":"u1","username":"alice","passwordHash":"$2a$10$..."}
+ * {"kind":"chat","ref":"c1","name":"alice-bob","owner":"u1","receiver":"u2"}
+ * {"kind":"message","chat":"c1","sender":"u1","type":"TEXT","content":"hi","timestamp":"2023-05-01T10:15:30"}
+ * </pre>
+ * Refs are the source system's ids; chats refer to users and messages to chats and users by ref.
+ * A record must come after the records it refers to. Messages of one chat must be in chronological order.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ImportRecord {
+    private String kind;
+    private String ref;
+
+    // user
+    private String username;
+    private String passwordHash;
+
+    // chat
+    private String name;
+    private String owner;
+    private String receiver;
+
+    // message
+    private String chat;
+    private String sender;
+    private String type;
+    private String content;
+    private String fileName;
+    private String fileType;
+    private LocalDateTime timestamp;
+}
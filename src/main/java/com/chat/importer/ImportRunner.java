@@ -0,0 +1,64 @@
+package com.chat.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Command-line entry point for bulk imports:
+ * <pre>
+ * java -jar chat.jar --spring.profiles.active=import --import.file=/data/community.ndjson
+ * </pre>
+ * Rerunning the same command after a failure resumes from the last checkpoint
+ * ({@code <file>.checkpoint} unless {@code import.checkpoint} is set).
+ */
+@Component
+@Profile("import")
+public class ImportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportRunner.class);
+
+    private final NdjsonImporter importer;
+    private final String file;
+    private final String checkpoint;
+    private final String source;
+
+    @Autowired
+    public ImportRunner(NdjsonImporter importer,
+                        @Value("${import.file:}") String file,
+                        @Value("${import.checkpoint:}") String checkpoint,
+                        @Value("${import.source:}") String source) {
+        this.importer = importer;
+        this.file = file;
+        this.checkpoint = checkpoint;
+        this.source = source;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (file.isBlank()) {
+            throw new IllegalArgumentException("Set --import.file to the NDJSON dump to import.");
+        }
+        Path dump = Path.of(file);
+        if (!Files.isReadable(dump)) {
+            throw new IllegalArgumentException("Cannot read import file: " + dump);
+        }
+        Path checkpointFile = checkpoint.isBlank() ? Path.of(file + ".checkpoint") : Path.of(checkpoint);
+        // The source id scopes the import refs and goes into message ids, so keep it stable across reruns
+        // of the same dump and distinct between dumps
+        String sourceId = source.isBlank() ? dump.getFileName().toString() : source;
+
+        NdjsonImporter.ImportSummary summary = importer.importFile(dump, checkpointFile, sourceId);
+        log.info("Import of {} finished in {}s: {} lines, {} users, {} chats, {} messages, {} skipped, {} duplicates",
+                dump, summary.elapsed().toSeconds(), summary.lines(), summary.users(), summary.chats(),
+                summary.messages(), summary.skipped(), summary.duplicates());
+    }
+}
@@ -0,0 +1,493 @@
+package com.chat.importer;
+
+import com.chat.model.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streams an NDJSON dump (see {@link ImportRecord}) into Postgres and Mongo.
+ * <p>
+ * Users and chats are inserted with JDBC batches, one transaction per batch, and each inserted row's
+ * source ref is recorded in {@code import_refs}, keyed by source id, in the same transaction. Messages go
+ * to Mongo as unordered bulk inserts on several writer threads. Every {@code import.checkpoint-every} lines
+ * the reader waits for all outstanding writes and records the line number in the checkpoint file. A rerun
+ * skips to that line. Work written after the last checkpoint, or before the first, is replayed safely:
+ * every run starts from the source's refs already in {@code import_refs}, and message ids are derived from
+ * timestamp, source and line number, so re-inserted messages are rejected as duplicates.
+ * <p>
+ * A message's seq is its line number: increasing in file order within every chat, and the same on a replay
+ * whatever was or wasn't written before the interruption. Seqs only need to grow, so the gaps are harmless.
+ * {@code chat_sequences} is advanced past them, so live traffic continues after the imported history.
+ */
+@Service
+@Profile("import")
+public class NdjsonImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(NdjsonImporter.class);
+
+    private static final String SEQUENCES_COLLECTION = "chat_sequences";
+    private static final int DUPLICATE_KEY = 11000;
+    // Unique indexes a replayed message can hit with its earlier copy; anything else is a real conflict
+    private static final Set<String> REPLAY_INDEXES = Set.of("_id_", "chat_client_message_idx");
+    private static final Pattern DUPLICATE_INDEX = Pattern.compile("index: (\\S+) dup key");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MongoOperations mongoOperations;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int writerThreads;
+    private final long checkpointEvery;
+
+    @Autowired
+    public NdjsonImporter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                          MongoOperations mongoOperations, ObjectMapper objectMapper,
+                          @Value("${import.batch-size:1000}") int batchSize,
+                          @Value("${import.writer-threads:4}") int writerThreads,
+                          @Value("${import.checkpoint-every:100000}") long checkpointEvery) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = transactionTemplate;
+        this.mongoOperations = mongoOperations;
+        this.objectMapper = objectMapper;
+        this.batchSize = Math.max(1, batchSize);
+        this.writerThreads = Math.max(1, writerThreads);
+        this.checkpointEvery = Math.max(batchSize, checkpointEvery);
+    }
+
+    public record ImportSummary(long lines, long users, long chats, long messages, long skipped,
+                                long duplicates, Duration elapsed) {
+    }
+
+    public ImportSummary importFile(Path file, Path checkpointFile, String sourceId) throws IOException {
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS import_refs (
+                    source VARCHAR(255) NOT NULL,
+                    kind CHAR(1) NOT NULL,
+                    ref VARCHAR(255) NOT NULL,
+                    id BIGINT NOT NULL,
+                    PRIMARY KEY (source, kind, ref)
+                )""");
+
+        long resumeAfter = readCheckpoint(checkpointFile);
+        if (resumeAfter > 0) {
+            log.info("Resuming {} after line {}", file, resumeAfter);
+        }
+
+        long started = System.nanoTime();
+        Run run = new Run(checkpointFile, sourceId);
+        long lineNo = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (lineNo <= resumeAfter || line.isBlank()) {
+                    continue;
+                }
+                run.accept(lineNo, line);
+                if (lineNo % checkpointEvery == 0) {
+                    run.checkpoint(lineNo, started);
+                }
+            }
+            run.checkpoint(lineNo, started);
+        } finally {
+            run.close();
+        }
+        return new ImportSummary(lineNo - resumeAfter, run.usersInserted, run.chatsInserted,
+                run.messagesInserted.get(), run.skipped, run.duplicates.get(),
+                Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    private static long readCheckpoint(Path checkpointFile) throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        return Long.parseLong(Files.readString(checkpointFile).trim());
+    }
+
+    /** 4-byte timestamp like any ObjectId, then 3 bytes of source id and the 5-byte line number. */
+    static ObjectId messageId(LocalDateTime timestamp, int sourceHash, long lineNo) {
+        ByteBuffer bytes = ByteBuffer.allocate(12);
+        bytes.putInt((int) timestamp.atZone(ZoneId.systemDefault()).toEpochSecond());
+        bytes.put((byte) (sourceHash >>> 16)).put((byte) (sourceHash >>> 8)).put((byte) sourceHash);
+        bytes.put((byte) (lineNo >>> 32)).putInt((int) lineNo);
+        return new ObjectId(bytes.array());
+    }
+
+    /** What a source ref resolved to: a user's id and username, or a chat's id and receiver name. */
+    private record Ref(long id, String name) {
+    }
+
+    private record PendingUser(long lineNo, ImportRecord record) {
+    }
+
+    /** State for one pass over the file; only the reader thread touches the maps. */
+    private final class Run implements AutoCloseable {
+
+        private final Path checkpointFile;
+        private final String sourceId;
+        private final int sourceHash;
+
+        private final Map<String, Ref> users = new HashMap<>();
+        private final Map<String, Ref> chats = new HashMap<>();
+
+        private List<PendingUser> pendingUsers = new ArrayList<>();
+        private List<ImportRecord> pendingChats = new ArrayList<>();
+        private List<ChatMessage> pendingMessages = new ArrayList<>();
+
+        private final ExecutorService writers;
+        private final Semaphore inFlight;
+        private final List<Future<?>> writes = new ArrayList<>();
+
+        private long usersInserted;
+        private long chatsInserted;
+        private long skipped;
+        private final AtomicLong messagesInserted = new AtomicLong();
+        private final AtomicLong duplicates = new AtomicLong();
+
+        Run(Path checkpointFile, String sourceId) {
+            this.checkpointFile = checkpointFile;
+            this.sourceId = sourceId;
+            this.sourceHash = sourceId.hashCode() & 0xFFFFFF;
+            AtomicInteger counter = new AtomicInteger();
+            this.writers = Executors.newFixedThreadPool(writerThreads, r -> {
+                Thread t = new Thread(r, "import-writer-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            // Bounded so the reader can't run arbitrarily far ahead of Mongo
+            this.inFlight = new Semaphore(writerThreads * 2);
+            // Even without a checkpoint: an earlier run may have committed batches before failing
+            loadRefs();
+        }
+
+        private void loadRefs() {
+            jdbcTemplate.query("SELECT r.ref, u.id, u.username FROM import_refs r JOIN users u ON u.id = r.id "
+                            + "WHERE r.source = ? AND r.kind = 'U'",
+                    rs -> {
+                        users.put(rs.getString(1), new Ref(rs.getLong(2), rs.getString(3)));
+                    }, sourceId);
+            jdbcTemplate.query("SELECT r.ref, c.chat_id, c.receiver_name FROM import_refs r "
+                            + "JOIN chats c ON c.chat_id = r.id WHERE r.source = ? AND r.kind = 'C'",
+                    rs -> {
+                        chats.put(rs.getString(1), new Ref(rs.getLong(2), rs.getString(3)));
+                    }, sourceId);
+            if (!users.isEmpty() || !chats.isEmpty()) {
+                log.info("Loaded {} user and {} chat refs from earlier runs", users.size(), chats.size());
+            }
+        }
+
+        void accept(long lineNo, String line) throws IOException {
+            ImportRecord record = objectMapper.readValue(line, ImportRecord.class);
+            String kind = record.getKind() == null ? "" : record.getKind();
+            switch (kind) {
+                case "user" -> {
+                    pendingUsers.add(new PendingUser(lineNo, record));
+                    if (pendingUsers.size() >= batchSize) {
+                        flushUsers();
+                    }
+                }
+                case "chat" -> {
+                    flushUsers();
+                    pendingChats.add(record);
+                    if (pendingChats.size() >= batchSize) {
+                        flushChats();
+                    }
+                }
+                case "message" -> addMessage(lineNo, record);
+                default -> {
+                    log.warn("Line {}: unknown kind '{}', skipped", lineNo, record.getKind());
+                    skipped++;
+                }
+            }
+        }
+
+        private void addMessage(long lineNo, ImportRecord record) {
+            flushUsers();
+            flushChats();
+            Ref chat = chats.get(record.getChat());
+            Ref sender = users.get(record.getSender());
+            if (chat == null || sender == null) {
+                skipped++;
+                return;
+            }
+
+            ChatMessage message = new ChatMessage();
+            LocalDateTime timestamp = record.getTimestamp() != null ? record.getTimestamp() : LocalDateTime.now();
+            message.setId(messageId(timestamp, sourceHash, lineNo).toHexString());
+            message.setChatId(chat.id());
+            message.setSender(sender.name());
+            message.setType(record.getType() != null ? record.getType() : "TEXT");
+            message.setContent(record.getContent());
+            message.setFileName(record.getFileName());
+            message.setFileType(record.getFileType());
+            message.setTimestamp(timestamp);
+            message.setSeq(lineNo);
+
+            pendingMessages.add(message);
+            if (pendingMessages.size() >= batchSize) {
+                flushMessages();
+            }
+        }
+
+        private void flushUsers() {
+            if (pendingUsers.isEmpty()) {
+                return;
+            }
+            List<PendingUser> batch = pendingUsers;
+            pendingUsers = new ArrayList<>();
+
+            transactionTemplate.executeWithoutResult(status -> {
+                // One row per username; later duplicates in the dump and names taken by existing accounts are skipped
+                Map<String, PendingUser> byUsername = new LinkedHashMap<>();
+                for (PendingUser pending : batch) {
+                    ImportRecord record = pending.record();
+                    if (record.getRef() != null && users.containsKey(record.getRef())) {
+                        continue; // Written by an earlier run
+                    }
+                    if (record.getRef() == null || record.getUsername() == null || record.getPasswordHash() == null
+                            || byUsername.putIfAbsent(record.getUsername(), pending) != null) {
+                        log.warn("Line {}: incomplete or duplicate user, skipped", pending.lineNo());
+                        skipped++; // Whatever refers to this ref is skipped too, since it never resolves
+                    }
+                }
+                if (!byUsername.isEmpty()) {
+                    List<String> taken = namedJdbcTemplate.queryForList(
+                            "SELECT username FROM users WHERE username IN (:usernames)",
+                            Map.of("usernames", byUsername.keySet()), String.class);
+                    for (String username : taken) {
+                        PendingUser pending = byUsername.remove(username);
+                        log.warn("Line {}: username '{}' already exists, user skipped", pending.lineNo(), username);
+                        skipped++;
+                    }
+                }
+                if (byUsername.isEmpty()) {
+                    return;
+                }
+
+                List<ImportRecord> toInsert = byUsername.values().stream().map(PendingUser::record).toList();
+                List<Long> ids = insertReturningIds("INSERT INTO users (username, password) VALUES (?, ?)", "id",
+                        toInsert, (ps, record) -> {
+                            ps.setString(1, record.getUsername());
+                            ps.setString(2, record.getPasswordHash());
+                        });
+                Map<String, Long> refs = new LinkedHashMap<>();
+                for (int i = 0; i < toInsert.size(); i++) {
+                    ImportRecord record = toInsert.get(i);
+                    refs.put(record.getRef(), ids.get(i));
+                    users.put(record.getRef(), new Ref(ids.get(i), record.getUsername()));
+                }
+                insertRefs("U", refs);
+                usersInserted += ids.size();
+            });
+        }
+
+        private void flushChats() {
+            if (pendingChats.isEmpty()) {
+                return;
+            }
+            List<ImportRecord> batch = pendingChats;
+            pendingChats = new ArrayList<>();
+
+            transactionTemplate.executeWithoutResult(status -> {
+                List<ImportRecord> toInsert = new ArrayList<>();
+                for (ImportRecord record : batch) {
+                    if (record.getRef() != null && chats.containsKey(record.getRef())) {
+                        continue; // Written by an earlier run
+                    }
+                    Ref owner = users.get(record.getOwner());
+                    Ref receiver = users.get(record.getReceiver());
+                    if (record.getRef() == null || owner == null || receiver == null || owner.equals(receiver)) {
+                        skipped++;
+                        continue;
+                    }
+                    toInsert.add(record);
+                }
+                if (toInsert.isEmpty()) {
+                    return;
+                }
+
+                List<Long> ids = insertReturningIds(
+                        "INSERT INTO chats (chat_name, owner_id, receiver_id, receiver_name) VALUES (?, ?, ?, ?)",
+                        "chat_id", toInsert, (ps, record) -> {
+                            Ref receiver = users.get(record.getReceiver());
+                            ps.setString(1, record.getName() != null ? record.getName() : receiver.name());
+                            ps.setLong(2, users.get(record.getOwner()).id());
+                            ps.setLong(3, receiver.id());
+                            ps.setString(4, receiver.name());
+                        });
+                Map<String, Long> refs = new LinkedHashMap<>();
+                for (int i = 0; i < toInsert.size(); i++) {
+                    ImportRecord record = toInsert.get(i);
+                    refs.put(record.getRef(), ids.get(i));
+                    chats.put(record.getRef(), new Ref(ids.get(i), users.get(record.getReceiver()).name()));
+                }
+                insertRefs("C", refs);
+                chatsInserted += ids.size();
+            });
+        }
+
+        private void flushMessages() {
+            if (pendingMessages.isEmpty()) {
+                return;
+            }
+            List<ChatMessage> batch = pendingMessages;
+            pendingMessages = new ArrayList<>(batchSize);
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a message writer", e);
+            }
+            writes.add(writers.submit(() -> {
+                try {
+                    writeMessages(batch);
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        }
+
+        private void writeMessages(List<ChatMessage> batch) {
+            BulkOperations inserts = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatMessage.class);
+            inserts.insert(batch);
+            try {
+                messagesInserted.addAndGet(inserts.execute().getInsertedCount());
+            } catch (BulkOperationException e) {
+                // Duplicates are messages a previous, interrupted run already wrote
+                for (BulkWriteError error : e.getErrors()) {
+                    if (!isReplay(error)) {
+                        throw e;
+                    }
+                }
+                messagesInserted.addAndGet(e.getResult().getInsertedCount());
+                duplicates.addAndGet(e.getErrors().size());
+            }
+
+            Map<Long, Long> highestSeq = new HashMap<>();
+            for (ChatMessage message : batch) {
+                highestSeq.merge(message.getChatId(), message.getSeq(), Math::max);
+            }
+            BulkOperations counters = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, SEQUENCES_COLLECTION);
+            highestSeq.forEach((chatId, seq) ->
+                    counters.upsert(Query.query(Criteria.where("_id").is(chatId)), new Update().max("next", seq)));
+            counters.execute();
+        }
+
+        private boolean isReplay(BulkWriteError error) {
+            if (error.getCode() != DUPLICATE_KEY) {
+                return false;
+            }
+            Matcher index = DUPLICATE_INDEX.matcher(error.getMessage());
+            return index.find() && REPLAY_INDEXES.contains(index.group(1));
+        }
+
+        void checkpoint(long lineNo, long started) throws IOException {
+            flushUsers();
+            flushChats();
+            flushMessages();
+            for (Future<?> write : writes) {
+                try {
+                    write.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for message writes", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Message write failed; rerun to resume from line "
+                            + readCheckpoint(checkpointFile), e.getCause());
+                }
+            }
+            writes.clear();
+
+            Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            Files.writeString(temp, Long.toString(lineNo));
+            Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+            log.info("Checkpoint at line {}: {} users, {} chats, {} messages ({} msg/s), {} skipped, {} duplicates",
+                    lineNo, usersInserted, chatsInserted, messagesInserted.get(),
+                    (long) (messagesInserted.get() / seconds), skipped, duplicates.get());
+        }
+
+        private void insertRefs(String kind, Map<String, Long> refs) {
+            List<Object[]> rows = new ArrayList<>(refs.size());
+            refs.forEach((ref, id) -> rows.add(new Object[]{sourceId, kind, ref, id}));
+            jdbcTemplate.batchUpdate("INSERT INTO import_refs (source, kind, ref, id) VALUES (?, ?, ?, ?)", rows);
+        }
+
+        private <T> List<Long> insertReturningIds(String sql, String keyColumn, List<T> rows, RowSetter<T> setter) {
+            KeyHolder keys = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(con -> con.prepareStatement(sql, new String[]{keyColumn}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            setter.set(ps, rows.get(i));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return rows.size();
+                        }
+                    }, keys);
+            return keys.getKeyList().stream().map(row -> ((Number) row.values().iterator().next()).longValue()).toList();
+        }
+
+        @Override
+        public void close() {
+            writers.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowSetter<T> {
+        void set(PreparedStatement ps, T row) throws SQLException;
+    }
+}
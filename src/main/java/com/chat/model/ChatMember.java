@@ -0,0 +1,29 @@
+package com.chat.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "chat_members",
+        uniqueConstraints = @UniqueConstraint(name = "chat_members_chat_user_uk", columnNames = {"chatId", "userId"}),
+        indexes = @Index(name = "chat_members_user_idx", columnList = "userId"))
+@Data
+@NoArgsConstructor
+public class ChatMember {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long chatId;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    public ChatMember(Long chatId, Long userId) {
+        this.chatId = chatId;
+        this.userId = userId;
+    }
+}
@@ -3,13 +3,24 @@ package com.chat.model;
 import jakarta.persistence.Id;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
 @Document(collection = "messages")
+@CompoundIndex(name = "chat_id_idx", def = "{'chatId': 1, '_id': 1}")
+@CompoundIndex(name = "chat_seq_idx", def = "{'chatId': 1, 'seq': 1}", unique = true,
+        partialFilter = "{'seq': {'$exists': true}}")
+@CompoundIndex(name = "chat_change_seq_idx", def = "{'chatId': 1, 'changeSeq': 1}",
+        partialFilter = "{'changeSeq': {'$exists': true}}")
+// Retention deletes by age
+@CompoundIndex(name = "chat_timestamp_idx", def = "{'chatId': 1, 'timestamp': 1}")
+@CompoundIndex(name = "chat_client_message_idx", def = "{'chatId': 1, 'sender': 1, 'clientMessageId': 1}",
+        unique = true, partialFilter = "{'clientMessageId': {'$exists': true}}")
 public class ChatMessage {
     @Id
     private String id;
@@ -18,10 +29,20 @@ public class ChatMessage {
     private String type; // "TEXT", "FILE_URL"
     private String content; // Holds text or file URL
     private LocalDateTime timestamp;
+    private Long seq; // Per-chat sequence number, assigned by ChatSequenceAllocator before save
+    private String clientMessageId; // Sender-generated, so a resent message is stored once
 
     private String fileName;
     private String fileType;
 
+    // Set by edits, deletes and reactions. changeSeq comes from the same per-chat sequence as seq, so the
+    // change sorts after every message that existed when it happened
+    private Long changeSeq;
+    private LocalDateTime editedAt;
+    private Boolean deleted; // Tombstone: content and reactions are cleared, the seq slot stays
+    private List<MessageReaction> reactions;
+    private LinkPreview linkPreview;
+
     public ChatMessage(Long chatId, String sender, String content, String type) {
         if (!"TEXT".equals(type)) { throw new IllegalArgumentException("Use specific constructor for type: " + type); }
         this.chatId = chatId;
@@ -1,14 +1,14 @@
 package com.chat.model;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 public class ChatMessageDTO {
     private String id;
     private Long chatId;
@@ -22,6 +22,37 @@ public class ChatMessageDTO {
 
     private LocalDateTime timestamp;
 
+    private Long seq; // Per-chat sequence number; clients use it to order messages and detect gaps
+
+    // Optional id the sender generates per message and reuses on retries; the server stores it once
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String clientMessageId;
+
+    // Only present once a message has been edited, deleted, reacted to or unfurled
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long changeSeq;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDateTime editedAt;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean deleted;
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<MessageReaction> reactions;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LinkPreview linkPreview;
+
+    public ChatMessageDTO(String id, Long chatId, String sender, String type, String content,
+                          String fileName, String fileType, LocalDateTime timestamp, Long seq) {
+        this.id = id;
+        this.chatId = chatId;
+        this.sender = sender;
+        this.type = type;
+        this.content = content;
+        this.fileName = fileName;
+        this.fileType = fileType;
+        this.timestamp = timestamp;
+        this.seq = seq;
+    }
+
     public static ChatMessageDTO fromEntity(ChatMessage entity) {
         if (entity == null) { return null; }
 
@@ -42,7 +73,7 @@ public class ChatMessageDTO {
                 break;
         }
 
-        return new ChatMessageDTO(
+        ChatMessageDTO dto = new ChatMessageDTO(
                 entity.getId(),
                 entity.getChatId(),
                 entity.getSender(),
@@ -50,7 +81,15 @@ public class ChatMessageDTO {
                 dtoContent,
                 dtoFileName,
                 dtoFileType,
-                entity.getTimestamp()
+                entity.getTimestamp(),
+                entity.getSeq()
         );
+        dto.setClientMessageId(entity.getClientMessageId());
+        dto.setChangeSeq(entity.getChangeSeq());
+        dto.setEditedAt(entity.getEditedAt());
+        dto.setDeleted(Boolean.TRUE.equals(entity.getDeleted()) ? Boolean.TRUE : null);
+        dto.setReactions(entity.getReactions());
+        dto.setLinkPreview(entity.getLinkPreview());
+        return dto;
     }
 }
\ No newline at end of file
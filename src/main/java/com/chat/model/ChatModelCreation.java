@@ -1,5 +1,6 @@
 package com.chat.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -24,4 +25,15 @@ public class ChatModelCreation {
     @Column(nullable = false)
     private String receiverName;
 
+    // Group rooms list their members in chat_members; receiverId/receiverName then mirror the owner and room name
+    private Boolean groupChat;
+
+    // Days to keep messages; null falls back to chat.retention.default-days
+    private Integer retentionDays;
+
+    @JsonIgnore
+    public boolean isGroup() {
+        return Boolean.TRUE.equals(groupChat);
+    }
+
 }
@@ -0,0 +1,21 @@
+package com.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSyncResult {
+    private List<EncodedMessage> messages;
+    private boolean hasMore; // Client should sync again using the last returned id as cursor
+    // Current state (edits, tombstones, reactions) of messages the client already had; seq cursors only
+    private List<EncodedMessage> changes;
+    private boolean hasMoreChanges; // Sync again using the last returned changeSeq as the change cursor
+    // Seq cursors only: the chat's watermark. Once neither list has more, it is the next seq and change cursor.
+    // Live messages can run ahead of it, so cursors must not be moved past it from those
+    private Long syncedThrough;
+}
@@ -0,0 +1,81 @@
+package com.chat.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A message's {@link ChatMessageDTO} JSON, encoded once and then shared by every STOMP frame, history
+ * response and cache entry that carries it. Identified by message id and {@code changeSeq}, so an edit,
+ * delete, reaction or preview yields a new encoding rather than changing this one.
+ * <p>
+ * The bytes are shared, never copied: nothing may modify the array returned by {@link #json()}.
+ */
+public final class EncodedMessage implements JsonSerializable {
+
+    private final String id;
+    private final Long changeSeq;
+    private final byte[] json;
+
+    public EncodedMessage(String id, Long changeSeq, byte[] json) {
+        this.id = id;
+        this.changeSeq = changeSeq;
+        this.json = json;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public Long changeSeq() {
+        return changeSeq;
+    }
+
+    /** UTF-8 JSON of the message's DTO. */
+    public byte[] json() {
+        return json;
+    }
+
+    /** Concatenates already-encoded messages into a JSON array without re-serializing any of them. */
+    public static byte[] toJsonArray(List<EncodedMessage> messages) {
+        int length = 2 + Math.max(0, messages.size() - 1);
+        for (EncodedMessage message : messages) {
+            length += message.json.length;
+        }
+        byte[] array = new byte[length];
+        array[0] = '[';
+        int offset = 1;
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                array[offset++] = ',';
+            }
+            byte[] json = messages.get(i).json;
+            System.arraycopy(json, 0, array, offset, json.length);
+            offset += json.length;
+        }
+        array[offset] = ']';
+        return array;
+    }
+
+    // Used when an encoded message is nested in a larger Jackson payload (sync results, coalesced batches)
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeRawValue(new String(json, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+        serialize(gen, serializers);
+    }
+
+    @Override
+    public String toString() {
+        return new String(json, StandardCharsets.UTF_8);
+    }
+}
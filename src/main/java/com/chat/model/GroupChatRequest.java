@@ -0,0 +1,11 @@
+package com.chat.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class GroupChatRequest {
+    private String chatName; // Ignored when adding members to an existing group
+    private List<String> members; // Usernames
+}
@@ -0,0 +1,19 @@
+package com.chat.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// OpenGraph summary of the first link in a message, filled in by LinkPreviewService after the message is sent
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LinkPreview {
+    private String url;
+    private String title;
+    private String description;
+    private String imageUrl;
+    private String siteName;
+}
@@ -0,0 +1,25 @@
+package com.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Sent to the sender on /user/queue/acks once a message with a clientMessageId is stored (or was already)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageAck {
+    private String clientMessageId;
+    private String id; // Server id of the stored message
+    private Long chatId;
+    private Long seq;
+    private LocalDateTime timestamp;
+    private boolean duplicate; // True when this send was a retry of a message stored earlier
+
+    public static MessageAck of(ChatMessage message, boolean duplicate) {
+        return new MessageAck(message.getClientMessageId(), message.getId(), message.getChatId(), message.getSeq(),
+                message.getTimestamp(), duplicate);
+    }
+}
@@ -0,0 +1,9 @@
+package com.chat.model;
+
+import lombok.Data;
+
+@Data
+public class MessageChangeRequest {
+    private String content; // New text when editing
+    private String emoji; // Reaction to add or remove
+}
@@ -0,0 +1,65 @@
+package com.chat.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A change to an existing message, broadcast on the chat topic next to new messages. Carries only the
+ * message id and the fields that changed; {@code type} is always {@code DELTA} so clients can tell it
+ * apart from a {@link ChatMessageDTO}.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MessageDelta {
+
+    public static final String TYPE = "DELTA";
+
+    public enum Op { EDIT, DELETE, REACT, UNREACT, PREVIEW }
+
+    private String type = TYPE;
+    private Long chatId;
+    private String messageId;
+    private Long changeSeq;
+    private Op op;
+
+    private String content; // EDIT; also drops the message's link preview (a PREVIEW may follow)
+    private LocalDateTime editedAt; // EDIT
+    private String emoji; // REACT, UNREACT
+    private String user; // REACT, UNREACT
+    private LinkPreview linkPreview; // PREVIEW
+
+    private MessageDelta(Long chatId, String messageId, Long changeSeq, Op op) {
+        this.chatId = chatId;
+        this.messageId = messageId;
+        this.changeSeq = changeSeq;
+        this.op = op;
+    }
+
+    public static MessageDelta edited(Long chatId, String messageId, Long changeSeq, String content, LocalDateTime editedAt) {
+        MessageDelta delta = new MessageDelta(chatId, messageId, changeSeq, Op.EDIT);
+        delta.content = content;
+        delta.editedAt = editedAt;
+        return delta;
+    }
+
+    public static MessageDelta deleted(Long chatId, String messageId, Long changeSeq) {
+        return new MessageDelta(chatId, messageId, changeSeq, Op.DELETE);
+    }
+
+    public static MessageDelta reaction(Long chatId, String messageId, Long changeSeq, boolean added, String emoji, String user) {
+        MessageDelta delta = new MessageDelta(chatId, messageId, changeSeq, added ? Op.REACT : Op.UNREACT);
+        delta.emoji = emoji;
+        delta.user = user;
+        return delta;
+    }
+
+    public static MessageDelta preview(Long chatId, String messageId, Long changeSeq, LinkPreview linkPreview) {
+        MessageDelta delta = new MessageDelta(chatId, messageId, changeSeq, Op.PREVIEW);
+        delta.linkPreview = linkPreview;
+        return delta;
+    }
+}
@@ -0,0 +1,13 @@
+package com.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageReaction {
+    private String emoji;
+    private String user; // Username of whoever reacted
+}
@@ -0,0 +1,39 @@
+package com.chat.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A sealed, gzip-compressed run of one chat's oldest messages, moved out of the hot {@code messages}
+ * collection by {@code MessageArchiveService}. Segments are append-only and cover consecutive seq ranges,
+ * so the range fields double as a sparse index: one small entry per few hundred messages. The exception is a
+ * segment of messages that became visible after their range was sealed, which lies inside earlier ranges.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "message_segments")
+@CompoundIndex(name = "segment_chat_last_seq_idx", def = "{'chatId': 1, 'lastSeq': 1}")
+public class MessageSegment {
+
+    @Id
+    private String id; // chatId:firstSeq, so a segment can only be written once
+    private Long chatId;
+    private Long firstSeq;
+    private Long lastSeq;
+    private String firstMessageId;
+    private String lastMessageId;
+    private LocalDateTime firstTimestamp;
+    private LocalDateTime lastTimestamp;
+    private int messageCount;
+    private LocalDateTime sealedAt;
+    private byte[] data; // gzip of the messages as a JSON array, in seq order
+
+    public static String idFor(Long chatId, Long firstSeq) {
+        return chatId + ":" + firstSeq;
+    }
+}
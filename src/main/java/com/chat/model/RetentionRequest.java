@@ -0,0 +1,8 @@
+package com.chat.model;
+
+import lombok.Data;
+
+@Data
+public class RetentionRequest {
+    private Integer retentionDays; // null restores chat.retention.default-days
+}
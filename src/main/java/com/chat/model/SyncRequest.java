@@ -0,0 +1,20 @@
+package com.chat.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+public class SyncRequest {
+    // chatId -> id of the newest message the client already has (null/absent = nothing cached yet).
+    // Best-effort only: ids are not strictly ordered by insertion, so messages can be skipped; prefer seqs
+    private Map<Long, String> lastSeenIds = new HashMap<>();
+    // chatId -> the last syncedThrough, or the last seq of a page cut short (hasMore); takes precedence over
+    // lastSeenIds
+    private Map<Long, Long> lastSeenSeqs = new HashMap<>();
+    // chatId -> the same for changes (hasMoreChanges); defaults to its lastSeenSeqs entry
+    private Map<Long, Long> lastSeenChangeSeqs = new HashMap<>();
+}
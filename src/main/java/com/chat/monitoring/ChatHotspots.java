@@ -0,0 +1,99 @@
+package com.chat.monitoring;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which chats and senders are driving this node's load, by messages, bytes and AI calls, over the last
+ * {@code chat.hotspots.window}. Fed from the message path and read through {@link HotspotsEndpoint}; memory
+ * is fixed by the sketch sizes, however many chats and users there are.
+ */
+@Component
+public class ChatHotspots {
+
+    public static final String MESSAGES = "messages";
+    public static final String BYTES = "bytes";
+    public static final String AI_CALLS = "aiCalls";
+
+    private final boolean enabled;
+    private final Duration window;
+    private final int topK;
+    private final Map<String, HeavyHitterSketch<Long>> chats = new LinkedHashMap<>();
+    private final Map<String, HeavyHitterSketch<String>> senders = new LinkedHashMap<>();
+
+    @Autowired
+    public ChatHotspots(@Value("${chat.hotspots.enabled:true}") boolean enabled,
+                        @Value("${chat.hotspots.window:5m}") Duration window,
+                        @Value("${chat.hotspots.buckets:5}") int buckets,
+                        @Value("${chat.hotspots.top-k:20}") int topK,
+                        @Value("${chat.hotspots.sketch-width:1024}") int width,
+                        @Value("${chat.hotspots.sketch-depth:4}") int depth) {
+        this.enabled = enabled;
+        this.window = window;
+        this.topK = topK;
+        for (String metric : List.of(MESSAGES, BYTES, AI_CALLS)) {
+            chats.put(metric, new HeavyHitterSketch<>(depth, width, topK, window.toNanos(), buckets));
+            senders.put(metric, new HeavyHitterSketch<>(depth, width, topK, window.toNanos(), buckets));
+        }
+    }
+
+    public void recordMessage(Long chatId, String sender, int bytes) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        chats.get(MESSAGES).add(chatId, 1, now);
+        chats.get(BYTES).add(chatId, bytes, now);
+        senders.get(MESSAGES).add(sender, 1, now);
+        senders.get(BYTES).add(sender, bytes, now);
+    }
+
+    public void recordAiCall(Long chatId, String sender) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        chats.get(AI_CALLS).add(chatId, 1, now);
+        senders.get(AI_CALLS).add(sender, 1, now);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration window() {
+        return window;
+    }
+
+    public int topK() {
+        return topK;
+    }
+
+    /** Per metric: the window total and the heaviest chats, heaviest first. */
+    public Map<String, Object> topChats(int limit) {
+        return snapshot(chats, limit);
+    }
+
+    /** Per metric: the window total and the heaviest senders, heaviest first. */
+    public Map<String, Object> topSenders(int limit) {
+        return snapshot(senders, limit);
+    }
+
+    private static <K> Map<String, Object> snapshot(Map<String, HeavyHitterSketch<K>> sketches, int limit) {
+        long now = System.nanoTime();
+        Map<String, Object> result = new LinkedHashMap<>();
+        sketches.forEach((metric, sketch) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("total", sketch.total(now));
+            entry.put("top", sketch.top(limit, now));
+            result.put(metric, entry);
+        });
+        return result;
+    }
+}
@@ -0,0 +1,60 @@
+package com.chat.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Common fields for the per-message JFR events. Events are only materialised when a recording
+ * with them enabled is running, so the steady-state cost is a couple of timestamp reads.
+ */
+@Category({"Chat", "Messages"})
+@StackTrace(false)
+public abstract class ChatPipelineEvent extends Event {
+
+    @Label("Chat Id")
+    public long chatId;
+
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Payload Size")
+    @DataAmount
+    public long bytes;
+
+    /** Ends the event and, only if a recording wants it, fills in the fields and commits. */
+    public void finish(Long chatId, String messageType, String content) {
+        end();
+        if (shouldCommit()) {
+            this.chatId = chatId != null ? chatId : -1;
+            this.messageType = messageType;
+            this.bytes = utf8Length(content);
+            commit();
+        }
+    }
+
+    /** Size of the content as sent over the wire, counted without encoding it. */
+    private static long utf8Length(String content) {
+        if (content == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < content.length()
+                    && Character.isLowSurrogate(content.charAt(i + 1))) {
+                bytes += 4; // One code point above the BMP, as a surrogate pair
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,40 @@
+package com.chat.monitoring;
+
+import com.chat.config.DrainCoordinator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Drains this node ahead of shutdown, for a Kubernetes preStop hook.
+ * <ul>
+ *   <li>{@code GET /actuator/drain}: whether the node is draining</li>
+ *   <li>{@code POST /actuator/drain}: drain now; returns when idle or timed out, with what was left</li>
+ * </ul>
+ * SIGTERM drains anyway; calling this first only moves the wait out of the shutdown itself.
+ */
+@Component
+@Endpoint(id = "drain")
+public class DrainEndpoint {
+
+    private final DrainCoordinator drainCoordinator;
+
+    @Autowired
+    public DrainEndpoint(DrainCoordinator drainCoordinator) {
+        this.drainCoordinator = drainCoordinator;
+    }
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return Map.of("draining", drainCoordinator.isDraining());
+    }
+
+    @WriteOperation
+    public Map<String, Object> drain() {
+        return drainCoordinator.drain();
+    }
+}
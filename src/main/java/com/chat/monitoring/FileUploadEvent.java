@@ -0,0 +1,27 @@
+package com.chat.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.chat.FileUpload")
+@Label("File Upload")
+@Description("Upload of a chat attachment to Cloudinary")
+@Category({"Chat", "Upstream"})
+@StackTrace(false)
+public class FileUploadEvent extends Event {
+
+    @Label("Content Type")
+    public String contentType;
+
+    @Label("File Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,120 @@
+package com.chat.monitoring;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Starts, dumps and stops an on-demand JDK Flight Recorder recording on this node.
+ * <ul>
+ *   <li>{@code POST /actuator/flightrecording}: start (optional {@code settings}: default|profile, {@code maxAgeMinutes})</li>
+ *   <li>{@code GET /actuator/flightrecording}: status</li>
+ *   <li>{@code GET /actuator/flightrecording/dump}: download a .jfr snapshot of the running recording</li>
+ *   <li>{@code DELETE /actuator/flightrecording}: stop and discard</li>
+ * </ul>
+ */
+@Component
+@Endpoint(id = "flightrecording")
+public class FlightRecorderEndpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorderEndpoint.class);
+
+    private static final List<Class<? extends Event>> CHAT_EVENTS = List.of(
+            MessageReceiveEvent.class, MessagePersistEvent.class, MessageBroadcastEvent.class,
+            GeminiCallEvent.class, FileUploadEvent.class);
+
+    private Recording recording;
+
+    @WriteOperation
+    public synchronized Map<String, Object> start(@Nullable String settings, @Nullable Integer maxAgeMinutes)
+            throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            return status();
+        }
+        Configuration configuration = Configuration.getConfiguration(settings != null ? settings : "default");
+        Recording started = new Recording(configuration);
+        started.setName("chat-on-demand");
+        started.setToDisk(true);
+        started.setMaxAge(Duration.ofMinutes(maxAgeMinutes != null ? maxAgeMinutes : 15));
+        CHAT_EVENTS.forEach(event -> started.enable(event).withThreshold(Duration.ZERO));
+        started.start();
+        recording = started;
+        log.info("Started on-demand JFR recording (settings={}, maxAge={})", configuration.getName(), started.getMaxAge());
+        return status();
+    }
+
+    @ReadOperation
+    public synchronized Map<String, Object> status() {
+        if (recording == null) {
+            return Map.of("state", "NONE");
+        }
+        return Map.of(
+                "state", recording.getState().name(),
+                "startTime", String.valueOf(recording.getStartTime()),
+                "maxAge", String.valueOf(recording.getMaxAge()),
+                "sizeBytes", recording.getSize());
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized Resource dump(@Selector String action) throws IOException {
+        if (!"dump".equals(action)) {
+            throw new IllegalArgumentException("Unknown action: " + action);
+        }
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("No running recording to dump; POST to start one first.");
+        }
+        Path file = Files.createTempFile("chat-", ".jfr");
+        try {
+            recording.dump(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new DeletedAfterReading(file);
+    }
+
+    @DeleteOperation
+    public synchronized Map<String, Object> stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+            log.info("Stopped on-demand JFR recording");
+        }
+        return Map.of("state", "NONE");
+    }
+
+    /** A dump file that is removed as soon as the response has streamed it. */
+    private static final class DeletedAfterReading extends FileSystemResource {
+
+        private DeletedAfterReading(Path file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(getFile().toPath(), StandardOpenOption.DELETE_ON_CLOSE);
+        }
+    }
+}
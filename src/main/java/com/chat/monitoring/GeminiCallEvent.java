@@ -0,0 +1,31 @@
+package com.chat.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.chat.GeminiCall")
+@Label("Gemini Call")
+@Description("Round trip to the Gemini generateContent API")
+@Category({"Chat", "Upstream"})
+@StackTrace(false)
+public class GeminiCallEvent extends Event {
+
+    @Label("Chat Id")
+    public long chatId;
+
+    @Label("Prompt Size")
+    @DataAmount
+    public long promptBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    public long responseBytes;
+
+    @Label("Success")
+    public boolean success;
+}
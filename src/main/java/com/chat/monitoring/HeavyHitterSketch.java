@@ -0,0 +1,188 @@
+package com.chat.monitoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Approximate top-K of a stream of weighted keys over a sliding window, in constant memory.
+ * <p>
+ * The window is a ring of {@code buckets} slices. Each slice has a count-min sketch ({@code depth} rows of
+ * {@code width} counters) and a candidate set of at most {@code k} keys with a lazily maintained min-heap:
+ * a key joins when its estimate beats the smallest candidate. A slice is cleared when the ring comes back
+ * around to it, so the window slides in steps of {@code window / buckets}. Window totals for a key sum its
+ * estimates over the live slices; counts are overestimates by at most about {@code e / width} of the
+ * slice's total weight, with high probability in {@code depth}.
+ */
+public class HeavyHitterSketch<K> {
+
+    public record Entry<K>(K key, long count) {
+    }
+
+    private final int depth;
+    private final int width;
+    private final int k;
+    private final long bucketNanos;
+    private final List<Slice> slices; // A list, since Slice is generic through K and arrays of it are not
+
+    public HeavyHitterSketch(int depth, int width, int k, long windowNanos, int buckets) {
+        this.depth = depth;
+        this.width = width;
+        this.k = k;
+        this.bucketNanos = Math.max(1, windowNanos / buckets);
+        List<Slice> ring = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            ring.add(new Slice());
+        }
+        this.slices = List.copyOf(ring);
+    }
+
+    public void add(K key, long weight, long nowNanos) {
+        long epoch = nowNanos / bucketNanos;
+        Slice slice = slices.get((int) Math.floorMod(epoch, (long) slices.size()));
+        long hash = hash(key);
+        synchronized (slice) {
+            if (slice.epoch != epoch) {
+                slice.reset(epoch);
+            }
+            slice.total += weight;
+            slice.offer(key, slice.increment(hash, weight));
+        }
+    }
+
+    /** The heaviest keys over the window ending at {@code nowNanos}, heaviest first. */
+    public List<Entry<K>> top(int limit, long nowNanos) {
+        long epoch = nowNanos / bucketNanos;
+        Set<K> keys = new HashSet<>();
+        for (Slice slice : slices) {
+            synchronized (slice) {
+                if (live(slice, epoch)) {
+                    keys.addAll(slice.candidates.keySet());
+                }
+            }
+        }
+        List<Entry<K>> entries = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            entries.add(new Entry<>(key, estimate(key, nowNanos)));
+        }
+        entries.sort(Comparator.comparingLong((Entry<K> entry) -> entry.count).reversed());
+        return entries.size() > limit ? entries.subList(0, limit) : entries;
+    }
+
+    public long estimate(K key, long nowNanos) {
+        long epoch = nowNanos / bucketNanos;
+        long hash = hash(key);
+        long count = 0;
+        for (Slice slice : slices) {
+            synchronized (slice) {
+                if (live(slice, epoch)) {
+                    count += slice.estimate(hash);
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Total weight added over the window ending at {@code nowNanos}. */
+    public long total(long nowNanos) {
+        long epoch = nowNanos / bucketNanos;
+        long total = 0;
+        for (Slice slice : slices) {
+            synchronized (slice) {
+                if (live(slice, epoch)) {
+                    total += slice.total;
+                }
+            }
+        }
+        return total;
+    }
+
+    private boolean live(Slice slice, long epoch) {
+        return slice.epoch <= epoch && slice.epoch > epoch - slices.size();
+    }
+
+    private static long hash(Object key) {
+        return mix(key.hashCode());
+    }
+
+    private static long mix(long h) {
+        // SplitMix64 finalizer
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private final class Slice {
+        private final long[] counters = new long[depth * width];
+        private final Map<K, Long> candidates = new HashMap<>();
+        // May hold stale counts; fixed up when they reach the top
+        private final PriorityQueue<Entry<K>> minHeap = new PriorityQueue<>(Comparator.comparingLong(Entry::count));
+        private long epoch = Long.MIN_VALUE;
+        private long total;
+
+        private void reset(long epoch) {
+            Arrays.fill(counters, 0);
+            candidates.clear();
+            minHeap.clear();
+            this.epoch = epoch;
+            this.total = 0;
+        }
+
+        private long increment(long hash, long weight) {
+            long min = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                int cell = row * width + index(hash, row);
+                counters[cell] += weight;
+                min = Math.min(min, counters[cell]);
+            }
+            return min;
+        }
+
+        private long estimate(long hash) {
+            long min = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                min = Math.min(min, counters[row * width + index(hash, row)]);
+            }
+            return min;
+        }
+
+        private int index(long hash, int row) {
+            // Re-mixed per row so that keys colliding in one row are unlikely to collide in the others
+            return (int) Math.floorMod(mix(hash + (row + 1) * 0x9E3779B97F4A7C15L), (long) width);
+        }
+
+        private void offer(K key, long estimate) {
+            if (candidates.replace(key, estimate) != null) {
+                return;
+            }
+            if (candidates.size() < k) {
+                candidates.put(key, estimate);
+                minHeap.add(new Entry<>(key, estimate));
+                return;
+            }
+            while (true) {
+                Entry<K> smallest = minHeap.peek();
+                long current = candidates.get(smallest.key);
+                if (current != smallest.count) {
+                    minHeap.poll();
+                    minHeap.add(new Entry<>(smallest.key, current));
+                    continue;
+                }
+                if (estimate <= current) {
+                    return;
+                }
+                minHeap.poll();
+                candidates.remove(smallest.key);
+                candidates.put(key, estimate);
+                minHeap.add(new Entry<>(key, estimate));
+                return;
+            }
+        }
+    }
+}
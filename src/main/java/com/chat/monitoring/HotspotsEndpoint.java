@@ -0,0 +1,63 @@
+package com.chat.monitoring;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hottest chats and senders on this node over the sliding window, from {@link ChatHotspots}.
+ * <ul>
+ *   <li>{@code GET /actuator/hotspots}: chats and senders by messages, bytes and AI calls (optional {@code limit})</li>
+ *   <li>{@code GET /actuator/hotspots/chats}, {@code GET /actuator/hotspots/senders}: one of the two</li>
+ * </ul>
+ * Counts are sketch estimates: never below the true count, occasionally somewhat above it.
+ */
+@Component
+@Endpoint(id = "hotspots")
+public class HotspotsEndpoint {
+
+    private final ChatHotspots hotspots;
+
+    @Autowired
+    public HotspotsEndpoint(ChatHotspots hotspots) {
+        this.hotspots = hotspots;
+    }
+
+    @ReadOperation
+    public Map<String, Object> hotspots(@Nullable Integer limit) {
+        Map<String, Object> result = header();
+        result.put("chats", hotspots.topChats(limit(limit)));
+        result.put("senders", hotspots.topSenders(limit(limit)));
+        return result;
+    }
+
+    @ReadOperation
+    public Map<String, Object> dimension(@Selector String dimension, @Nullable Integer limit) {
+        Map<String, Object> result = header();
+        switch (dimension) {
+            case "chats" -> result.put("chats", hotspots.topChats(limit(limit)));
+            case "senders" -> result.put("senders", hotspots.topSenders(limit(limit)));
+            default -> throw new InvalidEndpointRequestException("Unknown dimension '" + dimension + "'",
+                    "Expected chats or senders");
+        }
+        return result;
+    }
+
+    private Map<String, Object> header() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", hotspots.isEnabled());
+        result.put("windowSeconds", hotspots.window().toSeconds());
+        return result;
+    }
+
+    private int limit(Integer limit) {
+        return limit == null ? hotspots.topK() : Math.max(1, Math.min(limit, hotspots.topK()));
+    }
+}
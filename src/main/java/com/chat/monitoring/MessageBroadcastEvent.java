@@ -0,0 +1,11 @@
+package com.chat.monitoring;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.chat.MessageBroadcast")
+@Label("Message Broadcast")
+@Description("Handing a persisted chat message to the broker for delivery")
+public class MessageBroadcastEvent extends ChatPipelineEvent {
+}
@@ -0,0 +1,11 @@
+package com.chat.monitoring;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.chat.MessagePersist")
+@Label("Message Persist")
+@Description("Saving a chat message to Mongo")
+public class MessagePersistEvent extends ChatPipelineEvent {
+}
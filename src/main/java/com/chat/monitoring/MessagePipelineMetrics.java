@@ -0,0 +1,95 @@
+package com.chat.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Timers and summaries for the message pipeline and its upstream calls. Meters are created once
+ * here so the hot path only records into pre-resolved instances.
+ */
+@Component
+public class MessagePipelineMetrics {
+
+    public static final String STAGE_AUTHORIZE = "authorize";
+    public static final String STAGE_PERSIST = "persist";
+    public static final String STAGE_BROADCAST = "broadcast";
+    public static final String STAGE_AI_DISPATCH = "ai_dispatch";
+
+    private final Timer authorizeTimer;
+    private final Timer persistTimer;
+    private final Timer broadcastTimer;
+    private final Timer aiDispatchTimer;
+    private final Timer geminiSuccessTimer;
+    private final Timer geminiFailureTimer;
+    private final Timer uploadSuccessTimer;
+    private final Timer uploadFailureTimer;
+    private final DistributionSummary uploadSize;
+
+    @Autowired
+    public MessagePipelineMetrics(MeterRegistry registry) {
+        this.authorizeTimer = stageTimer(registry, STAGE_AUTHORIZE);
+        this.persistTimer = stageTimer(registry, STAGE_PERSIST);
+        this.broadcastTimer = stageTimer(registry, STAGE_BROADCAST);
+        this.aiDispatchTimer = stageTimer(registry, STAGE_AI_DISPATCH);
+        this.geminiSuccessTimer = outcomeTimer(registry, "chat.gemini.request", "Gemini generateContent round trip", "success");
+        this.geminiFailureTimer = outcomeTimer(registry, "chat.gemini.request", "Gemini generateContent round trip", "failure");
+        this.uploadSuccessTimer = outcomeTimer(registry, "chat.upload.duration", "Cloudinary upload duration", "success");
+        this.uploadFailureTimer = outcomeTimer(registry, "chat.upload.duration", "Cloudinary upload duration", "failure");
+        this.uploadSize = DistributionSummary.builder("chat.upload.size")
+                .description("Size of files uploaded to Cloudinary")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public <T> T recordStage(String stage, Supplier<T> work) {
+        return stageTimer(stage).record(work);
+    }
+
+    public void recordStage(String stage, Runnable work) {
+        stageTimer(stage).record(work);
+    }
+
+    public void recordGeminiCall(long nanos, boolean success) {
+        (success ? geminiSuccessTimer : geminiFailureTimer).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordUpload(long nanos, long bytes, boolean success) {
+        (success ? uploadSuccessTimer : uploadFailureTimer).record(nanos, TimeUnit.NANOSECONDS);
+        if (success) {
+            uploadSize.record(bytes);
+        }
+    }
+
+    private Timer stageTimer(String stage) {
+        return switch (stage) {
+            case STAGE_AUTHORIZE -> authorizeTimer;
+            case STAGE_PERSIST -> persistTimer;
+            case STAGE_BROADCAST -> broadcastTimer;
+            case STAGE_AI_DISPATCH -> aiDispatchTimer;
+            default -> throw new IllegalArgumentException("Unknown pipeline stage: " + stage);
+        };
+    }
+
+    private static Timer stageTimer(MeterRegistry registry, String stage) {
+        return Timer.builder("chat.message.stage")
+                .description("Time spent in each stage of handling an incoming chat message")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Timer outcomeTimer(MeterRegistry registry, String name, String description, String outcome) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,11 @@
+package com.chat.monitoring;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.chat.MessageReceive")
+@Label("Message Receive")
+@Description("Whole handling of one inbound STOMP chat message, from validation to AI dispatch")
+public class MessageReceiveEvent extends ChatPipelineEvent {
+}
@@ -0,0 +1,32 @@
+package com.chat.repo;
+
+import com.chat.model.ChatMember;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ChatMemberRepo extends JpaRepository<ChatMember, Long> {
+
+    @Query("select m.userId from ChatMember m where m.chatId = :chatId")
+    List<Long> findUserIdsByChatId(@Param("chatId") Long chatId);
+
+    @Query("select m.chatId from ChatMember m where m.userId = :userId")
+    List<Long> findChatIdsByUserId(@Param("userId") Long userId);
+
+    // 1 if added, 0 if already a member: a concurrent add of the same user is not an error
+    @Modifying
+    @Query(value = "insert into chat_members (chat_id, user_id) values (:chatId, :userId) on conflict do nothing",
+            nativeQuery = true)
+    int addIfAbsent(@Param("chatId") Long chatId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("delete from ChatMember m where m.chatId = :chatId and m.userId = :userId")
+    int deleteByChatIdAndUserId(@Param("chatId") Long chatId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("delete from ChatMember m where m.chatId = :chatId")
+    void deleteByChatId(@Param("chatId") Long chatId);
+}
@@ -1,14 +1,73 @@
 package com.chat.repo;
 
 import com.chat.model.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ChatMessageRepo extends MongoRepository<ChatMessage, String> {
     List<ChatMessage> findByChatId(Long chatId);
 
-    List<ChatMessage> findByChatIdOrderByTimestampAsc(Long chatId);
+    // Messages written before sequence numbers existed have no seq and sort first, by time
+    List<ChatMessage> findByChatIdOrderBySeqAscTimestampAsc(Long chatId);
+
+    // Best-effort cursor for clients that predate seqs. ObjectIds are minted by each node's driver and only
+    // ordered to the second: ids from different nodes in the same second, clock skew between nodes, or an
+    // insert that commits after a later id was seen can all put a missed message at or below the cursor.
+    // lastSeenSeqs has no such gaps (see the watermark in ChatSequenceAllocator)
+    List<ChatMessage> findByChatIdAndIdGreaterThanOrderByIdAsc(Long chatId, String lastSeenId, Pageable pageable);
+
+    List<ChatMessage> findByChatIdAndSeqGreaterThanOrderBySeqAsc(Long chatId, Long lastSeenSeq, Pageable pageable);
+
+    List<ChatMessage> findByChatIdOrderByIdAsc(Long chatId, Pageable pageable);
+
+    // The earlier copy of a resent message, found after its insert hit chat_client_message_idx
+    Optional<ChatMessage> findByChatIdAndSenderAndClientMessageId(Long chatId, String sender, String clientMessageId);
 
     void deleteByChatId(Long chatId);
+
+    // Archival: drop exactly the hot copies a segment holds, and enforce retention
+    long deleteByIdIn(Collection<String> ids);
+
+    long deleteByChatIdAndTimestampLessThan(Long chatId, LocalDateTime cutoff);
+
+    // Archival: hot messages inside an already sealed seq range (copies an interrupted run left, or late arrivals)
+    @Query(value = "{ 'chatId': ?0, 'seq': { '$gt': ?1, '$lte': ?2 } }", sort = "{ 'seq': 1 }")
+    List<ChatMessage> findInSeqRange(Long chatId, Long afterSeq, Long throughSeq, Pageable pageable);
+
+    // Changes to messages the client already has (seq <= its cursor) after its change cursor, up to the watermark
+    @Query(value = "{ 'chatId': ?0, 'changeSeq': { '$gt': ?1, '$lte': ?2 }, 'seq': { '$lte': ?3 } }",
+            sort = "{ 'changeSeq': 1 }")
+    List<ChatMessage> findChangesInRange(Long chatId, Long afterChangeSeq, Long throughChangeSeq, Long lastSeenSeq,
+                                         Pageable pageable);
+
+    // In-place changes. Tombstones match nothing; $max keeps changeSeq the newest even if two nodes race.
+    // An edit drops the link preview, which belonged to the old text
+    @Query("{ '_id': ?0, 'deleted': { '$ne': true } }")
+    @Update("{ '$set': { 'content': ?1, 'editedAt': ?2 }, '$unset': { 'linkPreview': '' }, '$max': { 'changeSeq': ?3 } }")
+    long updateContent(String id, String content, LocalDateTime editedAt, Long changeSeq);
+
+    @Query("{ '_id': ?0, 'deleted': { '$ne': true } }")
+    @Update("{ '$set': { 'deleted': true, 'content': null, 'fileName': null, 'fileType': null, 'reactions': [] }, '$unset': { 'linkPreview': '' }, '$max': { 'changeSeq': ?1 } }")
+    long markDeleted(String id, Long changeSeq);
+
+    @Query("{ '_id': ?0, 'deleted': { '$ne': true }, 'reactions': { '$not': { '$elemMatch': { 'emoji': ?1, 'user': ?2 } } } }")
+    @Update("{ '$push': { 'reactions': { 'emoji': ?1, 'user': ?2 } }, '$max': { 'changeSeq': ?3 } }")
+    long addReaction(String id, String emoji, String user, Long changeSeq);
+
+    @Query("{ '_id': ?0, 'deleted': { '$ne': true }, 'reactions': { '$elemMatch': { 'emoji': ?1, 'user': ?2 } } }")
+    @Update("{ '$pull': { 'reactions': { 'emoji': ?1, 'user': ?2 } }, '$max': { 'changeSeq': ?3 } }")
+    long removeReaction(String id, String emoji, String user, Long changeSeq);
+
+    // Only while the message still has the text the preview was made from, so a slow unfurl can't land after an edit
+    @Query("{ '_id': ?0, 'deleted': { '$ne': true }, 'content': ?1 }")
+    @Update("{ '$set': { 'linkPreview': { 'url': ?2, 'title': ?3, 'description': ?4, 'imageUrl': ?5, 'siteName': ?6 } }, '$max': { 'changeSeq': ?7 } }")
+    long setLinkPreview(String id, String content, String url, String title, String description, String imageUrl,
+                        String siteName, Long changeSeq);
 }
@@ -0,0 +1,298 @@
+package com.chat.repo;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP sessions stored in Postgres so any node can serve any user and restarts don't log people out.
+ * <p>
+ * Every lookup reads the row, by primary key: the session carries the security context, so a logout or
+ * session id change on another node must take effect on the very next request here, which no node-local
+ * cache can promise. Rows are only written when the session is new, its attributes, id or timeout changed,
+ * or its persisted last-access time is older than {@code chat.session.access-write-interval}. Expired rows
+ * are swept in the background.
+ */
+@Repository
+@Profile("!loadtest")
+public class JdbcSessionRepository implements SessionRepository<JdbcSessionRepository.StoredSession> {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcSessionRepository.class);
+
+    static final String CREATE_TABLE = """
+            CREATE TABLE IF NOT EXISTS chat_sessions (
+                session_id VARCHAR(64) PRIMARY KEY,
+                creation_time BIGINT NOT NULL,
+                last_access_time BIGINT NOT NULL,
+                max_inactive_seconds INT NOT NULL,
+                expiry_time BIGINT NOT NULL,
+                attributes BYTEA NOT NULL
+            )""";
+    private static final String CREATE_EXPIRY_INDEX =
+            "CREATE INDEX IF NOT EXISTS chat_sessions_expiry_idx ON chat_sessions (expiry_time)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration defaultMaxInactive;
+    private final Duration accessWriteInterval;
+
+    private final SerializingConverter serializer = new SerializingConverter();
+    private final DeserializingConverter deserializer =
+            new DeserializingConverter(JdbcSessionRepository.class.getClassLoader());
+
+    private final ScheduledExecutorService sweeper;
+    private volatile boolean schemaReady;
+
+    @Autowired
+    public JdbcSessionRepository(JdbcTemplate jdbcTemplate,
+                                 @Value("${server.servlet.session.timeout:30m}") Duration defaultMaxInactive,
+                                 @Value("${chat.session.access-write-interval:60s}") Duration accessWriteInterval,
+                                 @Value("${chat.session.cleanup-interval:5m}") Duration cleanupInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.defaultMaxInactive = defaultMaxInactive;
+        this.accessWriteInterval = accessWriteInterval;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, cleanupInterval.toSeconds());
+        sweeper.scheduleWithFixedDelay(this::deleteExpired, period, period, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public StoredSession createSession() {
+        MapSession session = new MapSession();
+        session.setMaxInactiveInterval(defaultMaxInactive);
+        return new StoredSession(session, true, null);
+    }
+
+    @Override
+    public void save(StoredSession session) {
+        ensureSchema();
+        MapSession current = session.delegate;
+        if (session.isNew) {
+            insert(current);
+        } else if (session.changed || !session.originalId.equals(current.getId())) {
+            update(session.originalId, current);
+        } else if (Duration.between(session.persistedLastAccess, current.getLastAccessedTime())
+                .compareTo(accessWriteInterval) >= 0) {
+            jdbcTemplate.update(
+                    "UPDATE chat_sessions SET last_access_time = ?, expiry_time = ? WHERE session_id = ?",
+                    current.getLastAccessedTime().toEpochMilli(), expiryMillis(current), current.getId());
+        } else {
+            // Nothing worth a write
+            return;
+        }
+        session.markPersisted();
+    }
+
+    @Override
+    public StoredSession findById(String id) {
+        MapSession loaded = load(id);
+        if (loaded == null) {
+            return null;
+        }
+        if (loaded.isExpired()) {
+            deleteById(id);
+            return null;
+        }
+        return new StoredSession(loaded, false, loaded.getLastAccessedTime());
+    }
+
+    @Override
+    public void deleteById(String id) {
+        ensureSchema();
+        jdbcTemplate.update("DELETE FROM chat_sessions WHERE session_id = ?", id);
+    }
+
+    void deleteExpired() {
+        try {
+            ensureSchema();
+            int deleted = jdbcTemplate.update("DELETE FROM chat_sessions WHERE expiry_time < ?",
+                    System.currentTimeMillis());
+            if (deleted > 0) {
+                log.debug("Removed {} expired sessions", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("Expired session cleanup failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    private MapSession load(String id) {
+        ensureSchema();
+        List<MapSession> rows = jdbcTemplate.query(
+                "SELECT session_id, creation_time, last_access_time, max_inactive_seconds, attributes "
+                        + "FROM chat_sessions WHERE session_id = ?",
+                (rs, rowNum) -> {
+                    MapSession session = new MapSession(rs.getString("session_id"));
+                    session.setCreationTime(Instant.ofEpochMilli(rs.getLong("creation_time")));
+                    session.setLastAccessedTime(Instant.ofEpochMilli(rs.getLong("last_access_time")));
+                    session.setMaxInactiveInterval(Duration.ofSeconds(rs.getInt("max_inactive_seconds")));
+                    Map<?, ?> attributes = (Map<?, ?>) deserializer.convert(rs.getBytes("attributes"));
+                    attributes.forEach((name, value) -> session.setAttribute((String) name, value));
+                    return session;
+                },
+                id);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private void insert(MapSession session) {
+        jdbcTemplate.update(
+                "INSERT INTO chat_sessions (session_id, creation_time, last_access_time, max_inactive_seconds, "
+                        + "expiry_time, attributes) VALUES (?, ?, ?, ?, ?, ?)",
+                session.getId(), session.getCreationTime().toEpochMilli(),
+                session.getLastAccessedTime().toEpochMilli(), (int) session.getMaxInactiveInterval().toSeconds(),
+                expiryMillis(session), serializeAttributes(session));
+    }
+
+    private void update(String originalId, MapSession session) {
+        jdbcTemplate.update(
+                "UPDATE chat_sessions SET session_id = ?, last_access_time = ?, max_inactive_seconds = ?, "
+                        + "expiry_time = ?, attributes = ? WHERE session_id = ?",
+                session.getId(), session.getLastAccessedTime().toEpochMilli(),
+                (int) session.getMaxInactiveInterval().toSeconds(), expiryMillis(session),
+                serializeAttributes(session), originalId);
+    }
+
+    private byte[] serializeAttributes(MapSession session) {
+        Map<String, Object> attributes = new HashMap<>();
+        for (String name : session.getAttributeNames()) {
+            attributes.put(name, session.getAttribute(name));
+        }
+        return serializer.convert(attributes);
+    }
+
+    private static long expiryMillis(MapSession session) {
+        return session.getLastAccessedTime().plus(session.getMaxInactiveInterval()).toEpochMilli();
+    }
+
+    // Created on first use rather than at startup, so the context can refresh without a database
+    private void ensureSchema() {
+        if (schemaReady) {
+            return;
+        }
+        synchronized (this) {
+            if (!schemaReady) {
+                jdbcTemplate.execute(CREATE_TABLE);
+                jdbcTemplate.execute(CREATE_EXPIRY_INDEX);
+                schemaReady = true;
+            }
+        }
+    }
+
+    /** A request's working copy of a session, remembering what it looked like when last persisted. */
+    public static final class StoredSession implements Session {
+
+        private final MapSession delegate;
+        private boolean isNew;
+        private boolean changed;
+        private String originalId;
+        private Instant persistedLastAccess;
+
+        StoredSession(MapSession delegate, boolean isNew, Instant persistedLastAccess) {
+            this.delegate = delegate;
+            this.isNew = isNew;
+            this.originalId = delegate.getId();
+            this.persistedLastAccess = persistedLastAccess;
+        }
+
+        private void markPersisted() {
+            isNew = false;
+            changed = false;
+            originalId = delegate.getId();
+            persistedLastAccess = delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            return delegate.changeSessionId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            delegate.setAttribute(attributeName, attributeValue);
+            changed = true;
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            if (delegate.getAttribute(attributeName) != null) {
+                delegate.removeAttribute(attributeName);
+                changed = true;
+            }
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            delegate.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            if (!interval.equals(delegate.getMaxInactiveInterval())) {
+                delegate.setMaxInactiveInterval(interval);
+                changed = true;
+            }
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return delegate.getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return delegate.isExpired();
+        }
+    }
+}
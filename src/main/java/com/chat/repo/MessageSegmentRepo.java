@@ -0,0 +1,40 @@
+package com.chat.repo;
+
+import com.chat.model.MessageSegment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// The index lookups leave the compressed payload behind; load segments by id once you know which you need
+public interface MessageSegmentRepo extends MongoRepository<MessageSegment, String> {
+
+    @Query(value = "{ 'chatId': ?0 }", fields = "{ 'data': 0 }", sort = "{ 'firstSeq': 1 }")
+    List<MessageSegment> findIndexByChatId(Long chatId);
+
+    @Query(value = "{ 'chatId': ?0, 'lastSeq': { '$gt': ?1 } }", fields = "{ 'data': 0 }", sort = "{ 'firstSeq': 1 }")
+    List<MessageSegment> findIndexByChatIdAndLastSeqGreaterThan(Long chatId, Long seq);
+
+    // Hex ObjectIds have a fixed width, so string order is id order
+    @Query(value = "{ 'chatId': ?0, 'lastMessageId': { '$gt': ?1 } }", fields = "{ 'data': 0 }", sort = "{ 'firstSeq': 1 }")
+    List<MessageSegment> findIndexByChatIdAndLastMessageIdGreaterThan(Long chatId, String messageId);
+
+    @Query(value = "{ 'chatId': ?0 }", fields = "{ 'data': 0 }", sort = "{ 'lastSeq': -1 }")
+    List<MessageSegment> findLatestIndexByChatId(Long chatId, Pageable pageable);
+
+    // One summary per chat that has segments: only chatId, lastSeq and lastMessageId are set
+    @Aggregation(pipeline = {
+            "{ '$match': { 'chatId': { '$in': ?0 } } }",
+            "{ '$group': { '_id': '$chatId', 'lastSeq': { '$max': '$lastSeq' }, 'lastMessageId': { '$max': '$lastMessageId' } } }",
+            "{ '$project': { '_id': 0, 'chatId': '$_id', 'lastSeq': 1, 'lastMessageId': 1 } }"
+    })
+    List<MessageSegment> findArchivedThroughByChatIdIn(Collection<Long> chatIds);
+
+    long deleteByChatIdAndLastTimestampLessThan(Long chatId, LocalDateTime cutoff);
+
+    void deleteByChatId(Long chatId);
+}
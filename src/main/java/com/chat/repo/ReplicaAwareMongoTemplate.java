@@ -0,0 +1,38 @@
+package com.chat.repo;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+/**
+ * Reads one collection with a secondary read preference whenever {@link ReplicaRouting} allows it; all other
+ * collections, and writes, keep the client's settings. Read preference does not apply to writes, so only
+ * queries on the collection move.
+ */
+public class ReplicaAwareMongoTemplate extends MongoTemplate {
+
+    private final String collectionName;
+    private final ReadPreference replicaReadPreference;
+    private final ReplicaRouting routing;
+
+    public ReplicaAwareMongoTemplate(MongoDatabaseFactory databaseFactory, MongoConverter converter,
+                                     String collectionName, ReadPreference replicaReadPreference,
+                                     ReplicaRouting routing) {
+        super(databaseFactory, converter);
+        this.collectionName = collectionName;
+        this.replicaReadPreference = replicaReadPreference;
+        this.routing = routing;
+    }
+
+    @Override
+    protected MongoCollection<Document> prepareCollection(MongoCollection<Document> collection) {
+        MongoCollection<Document> prepared = super.prepareCollection(collection);
+        if (collectionName.equals(collection.getNamespace().getCollectionName()) && routing.replicaAllowed()) {
+            return prepared.withReadPreference(replicaReadPreference);
+        }
+        return prepared;
+    }
+}
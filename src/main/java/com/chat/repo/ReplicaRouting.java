@@ -0,0 +1,82 @@
+package com.chat.repo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Decides whether a read may go to a replica (Postgres read replica, Mongo secondary) or must see the primary.
+ * <p>
+ * Reads go to replicas unless the current thread is inside {@link #onPrimary} or the authenticated user wrote
+ * something within {@code chat.replicas.read-your-writes-window}, which should exceed the usual replication lag:
+ * a user who just created a chat or sent a message reads it back from the primary, everyone else reads from the
+ * replicas. Which reads are eligible at all is up to the caller: read-only transactions for JPA
+ * ({@link ReplicaRoutingDataSource}), the message collection for Mongo ({@link ReplicaAwareMongoTemplate}).
+ */
+@Component
+public class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final long windowNanos;
+    private final Map<String, Long> recentWriters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReplicaRouting(@Value("${chat.replicas.read-your-writes-window:5s}") Duration readYourWritesWindow) {
+        this.windowNanos = readYourWritesWindow.toNanos();
+    }
+
+    /** Runs reads that must not be stale (read-modify-write, authorization) against the primaries. */
+    public static <T> T onPrimary(Supplier<T> reads) {
+        if (PINNED.get() != null) {
+            return reads.get();
+        }
+        PINNED.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            PINNED.remove();
+        }
+    }
+
+    public void wrote(String username) {
+        long now = System.nanoTime();
+        recentWriters.put(username, now);
+        if (recentWriters.size() > 10_000) {
+            recentWriters.values().removeIf(at -> now - at > windowNanos);
+        }
+    }
+
+    public boolean replicaAllowed() {
+        if (PINNED.get() != null) {
+            return false;
+        }
+        String username = currentUser();
+        Long wroteAt = username != null ? recentWriters.get(username) : null;
+        if (wroteAt == null) {
+            return true;
+        }
+        if (System.nanoTime() - wroteAt > windowNanos) {
+            recentWriters.remove(username, wroteAt);
+            return true;
+        }
+        return false;
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
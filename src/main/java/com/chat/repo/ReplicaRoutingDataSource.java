@@ -0,0 +1,46 @@
+package com.chat.repo;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.Map;
+
+/**
+ * Sends connections for read-only transactions to the replica and everything else to the primary. Spring Data
+ * JPA runs its finders in read-only transactions, so plain repository reads are routed without any changes to
+ * the callers; a finder called inside a read-write transaction joins it and stays on the primary.
+ * <p>
+ * Use it through {@link #lazy}: the transaction manager asks for a connection before it marks the transaction
+ * read-only, so the real connection has to be fetched at the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target { PRIMARY, REPLICA }
+
+    private final ReplicaRouting routing;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaRouting routing) {
+        this.routing = routing;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    public static DataSource lazy(DataSource primary, DataSource replica, ReplicaRouting routing) {
+        LazyConnectionDataSourceProxy proxy =
+                new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica, routing));
+        // Known up front, so the proxy does not open a connection at startup to find out
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return proxy;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && routing.replicaAllowed()
+                ? Target.REPLICA : Target.PRIMARY;
+    }
+}
@@ -2,11 +2,20 @@ package com.chat.repo;
 
 import com.chat.model.UserModel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepo extends JpaRepository<UserModel,Long> {
     Optional<UserModel> findByUsername(String username);
+
+    List<UserModel> findByUsernameIn(Collection<String> usernames);
+
+    // Usernames only, for the in-memory autocomplete index
+    @Query("select u.username from UserModel u")
+    List<String> findAllUsernames();
 }
@@ -0,0 +1,178 @@
+package com.chat.service;
+
+import com.chat.model.ChatModelCreation;
+import com.chat.model.UserModel;
+import com.chat.repo.ChatMemberRepo;
+import com.chat.repo.ChatRepository;
+import com.chat.repo.ReplicaRouting;
+import com.chat.repo.UserRepo;
+import com.chat.util.LongOpenHashSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Node-local cache of who is in each chat, as primitive long sets of user ids.
+ * <p>
+ * A chat's set is loaded with one query on first use (two-party chats from the chat row, groups from
+ * chat_members) and replaced copy-on-write when this node changes membership, so readers never lock.
+ * The map holds a future per chat: the first caller installs it and runs the query outside the map's lock,
+ * so a slow load holds up only callers for that chat, not others hashing to the same bin; concurrent callers
+ * wait for that one load. A change applied while a load is in flight is chained onto its future, so it lands
+ * on the loaded set instead of being overwritten by it. Callers apply changes after their
+ * transaction commits. Entries are reloaded after {@code chat.membership.cache-ttl}, which bounds how long a
+ * change made on another node goes unseen here. At most {@code chat.membership.max-chats} chats are cached;
+ * past that, expired entries and then arbitrary ones are dropped and simply load again on next use.
+ * <p>
+ * Usernames are resolved from ids through a second, unbounded map: usernames never change and users are
+ * never deleted, so fanning a message out to each member's user queue costs no query once warm.
+ */
+@Service
+public class ChatMembershipService {
+
+    private static final LongOpenHashSet NO_MEMBERS = new LongOpenHashSet(0);
+
+    private final ChatRepository chatRepository;
+    private final ChatMemberRepo chatMemberRepo;
+    private final UserRepo userRepo;
+    private final long ttlNanos;
+    private final int maxChats;
+
+    private final Map<Long, Entry> members = new ConcurrentHashMap<>();
+    private final Map<Long, String> usernamesById = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ChatMembershipService(ChatRepository chatRepository, ChatMemberRepo chatMemberRepo, UserRepo userRepo,
+                                 @Value("${chat.membership.cache-ttl:60s}") Duration ttl,
+                                 @Value("${chat.membership.max-chats:100000}") int maxChats) {
+        this.chatRepository = chatRepository;
+        this.chatMemberRepo = chatMemberRepo;
+        this.userRepo = userRepo;
+        this.ttlNanos = ttl.toNanos();
+        this.maxChats = Math.max(1, maxChats);
+    }
+
+    public boolean isMember(Long chatId, long userId) {
+        return members(chatId).contains(userId);
+    }
+
+    /** The current member set. Treat it as read-only; it may be shared with other callers. */
+    public LongOpenHashSet members(Long chatId) {
+        if (chatId == null) {
+            return NO_MEMBERS;
+        }
+        Entry entry = members.get(chatId);
+        if (entry == null || expired(entry, System.nanoTime())) {
+            if (entry != null) {
+                members.remove(chatId, entry);
+            }
+            Entry loading = new Entry(new CompletableFuture<>(), System.nanoTime());
+            entry = members.computeIfAbsent(chatId, id -> loading);
+            if (entry == loading) {
+                load(chatId, loading);
+                if (members.size() > maxChats) {
+                    trim();
+                }
+            }
+        }
+        try {
+            return entry.userIds.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /** Usernames of the chat's members; ids without a user row (such as the AI participant) are skipped. */
+    public List<String> memberUsernames(Long chatId) {
+        LongOpenHashSet userIds = members(chatId);
+        List<String> usernames = new ArrayList<>(userIds.size());
+        List<Long> missing = new ArrayList<>();
+        userIds.forEach(userId -> {
+            String username = usernamesById.get(userId);
+            if (username != null) {
+                usernames.add(username);
+            } else {
+                missing.add(userId);
+            }
+        });
+        if (!missing.isEmpty()) {
+            for (UserModel user : userRepo.findAllById(missing)) {
+                usernamesById.put(user.getId(), user.getUsername());
+                usernames.add(user.getUsername());
+            }
+        }
+        return usernames;
+    }
+
+    public void added(Long chatId, long userId) {
+        change(chatId, userIds -> userIds.add(userId));
+    }
+
+    public void removed(Long chatId, long userId) {
+        change(chatId, userIds -> userIds.remove(userId));
+    }
+
+    private void change(Long chatId, Consumer<LongOpenHashSet> change) {
+        members.computeIfPresent(chatId, (id, entry) -> new Entry(entry.userIds.thenApply(userIds -> {
+            LongOpenHashSet updated = userIds.copy();
+            change.accept(updated);
+            return updated;
+        }), entry.loadedAt));
+    }
+
+    public void evict(Long chatId) {
+        members.remove(chatId);
+    }
+
+    private boolean expired(Entry entry, long now) {
+        return now - entry.loadedAt > ttlNanos;
+    }
+
+    private void trim() {
+        long now = System.nanoTime();
+        members.values().removeIf(entry -> expired(entry, now));
+        Iterator<Long> chatIds = members.keySet().iterator();
+        while (members.size() > maxChats && chatIds.hasNext()) {
+            chatIds.next();
+            chatIds.remove();
+        }
+    }
+
+    private void load(Long chatId, Entry loading) {
+        try {
+            // An authorization decision cached for the TTL: not worth risking a lagging replica
+            loading.userIds.complete(ReplicaRouting.onPrimary(() -> query(chatId)));
+        } catch (RuntimeException e) {
+            loading.userIds.completeExceptionally(e);
+            // Including changes chained on it since, so the next caller tries again
+            members.computeIfPresent(chatId, (id, entry) -> entry.userIds.isCompletedExceptionally() ? null : entry);
+        }
+    }
+
+    private LongOpenHashSet query(Long chatId) {
+        ChatModelCreation chat = chatRepository.findByChatId(chatId).orElse(null);
+        if (chat == null) {
+            return NO_MEMBERS;
+        }
+        if (!chat.isGroup()) {
+            return LongOpenHashSet.of(chat.getOwnerId(), chat.getReceiverId());
+        }
+        List<Long> userIds = chatMemberRepo.findUserIdsByChatId(chatId);
+        LongOpenHashSet set = new LongOpenHashSet(userIds.size());
+        userIds.forEach(set::add);
+        return set;
+    }
+
+    private record Entry(CompletableFuture<LongOpenHashSet> userIds, long loadedAt) {
+    }
+}
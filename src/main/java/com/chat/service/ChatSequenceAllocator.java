@@ -0,0 +1,201 @@
+package com.chat.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Assigns per-chat, strictly increasing message sequence numbers, and tells sync how far they are written.
+ * <p>
+ * Numbers are taken from blocks this node reserves through {@link SequenceBlockSource}, so the common case is
+ * a single atomic increment with no lock and no database round trip. Blocks of different nodes interleave,
+ * and a number is taken before its write becomes readable, so a higher number can be readable before a lower
+ * one. Sync therefore reads only up to a chat's watermark ({@link #watermarks}): every {@link #next} is paired
+ * with a {@link #finished} once the write has succeeded or failed, and every
+ * {@code chat.sequence.floor-interval} this node publishes, per chat, the lowest number it may still write.
+ * A block is given up after {@code chat.sequence.block-lifetime}, so an idle node does not hold a chat's
+ * watermark back for long; its unused numbers are harmless gaps.
+ */
+@Service
+public class ChatSequenceAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatSequenceAllocator.class);
+
+    private final SequenceBlockSource blockSource;
+    private final int blockSize;
+    private final long blockLifetimeNanos;
+    private final String node = UUID.randomUUID().toString();
+    private final Map<Long, ChatBlocks> chats = new ConcurrentHashMap<>();
+    // Reservations share it and publishing takes it alone, so a floor computed before a reservation
+    // can't be written over the one that reservation pinned
+    private final ReadWriteLock publishing = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService publisher;
+
+    @Autowired
+    public ChatSequenceAllocator(SequenceBlockSource blockSource,
+                                 @Value("${chat.sequence.block-size:100}") int blockSize,
+                                 @Value("${chat.sequence.block-lifetime:1s}") Duration blockLifetime,
+                                 @Value("${chat.sequence.floor-interval:1s}") Duration floorInterval) {
+        this.blockSource = blockSource;
+        this.blockSize = Math.max(1, blockSize);
+        this.blockLifetimeNanos = blockLifetime.toNanos();
+        this.publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sequence-floors");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, floorInterval.toMillis());
+        publisher.scheduleWithFixedDelay(this::publishFloors, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        publisher.shutdownNow();
+    }
+
+    /** Takes the chat's next number; the caller must pass it to {@link #finished} once its write is done. */
+    public long next(Long chatId) {
+        while (true) {
+            ChatBlocks chat = chats.computeIfAbsent(chatId, id -> new ChatBlocks());
+            Block block = chat.current;
+            if (block != null) {
+                long seq = block.next.getAndIncrement();
+                if (seq < block.limit) {
+                    return seq;
+                }
+            }
+            reserve(chatId, chat, block);
+        }
+    }
+
+    /** The write that took {@code seq} has been stored, or has failed and will never be. */
+    public void finished(Long chatId, long seq) {
+        ChatBlocks chat = chats.get(chatId);
+        if (chat != null) {
+            chat.finished.add(seq);
+        }
+    }
+
+    /** Per chat, the highest number at or below which every write is readable; see {@link SequenceBlockSource}. */
+    public Map<Long, Long> watermarks(Collection<Long> chatIds) {
+        return blockSource.watermarks(chatIds);
+    }
+
+    private void reserve(Long chatId, ChatBlocks chat, Block exhausted) {
+        publishing.readLock().lock();
+        try {
+            synchronized (chat) {
+                // Only the thread that sees the exhausted block reserves a new one; others retry on it
+                if (chat.released || chat.current != exhausted) {
+                    return;
+                }
+                long first = blockSource.reserve(chatId, blockSize, node);
+                if (exhausted != null) {
+                    exhausted.end = exhausted.limit;
+                }
+                Block block = new Block(first, first + blockSize, System.nanoTime());
+                chat.blocks.add(block);
+                chat.current = block;
+            }
+        } finally {
+            publishing.readLock().unlock();
+        }
+    }
+
+    /** Gives up old blocks and publishes this node's floors; chats it no longer holds anything of are released. */
+    void publishFloors() {
+        Map<Long, Long> floors = new HashMap<>();
+        List<Long> released = new ArrayList<>();
+        long now = System.nanoTime();
+        publishing.writeLock().lock();
+        try {
+            for (Map.Entry<Long, ChatBlocks> entry : chats.entrySet()) {
+                ChatBlocks chat = entry.getValue();
+                synchronized (chat) {
+                    Long floor = chat.advance(now, blockLifetimeNanos);
+                    if (floor != null) {
+                        floors.put(entry.getKey(), floor);
+                    } else {
+                        chat.released = true;
+                        chats.remove(entry.getKey(), chat);
+                        released.add(entry.getKey());
+                    }
+                }
+            }
+            if (!floors.isEmpty() || !released.isEmpty()) {
+                blockSource.publishFloors(node, floors, released);
+            }
+        } catch (RuntimeException e) {
+            // Floors left behind stop counting after chat.sequence.floor-ttl
+            log.warn("Publishing sequence floors failed: {}", e.getMessage());
+        } finally {
+            publishing.writeLock().unlock();
+        }
+    }
+
+    private static final class Block {
+        private final long limit;
+        private final long reservedAt;
+        private final AtomicLong next;
+        // Guarded by the chat: numbers handed out end here once the block is given up or replaced (else -1),
+        // and every number below floor is finished
+        private long end = -1;
+        private long floor;
+
+        private Block(long first, long limit, long reservedAt) {
+            this.limit = limit;
+            this.reservedAt = reservedAt;
+            this.next = new AtomicLong(first);
+            this.floor = first;
+        }
+    }
+
+    private static final class ChatBlocks {
+        private volatile Block current;
+        private final Deque<Block> blocks = new ArrayDeque<>(); // Oldest first; guarded by this
+        private final Set<Long> finished = ConcurrentHashMap.newKeySet();
+        private boolean released; // Guarded by this
+
+        /** Gives up the current block if it is old, then returns the lowest unfinished number, or null if none. */
+        private Long advance(long now, long lifetimeNanos) {
+            Block live = current;
+            if (live != null && now - live.reservedAt >= lifetimeNanos) {
+                live.end = Math.min(live.next.getAndSet(live.limit), live.limit);
+                current = null;
+            }
+            while (!blocks.isEmpty()) {
+                Block block = blocks.peek();
+                long handedOut = block.end >= 0 ? block.end : Math.min(block.next.get(), block.limit);
+                while (block.floor < handedOut && finished.remove(block.floor)) {
+                    block.floor++;
+                }
+                if (block.floor < handedOut || block.end < 0) {
+                    return block.floor;
+                }
+                blocks.poll();
+            }
+            return null;
+        }
+    }
+}
@@ -1,18 +1,28 @@
 package com.chat.service;
 
+import com.chat.model.ChatMember;
 import com.chat.model.ChatModelCreation;
 import com.chat.model.UserModel;
+import com.chat.repo.ChatMemberRepo;
 import com.chat.repo.ChatMessageRepo;
 import com.chat.repo.ChatRepository;
+import com.chat.repo.MessageSegmentRepo;
 import com.chat.repo.UserRepo;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.AccessDeniedException; // Import
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ChatService {
@@ -20,15 +30,31 @@ public class ChatService {
     private final ChatRepository chatRepository;
     private final UserRepo userRepo;
     private final ChatMessageRepo chatMessageRepo;
+    private final ChatMemberRepo chatMemberRepo;
+    private final ChatMembershipService membershipService;
+    private final ChatSubscriptionRegistry subscriptionRegistry;
+    private final MessageSegmentRepo messageSegmentRepo;
+    private final ChatVersionTracker versionTracker;
+
+    // Usernames never change and users are never deleted, so this only grows with active users
+    private final Map<String, Long> userIdsByUsername = new ConcurrentHashMap<>();
 
     @Value("${ai.user.id}")
     private Long aiUserId;
 
     @Autowired
-    public ChatService(ChatRepository chatRepository, UserRepo userRepo, ChatMessageRepo chatMessageRepo) {
+    public ChatService(ChatRepository chatRepository, UserRepo userRepo, ChatMessageRepo chatMessageRepo,
+                       ChatMemberRepo chatMemberRepo,
+                       ChatMembershipService membershipService, ChatSubscriptionRegistry subscriptionRegistry,
+                       MessageSegmentRepo messageSegmentRepo, ChatVersionTracker versionTracker) {
         this.chatRepository = chatRepository;
         this.userRepo = userRepo;
         this.chatMessageRepo = chatMessageRepo;
+        this.chatMemberRepo = chatMemberRepo;
+        this.membershipService = membershipService;
+        this.subscriptionRegistry = subscriptionRegistry;
+        this.messageSegmentRepo = messageSegmentRepo;
+        this.versionTracker = versionTracker;
     }
 
     public ChatModelCreation createChat(ChatModelCreation chatModelCreation, Long ownerId) {
@@ -60,8 +86,91 @@ public class ChatService {
 
         chatModelCreation.setOwnerId(ownerId);
         chatModelCreation.setReceiverId(receiverId);
+        chatModelCreation.setGroupChat(false);
+
+        ChatModelCreation saved = chatRepository.save(chatModelCreation);
+        versionTracker.inboxChanged(ownerId);
+        versionTracker.inboxChanged(receiverId);
+        return saved;
+    }
+
+    @Transactional
+    public ChatModelCreation createGroupChat(String chatName, Long ownerId, Collection<String> memberUsernames) {
+        if (ownerId == null) {
+            throw new IllegalArgumentException("Owner ID cannot be null.");
+        }
+        if (chatName == null || chatName.isBlank()) {
+            throw new IllegalArgumentException("Group chats need a name.");
+        }
+
+        ChatModelCreation group = new ChatModelCreation();
+        group.setChatName(chatName);
+        group.setOwnerId(ownerId);
+        group.setReceiverId(ownerId);
+        group.setReceiverName(chatName);
+        group.setGroupChat(true);
+        ChatModelCreation saved = chatRepository.save(group);
+
+        List<ChatMember> members = new ArrayList<>();
+        members.add(new ChatMember(saved.getChatId(), ownerId));
+        for (UserModel user : resolveUsers(memberUsernames)) {
+            if (!user.getId().equals(ownerId)) {
+                members.add(new ChatMember(saved.getChatId(), user.getId()));
+            }
+        }
+        chatMemberRepo.saveAll(members);
+        afterCommit(() -> {
+            membershipService.evict(saved.getChatId());
+            members.forEach(member -> versionTracker.inboxChanged(member.getUserId()));
+        });
+        return saved;
+    }
+
+    /** Adds the named users to a group the requester owns; returns how many were not members yet. */
+    @Transactional
+    public int addGroupMembers(Long chatId, Long requesterId, Collection<String> usernames) {
+        ChatModelCreation group = requireOwnedGroup(chatId, requesterId);
+        List<Long> added = new ArrayList<>();
+        for (UserModel user : resolveUsers(usernames)) {
+            // The database decides, not the cache: an existing or concurrently added member is simply skipped
+            if (chatMemberRepo.addIfAbsent(group.getChatId(), user.getId()) > 0) {
+                added.add(user.getId());
+            }
+        }
+        afterCommit(() -> added.forEach(userId -> {
+            membershipService.added(chatId, userId);
+            versionTracker.inboxChanged(userId);
+        }));
+        return added.size();
+    }
+
+    /** The owner can remove anyone but themselves; any other member can remove (only) themselves. */
+    @Transactional
+    public boolean removeGroupMember(Long chatId, Long requesterId, String username) {
+        ChatModelCreation group = chatRepository.findByChatId(chatId)
+                .filter(ChatModelCreation::isGroup)
+                .orElseThrow(() -> new RuntimeException("Group chat not found with ID: " + chatId));
+        Long userId = userIdFor(username);
+        if (userId == null) {
+            return false;
+        }
+        boolean owner = group.getOwnerId().equals(requesterId);
+        if (owner ? userId.equals(requesterId) : !userId.equals(requesterId)) {
+            throw new AccessDeniedException(owner
+                    ? "The owner cannot leave the group; delete it instead."
+                    : "You can only remove yourself from this group.");
+        }
+        boolean removed = chatMemberRepo.deleteByChatIdAndUserId(chatId, userId) > 0;
+        afterCommit(() -> {
+            membershipService.removed(chatId, userId);
+            subscriptionRegistry.revoke(chatId, username);
+            versionTracker.inboxChanged(userId);
+        });
+        return removed;
+    }
 
-        return chatRepository.save(chatModelCreation);
+    public List<String> getMemberUsernames(Long chatId) {
+        return membershipService.memberUsernames(chatId).stream().sorted().toList();
     }
 
     @Transactional
@@ -78,31 +187,105 @@ public class ChatService {
             throw new AccessDeniedException("You do not have permission to delete this chat.");
         }
 
+        long[] participants = membershipService.members(chatId).toArray();
         chatRepository.deleteByChatId(chatId);
+        chatMemberRepo.deleteByChatId(chatId);
         chatMessageRepo.deleteByChatId(chatId);
+        messageSegmentRepo.deleteByChatId(chatId);
+        afterCommit(() -> {
+            membershipService.evict(chatId);
+            subscriptionRegistry.revokeAll(chatId);
+            for (long participant : participants) {
+                versionTracker.inboxChanged(participant);
+            }
+            versionTracker.chatChanged(chatId);
+        });
         return true;
     }
 
+    // Caches, subscriptions and ETags follow the database: update them once the transaction commits, not on rollback
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /** Only the owner may change how long a chat's messages are kept; null restores the default. */
+    public ChatModelCreation setRetentionDays(Long chatId, Long requesterId, Integer retentionDays) {
+        if (retentionDays != null && retentionDays < 1) {
+            throw new IllegalArgumentException("Retention must be at least one day.");
+        }
+        ChatModelCreation chat = chatRepository.findByChatId(chatId)
+                .orElseThrow(() -> new RuntimeException("Chat not found with ID: " + chatId));
+        if (!chat.getOwnerId().equals(requesterId)) {
+            throw new AccessDeniedException("Only the chat owner can change message retention.");
+        }
+        chat.setRetentionDays(retentionDays);
+        ChatModelCreation saved = chatRepository.save(chat);
+        membershipService.members(chatId).forEach(versionTracker::inboxChanged);
+        return saved;
+    }
+
     public List<ChatModelCreation> getChatsForUser(Long userId) {
         if (userId == null) {
             throw new IllegalArgumentException("User ID cannot be null.");
         }
-        return chatRepository.findByOwnerIdOrReceiverId(userId, userId);
+        Map<Long, ChatModelCreation> chats = new LinkedHashMap<>();
+        chatRepository.findByOwnerIdOrReceiverId(userId, userId).forEach(chat -> chats.put(chat.getChatId(), chat));
+        List<Long> groupIds = chatMemberRepo.findChatIdsByUserId(userId).stream()
+                .filter(chatId -> !chats.containsKey(chatId))
+                .toList();
+        if (!groupIds.isEmpty()) {
+            chatRepository.findAllById(groupIds).forEach(chat -> chats.put(chat.getChatId(), chat));
+        }
+        return new ArrayList<>(chats.values());
     }
 
     public boolean isUserInChat(String username, Long chatId) {
-        Optional<UserModel> userOpt = userRepo.findByUsername(username);
-        if (userOpt.isEmpty()) {
-            return false;
+        Long userId = userIdFor(username);
+        return userId != null && membershipService.isMember(chatId, userId);
+    }
+
+    /** Id for a username, cached after the first lookup; null if there is no such user. */
+    public Long userIdFor(String username) {
+        if (username == null) {
+            return null;
+        }
+        Long cached = userIdsByUsername.get(username);
+        if (cached != null) {
+            return cached;
+        }
+        Optional<UserModel> user = userRepo.findByUsername(username);
+        user.ifPresent(u -> userIdsByUsername.put(username, u.getId()));
+        return user.map(UserModel::getId).orElse(null);
+    }
+
+    private List<UserModel> resolveUsers(Collection<String> usernames) {
+        if (usernames == null || usernames.isEmpty()) {
+            return List.of();
+        }
+        List<UserModel> users = userRepo.findByUsernameIn(usernames);
+        if (users.size() < usernames.stream().distinct().count()) {
+            throw new RuntimeException("Some users were not found.");
         }
-        Long userId = userOpt.get().getId();
+        return users;
+    }
 
-        Optional<ChatModelCreation> chatOpt = chatRepository.findByChatId(chatId);
-        if (chatOpt.isEmpty()) {
-            return false;
+    private ChatModelCreation requireOwnedGroup(Long chatId, Long requesterId) {
+        ChatModelCreation group = chatRepository.findByChatId(chatId)
+                .filter(ChatModelCreation::isGroup)
+                .orElseThrow(() -> new RuntimeException("Group chat not found with ID: " + chatId));
+        if (!group.getOwnerId().equals(requesterId)) {
+            throw new AccessDeniedException("Only the group owner can add members.");
         }
-        ChatModelCreation chat = chatOpt.get();
-        return chat.getOwnerId().equals(userId) || chat.getReceiverId().equals(userId);
+        return group;
     }
 
     public boolean isAiChat(Long chatId) {
@@ -0,0 +1,238 @@
+package com.chat.service;
+
+import com.chat.util.LongOpenHashSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.MultiValueMap;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Subscription registry for the simple broker that indexes {@code /topic/chat/{chatId}} subscriptions by
+ * chat id, so finding a chat's subscribers is one map lookup no matter how many subscriptions the node
+ * holds. Spring's default registry matches destinations by pattern and only caches the most recent
+ * 1024 of them; on a miss it walks every session. Every other destination is still handled by a
+ * {@link DefaultSubscriptionRegistry}.
+ * <p>
+ * Chat subscriptions are exact destinations only (no patterns or selectors); who may subscribe is
+ * decided earlier by {@code ChatSubscriptionInterceptor}. Subscriptions can be revoked when someone
+ * leaves a chat, so they stop receiving it without reconnecting. That only reaches this node, so lookups
+ * also re-check membership: whenever the chat's cached member set has changed since its subscribers were
+ * last checked, sessions of users no longer in it are dropped. A removal made on another node is seen
+ * once this node's membership cache reloads, so within {@code chat.membership.cache-ttl}.
+ */
+@Component
+public class ChatSubscriptionRegistry implements SubscriptionRegistry {
+
+    public static final String CHAT_TOPIC_PREFIX = "/topic/chat/";
+
+    private static final MultiValueMap<String, String> NO_SUBSCRIBERS =
+            CollectionUtils.unmodifiableMultiValueMap(CollectionUtils.toMultiValueMap(Collections.emptyMap()));
+
+    private final SubscriptionRegistry fallback = new DefaultSubscriptionRegistry();
+    private final ChatMembershipService membershipService;
+
+    private final Map<Long, ChatSubscribers> chats = new ConcurrentHashMap<>();
+    private final Map<String, SessionSubscriptions> sessions = new ConcurrentHashMap<>();
+
+    // Lazy: the registry is installed while the broker is created, before the repositories should be
+    @Autowired
+    public ChatSubscriptionRegistry(@Lazy ChatMembershipService membershipService) {
+        this.membershipService = membershipService;
+    }
+
+    /** The chat id of a plain {@code /topic/chat/{id}} destination, or null for anything else. */
+    public static Long chatIdOf(String destination) {
+        if (destination == null || !destination.startsWith(CHAT_TOPIC_PREFIX)) {
+            return null;
+        }
+        int start = CHAT_TOPIC_PREFIX.length();
+        int length = destination.length() - start;
+        if (length == 0 || length > 18) {
+            return null;
+        }
+        long chatId = 0;
+        for (int i = start; i < destination.length(); i++) {
+            char c = destination.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            chatId = chatId * 10 + (c - '0');
+        }
+        return chatId;
+    }
+
+    @Override
+    public void registerSubscription(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        Long chatId = chatIdOf(SimpMessageHeaderAccessor.getDestination(headers));
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        if (chatId == null || sessionId == null || subscriptionId == null) {
+            fallback.registerSubscription(message);
+            return;
+        }
+
+        Principal user = SimpMessageHeaderAccessor.getUser(headers);
+        SessionSubscriptions session = sessions.computeIfAbsent(sessionId,
+                id -> new SessionSubscriptions(user != null ? user.getName() : null));
+        session.chatIdsBySubscription.put(subscriptionId, chatId);
+        chats.compute(chatId, (id, subscribers) -> {
+            ChatSubscribers updated = subscribers != null ? subscribers : new ChatSubscribers();
+            updated.bySession.compute(sessionId, (s, ids) -> append(ids, subscriptionId));
+            return updated;
+        });
+    }
+
+    @Override
+    public void unregisterSubscription(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        SessionSubscriptions session = sessionId != null ? sessions.get(sessionId) : null;
+        Long chatId = session != null && subscriptionId != null
+                ? session.chatIdsBySubscription.remove(subscriptionId)
+                : null;
+        if (chatId == null) {
+            fallback.unregisterSubscription(message);
+            return;
+        }
+        removeFromChat(chatId, sessionId, subscriptionId);
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        SessionSubscriptions session = sessions.remove(sessionId);
+        if (session != null) {
+            session.chatIdsBySubscription.forEach((subscriptionId, chatId) ->
+                    removeFromChat(chatId, sessionId, subscriptionId));
+        }
+        fallback.unregisterAllSubscriptions(sessionId);
+    }
+
+    @Override
+    public MultiValueMap<String, String> findSubscriptions(Message<?> message) {
+        Long chatId = chatIdOf(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+        if (chatId == null) {
+            return fallback.findSubscriptions(message);
+        }
+        ChatSubscribers subscribers = chats.get(chatId);
+        if (subscribers == null) {
+            return NO_SUBSCRIBERS;
+        }
+        LongOpenHashSet members = membershipService.members(chatId);
+        if (members != subscribers.checkedAgainst) {
+            // Member sets are replaced on every change and reload, so this is rare and usually a cache hit
+            subscribers.checkedAgainst = members;
+            Set<String> usernames = new HashSet<>(membershipService.memberUsernames(chatId));
+            revoke(chatId, session -> session.username == null || !usernames.contains(session.username));
+        }
+        return subscribers.view;
+    }
+
+    /** Drops every subscription {@code username} holds on the chat's topic, e.g. after leaving a group. */
+    public void revoke(Long chatId, String username) {
+        revoke(chatId, session -> username.equals(session.username));
+    }
+
+    /** Drops every subscription on the chat's topic, e.g. after the chat was deleted. */
+    public void revokeAll(Long chatId) {
+        ChatSubscribers removed = chats.remove(chatId);
+        if (removed == null) {
+            return;
+        }
+        removed.bySession.keySet().forEach(sessionId -> {
+            SessionSubscriptions session = sessions.get(sessionId);
+            if (session != null) {
+                session.chatIdsBySubscription.values().removeIf(chatId::equals);
+            }
+        });
+    }
+
+    /** Number of chat-topic subscriptions currently indexed. */
+    public int chatSubscriptionCount() {
+        int count = 0;
+        for (SessionSubscriptions session : sessions.values()) {
+            count += session.chatIdsBySubscription.size();
+        }
+        return count;
+    }
+
+    private void revoke(Long chatId, Predicate<SessionSubscriptions> matches) {
+        chats.computeIfPresent(chatId, (id, subscribers) -> {
+            subscribers.bySession.keySet().removeIf(sessionId -> {
+                SessionSubscriptions session = sessions.get(sessionId);
+                if (session == null || !matches.test(session)) {
+                    return false;
+                }
+                session.chatIdsBySubscription.values().removeIf(chatId::equals);
+                return true;
+            });
+            return subscribers.bySession.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private void removeFromChat(Long chatId, String sessionId, String subscriptionId) {
+        chats.computeIfPresent(chatId, (id, subscribers) -> {
+            subscribers.bySession.computeIfPresent(sessionId, (s, ids) -> without(ids, subscriptionId));
+            return subscribers.bySession.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private static List<String> append(List<String> ids, String subscriptionId) {
+        if (ids == null) {
+            return List.of(subscriptionId);
+        }
+        if (ids.contains(subscriptionId)) {
+            return ids;
+        }
+        List<String> updated = new ArrayList<>(ids.size() + 1);
+        updated.addAll(ids);
+        updated.add(subscriptionId);
+        return List.copyOf(updated);
+    }
+
+    private static List<String> without(List<String> ids, String subscriptionId) {
+        if (ids.size() == 1) {
+            return ids.get(0).equals(subscriptionId) ? null : ids;
+        }
+        List<String> updated = new ArrayList<>(ids);
+        updated.remove(subscriptionId);
+        return updated.isEmpty() ? null : List.copyOf(updated);
+    }
+
+    /**
+     * One chat's subscribers: session id to that session's subscription ids. The lists are immutable and
+     * replaced on change, so the broker can iterate the live view while subscriptions come and go.
+     * {@code checkedAgainst} is the member set the sessions were last checked against.
+     */
+    private static final class ChatSubscribers {
+        private final Map<String, List<String>> bySession = new ConcurrentHashMap<>();
+        private final MultiValueMap<String, String> view = CollectionUtils.toMultiValueMap(bySession);
+        private volatile LongOpenHashSet checkedAgainst;
+    }
+
+    private static final class SessionSubscriptions {
+        private final String username;
+        private final Map<String, Long> chatIdsBySubscription = new ConcurrentHashMap<>();
+
+        private SessionSubscriptions(String username) {
+            this.username = username;
+        }
+    }
+}
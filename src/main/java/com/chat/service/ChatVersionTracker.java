@@ -0,0 +1,140 @@
+package com.chat.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ETags for each user's chat list ("inbox") and each chat's history, so unchanged polls can be answered
+ * with 304 straight from memory.
+ * <p>
+ * A tag is the MD5 of the response body, minted whenever the body is built. It is remembered per inbox or
+ * chat until something on this node changes it, or for at most {@code chat.etag.max-age}, which bounds how
+ * long changes made by other nodes or background jobs can go unnoticed. After that the next request
+ * rebuilds the body, and still gets a 304 if the hash is unchanged. Every change takes a stamp from one
+ * node-wide clock, so a body read before a change can't be remembered as current after it.
+ * <p>
+ * Invalidation is node-local: with several nodes behind a load balancer, a node that didn't handle a
+ * change keeps answering 304 with its remembered tag for up to {@code chat.etag.max-age}. A max age of 0
+ * turns the shortcut off, so every poll rebuilds and hashes the body and is never stale.
+ * <p>
+ * At most {@code chat.etag.max-keys} tags and change stamps are kept; past that, expired tags and then
+ * arbitrary ones are dropped. Dropping a change stamp raises a floor below which no body is remembered,
+ * so a build that started before a forgotten change is simply not cached.
+ */
+@Service
+public class ChatVersionTracker {
+
+    private final long maxAgeNanos;
+    private final int maxKeys;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, Long> changes = new ConcurrentHashMap<>();
+    private final Map<String, Version> versions = new ConcurrentHashMap<>();
+    private volatile long forgottenUpTo;
+
+    @Autowired
+    public ChatVersionTracker(@Value("${chat.etag.max-age:30s}") Duration maxAge,
+                              @Value("${chat.etag.max-keys:100000}") int maxKeys) {
+        this.maxAgeNanos = maxAge.toNanos();
+        this.maxKeys = Math.max(1, maxKeys);
+    }
+
+    public static String inboxKey(Long userId) {
+        return "inbox:" + userId;
+    }
+
+    public static String chatKey(Long chatId) {
+        return "chat:" + chatId;
+    }
+
+    public void inboxChanged(long userId) {
+        changed(inboxKey(userId));
+    }
+
+    public void chatChanged(Long chatId) {
+        changed(chatKey(chatId));
+    }
+
+    /** The remembered tag, if it is still fresh and the client's If-None-Match includes it; otherwise null. */
+    public String currentMatch(String key, String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        Version version = versions.get(key);
+        if (version == null || System.nanoTime() - version.validatedAt > maxAgeNanos) {
+            return null;
+        }
+        return matches(ifNoneMatch, version.etag) ? version.etag : null;
+    }
+
+    /** Call before reading the data a body is built from, and pass the result to {@link #tag}. */
+    public long generation() {
+        return clock.get();
+    }
+
+    /** Tags a freshly built body, remembering the tag unless the key changed since {@code generation}. */
+    public String tag(String key, long generation, byte[] body) {
+        String etag = "\"0" + DigestUtils.md5DigestAsHex(body) + "\"";
+        versions.compute(key, (k, current) -> unchangedSince(k, generation)
+                ? new Version(etag, System.nanoTime())
+                : current);
+        if (versions.size() > maxKeys) {
+            trimVersions();
+        }
+        return etag;
+    }
+
+    public static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean unchangedSince(String key, long generation) {
+        return generation >= forgottenUpTo && changes.getOrDefault(key, 0L) <= generation;
+    }
+
+    private void changed(String key) {
+        changes.put(key, clock.incrementAndGet());
+        versions.remove(key);
+        if (changes.size() > maxKeys) {
+            trimChanges();
+        }
+    }
+
+    private synchronized void trimChanges() {
+        Iterator<Long> stamps = changes.values().iterator();
+        while (changes.size() > maxKeys && stamps.hasNext()) {
+            forgottenUpTo = Math.max(forgottenUpTo, stamps.next());
+            stamps.remove();
+        }
+    }
+
+    private void trimVersions() {
+        long now = System.nanoTime();
+        versions.values().removeIf(version -> now - version.validatedAt > maxAgeNanos);
+        Iterator<String> keys = versions.keySet().iterator();
+        while (versions.size() > maxKeys && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private record Version(String etag, long validatedAt) {
+    }
+}
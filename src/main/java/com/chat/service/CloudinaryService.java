@@ -1,5 +1,7 @@
 package com.chat.service;
 
+import com.chat.monitoring.FileUploadEvent;
+import com.chat.monitoring.MessagePipelineMetrics;
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
 import org.slf4j.Logger;
@@ -19,6 +21,9 @@ public class CloudinaryService {
     @Autowired
     private Cloudinary cloudinary;
 
+    @Autowired
+    private MessagePipelineMetrics pipelineMetrics;
+
     public Map<String, Object> uploadFile(MultipartFile file, String originalFilename) throws IOException {
         log.info("Attempting to upload file '{}' to Cloudinary.", originalFilename);
 
@@ -30,6 +35,10 @@ public class CloudinaryService {
             originalFilename = "upload";
         }
 
+        long started = System.nanoTime();
+        boolean uploaded = false;
+        FileUploadEvent uploadEvent = new FileUploadEvent();
+        uploadEvent.begin();
         try {
             // Upload options:
             // resource_type: "auto" -> Let Cloudinary detect image, video, raw
@@ -56,6 +65,7 @@ public class CloudinaryService {
                 throw new RuntimeException("Cloudinary upload failed: secure_url was not returned.");
             }
 
+            uploaded = true;
             log.info("File '{}' uploaded successfully to Cloudinary. URL: {}, Public ID: {}, Type: {}, Format: {}, Size: {} bytes",
                     originalFilename, secureUrl, publicIdResult, resourceType, format, bytes);
 
@@ -74,6 +84,15 @@ public class CloudinaryService {
         } catch (Exception e) {
             log.error("Cloudinary upload failed for file: {}. Error: {}", originalFilename, e.getMessage(), e);
             throw new RuntimeException("Cloudinary upload failed: " + e.getMessage(), e);
+        } finally {
+            pipelineMetrics.recordUpload(System.nanoTime() - started, file.getSize(), uploaded);
+            uploadEvent.end();
+            if (uploadEvent.shouldCommit()) {
+                uploadEvent.contentType = file.getContentType();
+                uploadEvent.bytes = file.getSize();
+                uploadEvent.success = uploaded;
+                uploadEvent.commit();
+            }
         }
     }
 
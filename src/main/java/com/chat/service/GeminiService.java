@@ -1,7 +1,8 @@
 package com.chat.service;
 
 import com.chat.model.ChatMessage;
-import com.chat.model.ChatMessageDTO;
+import com.chat.monitoring.GeminiCallEvent;
+import com.chat.monitoring.MessagePipelineMetrics;
 import com.chat.repo.ChatMessageRepo;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
@@ -14,7 +15,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -32,16 +32,24 @@ public class GeminiService {
 
     private final RestTemplate restTemplate;
     private final ChatMessageRepo chatMessageRepo;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageBroadcaster messageBroadcaster;
+    private final ChatSequenceAllocator sequenceAllocator;
+    private final MessagePipelineMetrics pipelineMetrics;
+    private final MessageEncoder messageEncoder;
 
     @Value("${gemini.api.key}")
     private String geminiApiKey;
 
     @Autowired
-    public GeminiService(RestTemplate restTemplate, ChatMessageRepo chatMessageRepo, SimpMessagingTemplate messagingTemplate) {
+    public GeminiService(RestTemplate restTemplate, ChatMessageRepo chatMessageRepo, MessageBroadcaster messageBroadcaster,
+                         ChatSequenceAllocator sequenceAllocator, MessagePipelineMetrics pipelineMetrics,
+                         MessageEncoder messageEncoder) {
         this.restTemplate = restTemplate;
         this.chatMessageRepo = chatMessageRepo;
-        this.messagingTemplate = messagingTemplate;
+        this.messageBroadcaster = messageBroadcaster;
+        this.sequenceAllocator = sequenceAllocator;
+        this.pipelineMetrics = pipelineMetrics;
+        this.messageEncoder = messageEncoder;
     }
 
     @Async // Run this method in a separate thread to avoid blocking
@@ -63,7 +71,27 @@ public class GeminiService {
             // Simulate a slight typing delay for better user experience
             Thread.sleep(1500);
 
-            GeminiResponse response = restTemplate.postForObject(GEMINI_API_URL, entity, GeminiResponse.class);
+            long started = System.nanoTime();
+            GeminiCallEvent callEvent = new GeminiCallEvent();
+            callEvent.begin();
+            GeminiResponse response = null;
+            try {
+                response = restTemplate.postForObject(GEMINI_API_URL, entity, GeminiResponse.class);
+                pipelineMetrics.recordGeminiCall(System.nanoTime() - started, true);
+            } catch (RuntimeException e) {
+                pipelineMetrics.recordGeminiCall(System.nanoTime() - started, false);
+                throw e;
+            } finally {
+                callEvent.end();
+                if (callEvent.shouldCommit()) {
+                    callEvent.chatId = chatId;
+                    callEvent.promptBytes = userMessage != null ? userMessage.length() : 0;
+                    String responseText = extractTextFromResponse(response);
+                    callEvent.responseBytes = responseText != null ? responseText.length() : 0;
+                    callEvent.success = response != null;
+                    callEvent.commit();
+                }
+            }
 
             String aiTextResponse = extractTextFromResponse(response);
             if (aiTextResponse.isBlank()) {
@@ -73,19 +101,24 @@ public class GeminiService {
 
             // Create and save the AI's message
             ChatMessage aiMessage = new ChatMessage(chatId, "GeminiAI", aiTextResponse, "TEXT");
-            ChatMessage savedAiMessage = chatMessageRepo.save(aiMessage);
+            long seq = sequenceAllocator.next(chatId);
+            aiMessage.setSeq(seq);
+            ChatMessage savedAiMessage;
+            try {
+                savedAiMessage = chatMessageRepo.save(aiMessage);
+            } finally {
+                sequenceAllocator.finished(chatId, seq);
+            }
 
-            // Convert to DTO and broadcast to the user
-            ChatMessageDTO broadcastDTO = ChatMessageDTO.fromEntity(savedAiMessage);
-            messagingTemplate.convertAndSend("/topic/chat/" + chatId, broadcastDTO);
+            // Encode once and broadcast to the user
+            messageBroadcaster.broadcastToChat(chatId, messageEncoder.encode(savedAiMessage));
             log.info("Successfully generated and broadcast AI response to chat ID: {}", chatId);
 
         } catch (Exception e) {
             log.error("Error calling Gemini API for chat ID {}: {}", chatId, e.getMessage(), e);
             // Send an error message back to the user's chat
             ChatMessage errorMessage = new ChatMessage(chatId, "GeminiAI", "Sorry, I couldn't connect to my brain. Please try again.", "TEXT");
-            ChatMessageDTO errorDTO = ChatMessageDTO.fromEntity(errorMessage);
-            messagingTemplate.convertAndSend("/topic/chat/" + chatId, errorDTO);
+            messageBroadcaster.broadcastToChat(chatId, messageEncoder.encode(errorMessage));
         }
     }
 
@@ -0,0 +1,477 @@
+package com.chat.service;
+
+import com.chat.model.ChatMessage;
+import com.chat.model.LinkPreview;
+import com.chat.model.MessageDelta;
+import com.chat.repo.ChatMessageRepo;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Unfurls the first link in a TEXT message into a {@link LinkPreview} once the message is saved, then stores
+ * it on the message and broadcasts it as a {@code PREVIEW} delta, so clients don't each fetch the page.
+ * <p>
+ * Fetches run on a small bounded pool, never on the caller's thread. Each fetch has one overall deadline
+ * (redirects included), reads at most {@code chat.unfurl.max-bytes} of HTML, and waits for a per-host permit
+ * so one slow site can't occupy the whole pool. Hosts are hashed onto a fixed set of permit stripes, so
+ * the limit is per stripe and unrelated hosts occasionally share one. Results are cached by URL, failures
+ * included for a shorter time, and concurrent requests for the same URL share a single fetch. Hosts that
+ * resolve to private, loopback or link-local addresses are refused unless
+ * {@code chat.unfurl.allow-private-hosts} is set; the check runs in the client's resolver, so the connection
+ * goes to exactly the addresses that passed it and a name can't re-resolve elsewhere in between.
+ * <p>
+ * A preview is only stored while the message still has the text it was unfurled from; edits and deletes
+ * drop it (see {@link ChatMessageRepo#setLinkPreview}).
+ */
+@Service
+public class LinkPreviewService {
+
+    private static final Logger log = LoggerFactory.getLogger(LinkPreviewService.class);
+
+    private static final Pattern URL = Pattern.compile("https?://[^\\s<>\"']+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern META = Pattern.compile("<meta\\s[^>]*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ATTRIBUTE = Pattern.compile("([a-zA-Z:_-]+)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+    private static final Pattern TITLE = Pattern.compile("<title[^>]*>([^<]*)</title>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CHARSET = Pattern.compile("charset=\"?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NUMERIC_ENTITY = Pattern.compile("&#(x?)([0-9a-fA-F]+);");
+
+    private static final int MAX_REDIRECTS = 3;
+    private static final int QUEUE_CAPACITY = 1000;
+    private static final int HOST_STRIPES = 64;
+    private static final int MAX_TITLE_LENGTH = 200;
+    private static final int MAX_DESCRIPTION_LENGTH = 500;
+
+    private final ChatMessageRepo chatMessageRepo;
+    private final MessageBroadcaster messageBroadcaster;
+    private final ChatSequenceAllocator sequenceAllocator;
+    private final boolean enabled;
+    private final Duration timeout;
+    private final int maxBytes;
+    private final long cacheTtlNanos;
+    private final long negativeCacheTtlNanos;
+
+    private final CloseableHttpClient httpClient;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore[] hostPermits = new Semaphore[HOST_STRIPES];
+    private final Map<String, CachedPreview> cache;
+    private final Map<String, CompletableFuture<LinkPreview>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LinkPreviewService(ChatMessageRepo chatMessageRepo,
+                              MessageBroadcaster messageBroadcaster,
+                              ChatSequenceAllocator sequenceAllocator,
+                              @Value("${chat.unfurl.enabled:true}") boolean enabled,
+                              @Value("${chat.unfurl.threads:4}") int threads,
+                              @Value("${chat.unfurl.timeout:3s}") Duration timeout,
+                              @Value("${chat.unfurl.max-bytes:256KB}") DataSize maxBytes,
+                              @Value("${chat.unfurl.per-host-concurrency:2}") int perHostConcurrency,
+                              @Value("${chat.unfurl.cache-ttl:6h}") Duration cacheTtl,
+                              @Value("${chat.unfurl.negative-cache-ttl:10m}") Duration negativeCacheTtl,
+                              @Value("${chat.unfurl.cache-size:10000}") int cacheSize,
+                              @Value("${chat.unfurl.allow-private-hosts:false}") boolean allowPrivateHosts) {
+        this.chatMessageRepo = chatMessageRepo;
+        this.messageBroadcaster = messageBroadcaster;
+        this.sequenceAllocator = sequenceAllocator;
+        this.enabled = enabled;
+        this.timeout = timeout;
+        this.maxBytes = (int) Math.min(Integer.MAX_VALUE, maxBytes.toBytes());
+        this.cacheTtlNanos = cacheTtl.toNanos();
+        this.negativeCacheTtlNanos = negativeCacheTtl.toNanos();
+        for (int i = 0; i < HOST_STRIPES; i++) {
+            hostPermits[i] = new Semaphore(Math.max(1, perHostConcurrency));
+        }
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPreview> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+        if (enabled) {
+            AtomicInteger counter = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                Thread t = new Thread(r, "link-preview-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.AbortPolicy());
+            // Redirects are followed by hand so every hop gets the same host checks
+            this.httpClient = HttpClients.custom()
+                    .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                            .setDnsResolver(new CheckedDnsResolver(allowPrivateHosts))
+                            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                    .setConnectTimeout(Timeout.of(timeout))
+                                    .setSocketTimeout(Timeout.of(timeout))
+                                    .build())
+                            .setMaxConnTotal(threads)
+                            .setMaxConnPerRoute(Math.max(1, perHostConcurrency))
+                            .build())
+                    .disableRedirectHandling()
+                    .disableAutomaticRetries()
+                    .disableCookieManagement()
+                    .disableContentCompression()
+                    .setUserAgent("ChatLinkPreview/1.0")
+                    .build();
+        } else {
+            this.executor = null;
+            this.httpClient = null;
+        }
+    }
+
+    /** Fetches running or waiting for a thread. */
+    public int pendingCount() {
+        return executor == null ? 0 : executor.getActiveCount() + executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                log.debug("Closing the link preview client failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Starts unfurling the first link in a saved (or just edited) TEXT message. Returns null when there is
+     * nothing to do; otherwise a future with the preview, completed after it was stored and broadcast, or
+     * null if there is none or the message was edited or deleted in the meantime.
+     */
+    public CompletableFuture<LinkPreview> unfurl(ChatMessage message) {
+        if (!enabled || message.getId() == null || !"TEXT".equals(message.getType())) {
+            return null;
+        }
+        String content = message.getContent();
+        String url = firstUrl(content);
+        if (url == null) {
+            return null;
+        }
+        return previewFor(url).thenApplyAsync(
+                preview -> preview != null && publish(message, content, preview) ? preview : null, executor).exceptionally(e -> {
+            log.warn("Link preview for message {} failed: {}", message.getId(), e.getMessage());
+            return null;
+        });
+    }
+
+    static String firstUrl(String content) {
+        if (content == null) {
+            return null;
+        }
+        Matcher matcher = URL.matcher(content);
+        if (!matcher.find()) {
+            return null;
+        }
+        String url = matcher.group();
+        // Sentence punctuation right after a link is almost never part of it
+        int end = url.length();
+        while (end > 0 && ".,;:!?)]}".indexOf(url.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return url.substring(0, end);
+    }
+
+    private boolean publish(ChatMessage message, String content, LinkPreview preview) {
+        Long chatId = message.getChatId();
+        long changeSeq = sequenceAllocator.next(chatId);
+        long updated;
+        try {
+            updated = chatMessageRepo.setLinkPreview(message.getId(), content, preview.getUrl(), preview.getTitle(),
+                    preview.getDescription(), preview.getImageUrl(), preview.getSiteName(), changeSeq);
+        } finally {
+            sequenceAllocator.finished(chatId, changeSeq);
+        }
+        if (updated == 0) { // Deleted, or edited to other text, in the meantime
+            return false;
+        }
+        messageBroadcaster.broadcastToChat(chatId, MessageDelta.preview(chatId, message.getId(), changeSeq, preview));
+        return true;
+    }
+
+    private CompletableFuture<LinkPreview> previewFor(String url) {
+        CachedPreview cached;
+        synchronized (cache) {
+            cached = cache.get(url);
+        }
+        if (cached != null && cached.expiresAt - System.nanoTime() > 0) {
+            return CompletableFuture.completedFuture(cached.preview);
+        }
+        try {
+            return inFlight.computeIfAbsent(url, key -> {
+                CompletableFuture<LinkPreview> fetch = CompletableFuture.supplyAsync(() -> fetchAndCache(key), executor);
+                fetch.whenComplete((preview, e) -> inFlight.remove(key));
+                return fetch;
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Link preview queue full, skipping {}", url);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private LinkPreview fetchAndCache(String url) {
+        LinkPreview preview;
+        try {
+            preview = fetch(URI.create(url));
+        } catch (HostBusyException e) {
+            return null; // Not the URL's fault; let a later message try again
+        } catch (Exception e) {
+            log.debug("Could not unfurl {}: {}", url, e.toString());
+            preview = null;
+        }
+        long ttl = preview != null ? cacheTtlNanos : negativeCacheTtlNanos;
+        synchronized (cache) {
+            cache.put(url, new CachedPreview(preview, System.nanoTime() + ttl));
+        }
+        return preview;
+    }
+
+    private LinkPreview fetch(URI uri) throws Exception {
+        checkScheme(uri);
+        Semaphore permit = hostPermits[Math.floorMod(uri.getHost().toLowerCase(Locale.ROOT).hashCode(), HOST_STRIPES)];
+        if (!permit.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            throw new HostBusyException();
+        }
+        // Waiting for the host doesn't count against the fetch's own deadline
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            for (int hop = 0; ; hop++) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException("Deadline passed before fetching " + uri);
+                }
+                HttpGet request = new HttpGet(uri);
+                request.setHeader(HttpHeaders.ACCEPT, "text/html,application/xhtml+xml");
+                // Socket timeouts bound each read; this bounds the whole exchange, a trickling body included
+                CompletableFuture.delayedExecutor(remaining, TimeUnit.NANOSECONDS).execute(request::cancel);
+                ClassicHttpResponse response = httpClient.executeOpen(null, request, null);
+                try {
+                    int status = response.getCode();
+                    Header location = response.getFirstHeader(HttpHeaders.LOCATION);
+                    if (status >= 300 && status < 400 && location != null && hop < MAX_REDIRECTS) {
+                        uri = uri.resolve(location.getValue());
+                        checkScheme(uri);
+                        continue;
+                    }
+                    Header contentTypeHeader = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+                    String contentType = contentTypeHeader != null ? contentTypeHeader.getValue() : "";
+                    byte[] body = status == 200 && isHtml(contentType) ? htmlBody(response.getEntity()) : null;
+                    return body != null ? parse(new String(body, charsetOf(contentType)), uri) : null;
+                } finally {
+                    close(request, response);
+                }
+            }
+        } finally {
+            permit.release();
+        }
+    }
+
+    private static boolean isHtml(String contentType) {
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/html") || type.startsWith("application/xhtml+xml");
+    }
+
+    // Only successful HTML is read, and only up to the size cap
+    private byte[] htmlBody(HttpEntity entity) throws IOException {
+        if (entity == null) {
+            return null;
+        }
+        try (InputStream in = entity.getContent()) {
+            return in.readNBytes(maxBytes);
+        }
+    }
+
+    // Anything left of the body is dropped with the connection rather than read to the end
+    private static void close(HttpGet request, ClassicHttpResponse response) {
+        request.cancel();
+        try {
+            response.close();
+        } catch (IOException e) {
+            // The connection is already gone
+        }
+    }
+
+    private static void checkScheme(URI uri) {
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "";
+        if ((!scheme.equals("http") && !scheme.equals("https")) || uri.getHost() == null) {
+            throw new IllegalArgumentException("Unsupported link: " + uri);
+        }
+    }
+
+    static LinkPreview parse(String html, URI pageUri) {
+        int headEnd = html.toLowerCase(Locale.ROOT).indexOf("</head>");
+        String head = headEnd >= 0 ? html.substring(0, headEnd) : html;
+
+        Map<String, String> meta = new HashMap<>();
+        Matcher tags = META.matcher(head);
+        while (tags.find()) {
+            Map<String, String> attributes = new HashMap<>();
+            Matcher attribute = ATTRIBUTE.matcher(tags.group());
+            while (attribute.find()) {
+                String value = attribute.group(2) != null ? attribute.group(2) : attribute.group(3);
+                attributes.put(attribute.group(1).toLowerCase(Locale.ROOT), value);
+            }
+            String key = attributes.getOrDefault("property", attributes.get("name"));
+            String content = attributes.get("content");
+            if (key != null && content != null) {
+                meta.putIfAbsent(key.toLowerCase(Locale.ROOT), unescape(content).trim());
+            }
+        }
+
+        String title = firstPresent(meta.get("og:title"), meta.get("twitter:title"));
+        if (title == null) {
+            Matcher titleTag = TITLE.matcher(head);
+            title = titleTag.find() ? unescape(titleTag.group(1)).trim() : null;
+        }
+        if (title == null || title.isEmpty()) {
+            return null;
+        }
+        String description = firstPresent(meta.get("og:description"), meta.get("description"));
+        String image = firstPresent(meta.get("og:image"), meta.get("twitter:image"));
+        String imageUrl = null;
+        if (image != null) {
+            try {
+                URI resolved = pageUri.resolve(image);
+                imageUrl = "http".equals(resolved.getScheme()) || "https".equals(resolved.getScheme())
+                        ? resolved.toString() : null;
+            } catch (IllegalArgumentException e) {
+                imageUrl = null;
+            }
+        }
+        String url = firstPresent(meta.get("og:url"), pageUri.toString());
+        return new LinkPreview(url, truncate(title, MAX_TITLE_LENGTH), truncate(description, MAX_DESCRIPTION_LENGTH),
+                imageUrl, meta.get("og:site_name"));
+    }
+
+    private static Charset charsetOf(String contentType) {
+        Matcher matcher = CHARSET.matcher(contentType);
+        if (matcher.find()) {
+            try {
+                return Charset.forName(matcher.group(1));
+            } catch (IllegalArgumentException e) {
+                // Unknown charset; fall through to UTF-8
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static String firstPresent(String first, String second) {
+        if (first != null && !first.isEmpty()) {
+            return first;
+        }
+        return second != null && !second.isEmpty() ? second : null;
+    }
+
+    private static String truncate(String value, int max) {
+        return value == null || value.length() <= max ? value : value.substring(0, max - 1) + "…";
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('&') < 0) {
+            return text;
+        }
+        Matcher numeric = NUMERIC_ENTITY.matcher(text);
+        StringBuilder decoded = new StringBuilder();
+        while (numeric.find()) {
+            int codePoint;
+            try {
+                codePoint = Integer.parseInt(numeric.group(2), numeric.group(1).isEmpty() ? 10 : 16);
+            } catch (NumberFormatException e) {
+                codePoint = '?';
+            }
+            numeric.appendReplacement(decoded, Matcher.quoteReplacement(
+                    Character.isValidCodePoint(codePoint) ? new String(Character.toChars(codePoint)) : "?"));
+        }
+        numeric.appendTail(decoded);
+        return decoded.toString()
+                .replace("&quot;", "\"")
+                .replace("&apos;", "'")
+                .replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&nbsp;", " ")
+                .replace("&amp;", "&");
+    }
+
+    private record CachedPreview(LinkPreview preview, long expiresAt) {
+    }
+
+    /** Resolves hosts once for the connection itself and refuses private addresses unless they are allowed. */
+    private static final class CheckedDnsResolver implements DnsResolver {
+
+        private final boolean allowPrivateHosts;
+
+        private CheckedDnsResolver(boolean allowPrivateHosts) {
+            this.allowPrivateHosts = allowPrivateHosts;
+        }
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            InetAddress[] addresses = SystemDefaultDnsResolver.INSTANCE.resolve(host);
+            if (allowPrivateHosts) {
+                return addresses;
+            }
+            for (InetAddress address : addresses) {
+                byte[] raw = address.getAddress();
+                boolean uniqueLocalV6 = raw.length == 16 && (raw[0] & 0xfe) == 0xfc;
+                if (address.isLoopbackAddress() || address.isSiteLocalAddress() || address.isLinkLocalAddress()
+                        || address.isAnyLocalAddress() || address.isMulticastAddress() || uniqueLocalV6) {
+                    throw new UnknownHostException("Refusing to unfurl private address " + host);
+                }
+            }
+            return addresses;
+        }
+
+        @Override
+        public String resolveCanonicalHostname(String host) throws UnknownHostException {
+            return SystemDefaultDnsResolver.INSTANCE.resolveCanonicalHostname(host);
+        }
+    }
+
+    private static final class HostBusyException extends Exception {
+        private HostBusyException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.chat.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-username and per-IP limits on login attempts, using sliding-window counters: the previous
+ * fixed window's count is weighted by how much of it still overlaps the sliding window, which
+ * approximates a true sliding log with two integers per key.
+ */
+@Service
+public class LoginThrottle {
+
+    private static final int PURGE_EVERY = 1024;
+
+    private final long windowMillis;
+    private final int maxPerUsername;
+    private final int maxPerIp;
+
+    private final Map<String, Window> usernames = new ConcurrentHashMap<>();
+    private final Map<String, Window> ips = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final LongSupplier clock;
+
+    @Autowired
+    public LoginThrottle(@Value("${chat.auth.throttle.window:60s}") Duration window,
+                         @Value("${chat.auth.throttle.max-per-username:10}") int maxPerUsername,
+                         @Value("${chat.auth.throttle.max-per-ip:50}") int maxPerIp) {
+        this(window, maxPerUsername, maxPerIp, System::currentTimeMillis);
+    }
+
+    LoginThrottle(Duration window, int maxPerUsername, int maxPerIp, LongSupplier clock) {
+        this.windowMillis = Math.max(1, window.toMillis());
+        this.maxPerUsername = maxPerUsername;
+        this.maxPerIp = maxPerIp;
+        this.clock = clock;
+    }
+
+    /**
+     * Records a login attempt and returns {@code true} if it may proceed. A rejected attempt is not
+     * counted, so a client that backs off gets back in once the window slides past its earlier tries.
+     */
+    public boolean tryAcquire(String username, String ip) {
+        long now = clock.getAsLong();
+        if (calls.incrementAndGet() % PURGE_EVERY == 0) {
+            purgeIdle(now);
+        }
+
+        Window byIp = ips.computeIfAbsent(ip, k -> new Window());
+        Window byUsername = usernames.computeIfAbsent(username.toLowerCase(), k -> new Window());
+        // Always IP first, then username, so concurrent attempts can't deadlock
+        synchronized (byIp) {
+            synchronized (byUsername) {
+                if (byIp.estimate(now, windowMillis) >= maxPerIp
+                        || byUsername.estimate(now, windowMillis) >= maxPerUsername) {
+                    return false;
+                }
+                byIp.current++;
+                byUsername.current++;
+                return true;
+            }
+        }
+    }
+
+    public Duration retryAfter() {
+        return Duration.ofMillis(windowMillis);
+    }
+
+    private void purgeIdle(long now) {
+        long idleBefore = now - 2 * windowMillis;
+        usernames.values().removeIf(window -> window.isIdleSince(idleBefore));
+        ips.values().removeIf(window -> window.isIdleSince(idleBefore));
+    }
+
+    private static final class Window {
+        private long start;
+        private int current;
+        private int previous;
+
+        /** Rolls the fixed windows forward to {@code now} and returns the weighted count. */
+        double estimate(long now, long windowMillis) {
+            long elapsedWindows = (now - start) / windowMillis;
+            if (elapsedWindows >= 2) {
+                previous = 0;
+                current = 0;
+                start = now - (now % windowMillis);
+            } else if (elapsedWindows == 1) {
+                previous = current;
+                current = 0;
+                start += windowMillis;
+            }
+            double overlap = 1.0 - (double) (now - start) / windowMillis;
+            return previous * overlap + current;
+        }
+
+        synchronized boolean isIdleSince(long idleBefore) {
+            return start < idleBefore;
+        }
+    }
+}
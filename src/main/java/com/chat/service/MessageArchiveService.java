@@ -0,0 +1,343 @@
+package com.chat.service;
+
+import com.chat.model.ChatMessage;
+import com.chat.model.ChatModelCreation;
+import com.chat.model.MessageSegment;
+import com.chat.repo.ChatMessageRepo;
+import com.chat.repo.ChatRepository;
+import com.chat.repo.MessageSegmentRepo;
+import com.chat.repo.ReplicaRouting;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves each chat's old messages out of the hot {@code messages} collection into gzip-compressed
+ * {@link MessageSegment}s, and enforces per-chat retention.
+ * <p>
+ * A message is cold once it is older than {@code chat.archive.after}. Cold messages are sealed in seq
+ * order, {@code chat.archive.segment-size} at a time; a chat too quiet to fill a segment has its cold tail
+ * sealed anyway once that tail is {@code chat.archive.partial-segment-delay} older still. Segments are
+ * inserted, never updated, under an id derived from their first seq, so two nodes archiving the same chat
+ * cannot both write it. Hot copies are deleted by id, only the ones their segment holds and only after it
+ * exists. Each run then reconciles the hot messages left inside the archived range against the segments:
+ * copies an interrupted run sealed are deleted, and messages that became visible after their range was sealed
+ * go into a segment of their own. Messages without a seq (written before sequence numbers) stay hot.
+ * <p>
+ * Retention ({@code retentionDays} on the chat, or {@code chat.retention.default-days}) drops hot messages
+ * older than the limit and whole segments whose newest message is. A segment straddling the limit is kept
+ * until all of it has expired.
+ */
+@Service
+public class MessageArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchiveService.class);
+
+    private static final TypeReference<List<ChatMessage>> MESSAGE_LIST = new TypeReference<>() {
+    };
+    private static final int CHAT_PAGE_SIZE = 500;
+    private static final Comparator<ChatMessage> BY_SEQ = Comparator.comparing(ChatMessage::getSeq);
+
+    private final ChatRepository chatRepository;
+    private final ChatMessageRepo chatMessageRepo;
+    private final MessageSegmentRepo segmentRepo;
+    private final ObjectMapper objectMapper;
+    private final ChatVersionTracker versionTracker;
+    private final Duration archiveAfter;
+    private final int segmentSize;
+    private final Duration partialSegmentDelay;
+    private final int defaultRetentionDays;
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public MessageArchiveService(ChatRepository chatRepository,
+                                 ChatMessageRepo chatMessageRepo,
+                                 MessageSegmentRepo segmentRepo,
+                                 ObjectMapper objectMapper,
+                                 ChatVersionTracker versionTracker,
+                                 @Value("${chat.archive.enabled:true}") boolean enabled,
+                                 @Value("${chat.archive.after:30d}") Duration archiveAfter,
+                                 @Value("${chat.archive.interval:1h}") Duration interval,
+                                 @Value("${chat.archive.segment-size:1000}") int segmentSize,
+                                 @Value("${chat.archive.partial-segment-delay:7d}") Duration partialSegmentDelay,
+                                 @Value("${chat.retention.default-days:0}") int defaultRetentionDays) {
+        this.chatRepository = chatRepository;
+        this.chatMessageRepo = chatMessageRepo;
+        this.segmentRepo = segmentRepo;
+        this.objectMapper = objectMapper;
+        this.versionTracker = versionTracker;
+        this.archiveAfter = archiveAfter;
+        this.segmentSize = Math.max(1, segmentSize);
+        this.partialSegmentDelay = partialSegmentDelay;
+        this.defaultRetentionDays = defaultRetentionDays;
+        if (enabled) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "message-archiver");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(1, interval.toSeconds());
+            scheduler.scheduleWithFixedDelay(this::archiveAll, period, period, TimeUnit.SECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /** One pass over every chat. Runs on the archiver thread; exposed for tests and manual runs. */
+    public void archiveAll() {
+        int segments = 0;
+        long expired = 0;
+        PageRequest pageRequest = PageRequest.of(0, CHAT_PAGE_SIZE, Sort.by("chatId"));
+        Page<ChatModelCreation> page;
+        do {
+            page = chatRepository.findAll(pageRequest);
+            for (ChatModelCreation chat : page) {
+                try {
+                    expired += applyRetention(chat);
+                    // Seals and deletes what it reads, so it reads the primary rather than a lagging secondary
+                    segments += ReplicaRouting.onPrimary(() -> archiveChat(chat.getChatId()));
+                } catch (Exception e) {
+                    log.warn("Archiving chat {} failed: {}", chat.getChatId(), e.getMessage());
+                }
+            }
+            pageRequest = pageRequest.next();
+        } while (page.hasNext() && !Thread.currentThread().isInterrupted());
+
+        if (segments > 0 || expired > 0) {
+            log.info("Archive pass sealed {} segments and expired {} messages/segments", segments, expired);
+        }
+    }
+
+    /** Seals the chat's cold messages into segments; returns how many segments were written. */
+    public int archiveChat(Long chatId) {
+        LocalDateTime cutoff = LocalDateTime.now().minus(archiveAfter);
+        LocalDateTime partialCutoff = cutoff.minus(partialSegmentDelay);
+        PageRequest batch = PageRequest.of(0, segmentSize);
+
+        long archivedThrough = archivedThrough(chatId);
+        int sealed = archivedThrough > 0 ? reconcile(chatId, archivedThrough, cutoff) : 0;
+        while (true) {
+            List<ChatMessage> cold = chatMessageRepo.findByChatIdAndSeqGreaterThanOrderBySeqAsc(chatId, archivedThrough, batch)
+                    .stream()
+                    .takeWhile(m -> m.getTimestamp() != null && m.getTimestamp().isBefore(cutoff))
+                    .toList();
+            boolean full = cold.size() == segmentSize;
+            if (cold.isEmpty() || (!full && !cold.get(0).getTimestamp().isBefore(partialCutoff))) {
+                return sealed; // Nothing cold, or a short tail that may still fill up
+            }
+
+            MessageSegment segment = seal(chatId, cold);
+            if (!store(segment, cold)) {
+                return sealed;
+            }
+            archivedThrough = segment.getLastSeq();
+            sealed++;
+            if (!full) {
+                return sealed;
+            }
+        }
+    }
+
+    // Hot messages at or below the archived seq, a page at a time: delete the ones a segment holds, seal the rest
+    private int reconcile(Long chatId, long archivedThrough, LocalDateTime cutoff) {
+        PageRequest batch = PageRequest.of(0, segmentSize);
+        int sealed = 0;
+        long after = 0;
+        while (true) {
+            List<ChatMessage> behind = chatMessageRepo.findInSeqRange(chatId, after, archivedThrough, batch);
+            if (behind.isEmpty()) {
+                return sealed;
+            }
+            long first = behind.get(0).getSeq();
+            long last = behind.get(behind.size() - 1).getSeq();
+            Set<String> archivedIds = new HashSet<>();
+            for (MessageSegment entry : segmentRepo.findIndexByChatIdAndLastSeqGreaterThan(chatId, first - 1)) {
+                if (entry.getFirstSeq() > last) {
+                    break;
+                }
+                segmentRepo.findById(entry.getId())
+                        .ifPresent(segment -> decode(segment.getData()).forEach(m -> archivedIds.add(m.getId())));
+            }
+
+            List<String> leftovers = behind.stream().map(ChatMessage::getId).filter(archivedIds::contains).toList();
+            if (!leftovers.isEmpty()) {
+                log.debug("Deleting {} hot copies of archived messages in chat {}", leftovers.size(), chatId);
+                chatMessageRepo.deleteByIdIn(leftovers);
+            }
+            List<ChatMessage> late = behind.stream()
+                    .filter(m -> !archivedIds.contains(m.getId()))
+                    .filter(m -> m.getTimestamp() != null && m.getTimestamp().isBefore(cutoff))
+                    .toList();
+            if (!late.isEmpty()) {
+                if (!store(seal(chatId, late), late)) {
+                    return sealed;
+                }
+                sealed++;
+            }
+            if (behind.size() < segmentSize) {
+                return sealed;
+            }
+            after = last;
+        }
+    }
+
+    // Writes the segment, then deletes exactly the hot copies it holds; false if another node wrote it first
+    private boolean store(MessageSegment segment, List<ChatMessage> messages) {
+        try {
+            segmentRepo.insert(segment);
+        } catch (DuplicateKeyException e) {
+            log.debug("Segment {} was sealed by another node", segment.getId());
+            return false;
+        }
+        chatMessageRepo.deleteByIdIn(messages.stream().map(ChatMessage::getId).toList());
+        return true;
+    }
+
+    /** Deletes messages and segments older than the chat's retention; returns how many were removed. */
+    public long applyRetention(ChatModelCreation chat) {
+        int days = chat.getRetentionDays() != null ? chat.getRetentionDays() : defaultRetentionDays;
+        if (days <= 0) {
+            return 0; // Keep forever
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(days);
+        long removed = segmentRepo.deleteByChatIdAndLastTimestampLessThan(chat.getChatId(), cutoff)
+                + chatMessageRepo.deleteByChatIdAndTimestampLessThan(chat.getChatId(), cutoff);
+        if (removed > 0) {
+            versionTracker.chatChanged(chat.getChatId());
+        }
+        return removed;
+    }
+
+    /** Highest seq archived for each of the given chats that has any segments. */
+    public Map<Long, MessageSegment> archivedThrough(Collection<Long> chatIds) {
+        if (chatIds.isEmpty()) {
+            return Map.of();
+        }
+        return segmentRepo.findArchivedThroughByChatIdIn(chatIds).stream()
+                .collect(Collectors.toMap(MessageSegment::getChatId, s -> s));
+    }
+
+    /** Every archived message of the chat, in seq order. */
+    public List<ChatMessage> readAll(Long chatId) {
+        return read(segmentRepo.findIndexByChatId(chatId), m -> true, Integer.MAX_VALUE);
+    }
+
+    /** Up to {@code limit} archived messages with a seq above {@code afterSeq}, in seq order. */
+    public List<ChatMessage> readAfterSeq(Long chatId, long afterSeq, int limit) {
+        return read(segmentRepo.findIndexByChatIdAndLastSeqGreaterThan(chatId, afterSeq),
+                m -> m.getSeq() > afterSeq, limit);
+    }
+
+    /** Up to {@code limit} archived messages with an id above {@code afterId} (all when null), in seq order. */
+    public List<ChatMessage> readAfterId(Long chatId, String afterId, int limit) {
+        if (afterId == null) {
+            return read(segmentRepo.findIndexByChatId(chatId), m -> true, limit);
+        }
+        return read(segmentRepo.findIndexByChatIdAndLastMessageIdGreaterThan(chatId, afterId),
+                m -> m.getId().compareTo(afterId) > 0, limit);
+    }
+
+    public void deleteChat(Long chatId) {
+        segmentRepo.deleteByChatId(chatId);
+    }
+
+    private long archivedThrough(Long chatId) {
+        List<MessageSegment> latest = segmentRepo.findLatestIndexByChatId(chatId, PageRequest.of(0, 1));
+        return latest.isEmpty() ? 0 : latest.get(0).getLastSeq();
+    }
+
+    // The index entries come without payloads and in firstSeq order; fetch each segment only when we get to it.
+    // A segment of late arrivals overlaps earlier ranges, so reading stops only at one starting past the limit.
+    private List<ChatMessage> read(List<MessageSegment> index, Predicate<ChatMessage> include, int limit) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (MessageSegment entry : index) {
+            if (messages.size() >= limit && entry.getFirstSeq() > messages.get(limit - 1).getSeq()) {
+                break;
+            }
+            MessageSegment segment = segmentRepo.findById(entry.getId()).orElse(null);
+            if (segment == null) {
+                continue; // Expired since the index was read
+            }
+            decode(segment.getData()).stream().filter(include).forEach(messages::add);
+            messages.sort(BY_SEQ);
+            if (messages.size() > limit) {
+                messages.subList(limit, messages.size()).clear();
+            }
+        }
+        return messages;
+    }
+
+    private MessageSegment seal(Long chatId, List<ChatMessage> messages) {
+        ChatMessage first = messages.get(0);
+        ChatMessage last = messages.get(messages.size() - 1);
+        MessageSegment segment = new MessageSegment();
+        segment.setId(MessageSegment.idFor(chatId, first.getSeq()));
+        segment.setChatId(chatId);
+        segment.setFirstSeq(first.getSeq());
+        segment.setLastSeq(last.getSeq());
+        segment.setFirstMessageId(first.getId());
+        segment.setLastMessageId(messages.stream().map(ChatMessage::getId).max(String::compareTo).orElseThrow());
+        // Bounds over the whole segment; retention compares against the newest
+        segment.setFirstTimestamp(messages.stream().map(ChatMessage::getTimestamp).min(LocalDateTime::compareTo).orElseThrow());
+        segment.setLastTimestamp(messages.stream().map(ChatMessage::getTimestamp).max(LocalDateTime::compareTo).orElseThrow());
+        segment.setMessageCount(messages.size());
+        segment.setSealedAt(LocalDateTime.now());
+        segment.setData(encode(messages));
+        return segment;
+    }
+
+    private byte[] encode(List<ChatMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gzip, messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<ChatMessage> decode(byte[] data) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return objectMapper.readValue(gzip, MESSAGE_LIST);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
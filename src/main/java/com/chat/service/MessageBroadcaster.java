@@ -0,0 +1,232 @@
+package com.chat.service;
+
+import com.chat.model.EncodedMessage;
+import com.chat.model.MessageAck;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single entry point for pushing frames to STOMP destinations.
+ * <p>
+ * When coalescing is enabled, payloads sent to the same destination within
+ * {@code chat.broadcast.coalesce.window-ms} are delivered together as one JSON array frame,
+ * and a batch is flushed immediately once it reaches {@code chat.broadcast.coalesce.max-batch-size}.
+ * Clients must be prepared to receive arrays on chat topics when this is switched on. A destination has at
+ * most one open batch, which stays in place until its frame is sent, so frames for one destination go out
+ * one at a time and in order.
+ * <p>
+ * {@code chat.delivery.mode} chooses where chat messages go: {@code topic} publishes to
+ * {@code /topic/chat/{id}} (one subscription per chat on the client), {@code user-queue} sends a copy to
+ * each participant's {@code /user/queue/messages} (one subscription per connection, demultiplexed by
+ * {@code chatId}), and {@code both} does both while clients migrate. Every copy for a chat is sent from the
+ * same call, so a member sees that chat's messages in the order they were broadcast.
+ * <p>
+ * {@link EncodedMessage} payloads go out as their pre-encoded bytes; nothing is serialized per frame.
+ */
+@Service
+public class MessageBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageBroadcaster.class);
+
+    public static final String USER_QUEUE = "/queue/messages";
+    public static final String ACK_QUEUE = "/queue/acks";
+
+    public enum DeliveryMode { TOPIC, USER_QUEUE, BOTH }
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final DeliveryMode deliveryMode;
+    private final ChatMembershipService membershipService;
+    private final ChatVersionTracker versionTracker;
+    private final boolean coalesceEnabled;
+    private final long windowMs;
+    private final int maxBatchSize;
+
+    private final Map<String, Batch> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    @Autowired
+    public MessageBroadcaster(SimpMessagingTemplate messagingTemplate,
+                              @Value("${chat.broadcast.coalesce.enabled:false}") boolean coalesceEnabled,
+                              @Value("${chat.broadcast.coalesce.window-ms:5}") long windowMs,
+                              @Value("${chat.broadcast.coalesce.max-batch-size:32}") int maxBatchSize,
+                              @Value("${chat.delivery.mode:topic}") DeliveryMode deliveryMode,
+                              ChatMembershipService membershipService,
+                              ChatVersionTracker versionTracker) {
+        this.messagingTemplate = messagingTemplate;
+        this.deliveryMode = deliveryMode;
+        this.membershipService = membershipService;
+        this.versionTracker = versionTracker;
+        this.coalesceEnabled = coalesceEnabled;
+        this.windowMs = Math.max(1, windowMs);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.flusher = coalesceEnabled ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "broadcast-coalescer");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+    }
+
+    public void broadcastToChat(Long chatId, Object payload) {
+        // Everything published to a chat (new messages, AI replies, deltas) is a change to its history
+        versionTracker.chatChanged(chatId);
+        if (deliveryMode != DeliveryMode.USER_QUEUE) {
+            send("/topic/chat/" + chatId, payload);
+        }
+        if (deliveryMode == DeliveryMode.TOPIC) {
+            return;
+        }
+        List<String> usernames = membershipService.memberUsernames(chatId);
+        if (coalesceEnabled) {
+            usernames.forEach(username -> sendToUser(username, payload));
+            return;
+        }
+        // Serialize once; every member's copy carries the same bytes
+        Message<?> frame = toFrame(payload);
+        for (String username : usernames) {
+            messagingTemplate.send(userDestination(username), frame);
+        }
+    }
+
+    public void sendToUser(String username, Object payload) {
+        send(userDestination(username), payload);
+    }
+
+    /** Confirms a stored message to its sender on {@code /user/queue/acks}; never coalesced. */
+    public void sendAck(String username, MessageAck ack) {
+        messagingTemplate.convertAndSendToUser(username, ACK_QUEUE, ack);
+    }
+
+    public boolean usesUserQueues() {
+        return deliveryMode != DeliveryMode.TOPIC;
+    }
+
+    public void send(String destination, Object payload) {
+        if (!coalesceEnabled) {
+            if (payload instanceof EncodedMessage encoded) {
+                messagingTemplate.send(destination, toFrame(encoded));
+            } else {
+                messagingTemplate.convertAndSend(destination, payload);
+            }
+            return;
+        }
+
+        while (true) {
+            Batch batch = pending.computeIfAbsent(destination, d -> new Batch());
+            synchronized (batch) {
+                if (batch.closed) {
+                    continue; // Lost a race with the flusher, pick up the replacement batch
+                }
+                batch.items.add(payload);
+                if (batch.items.size() >= maxBatchSize) {
+                    // The next payload starts a new batch with its own window; its timer finds this one closed
+                    try {
+                        messagingTemplate.convertAndSend(destination, batch.drain());
+                    } finally {
+                        close(destination, batch);
+                    }
+                } else if (!batch.scheduled) {
+                    batch.scheduled = true;
+                    flusher.schedule(() -> flush(destination, batch), windowMs, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+    }
+
+    private Message<?> toFrame(Object payload) {
+        if (payload instanceof EncodedMessage encoded) {
+            return MessageBuilder.withPayload(encoded.json())
+                    .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON)
+                    .build();
+        }
+        Message<?> frame = messagingTemplate.getMessageConverter().toMessage(payload, null);
+        if (frame == null) {
+            throw new MessageConversionException("Cannot convert " + payload.getClass().getName() + " to a frame");
+        }
+        return frame;
+    }
+
+    private static String userDestination(String username) {
+        // Same encoding SimpMessagingTemplate.convertAndSendToUser applies, so names containing '/' resolve
+        return "/user/" + username.replace("/", "%2F") + USER_QUEUE;
+    }
+
+    /** Number of payloads currently waiting for their coalescing window to close. */
+    public int pendingCount() {
+        int count = 0;
+        for (Batch batch : pending.values()) {
+            synchronized (batch) {
+                count += batch.items.size();
+            }
+        }
+        return count;
+    }
+
+    private void flush(String destination, Batch batch) {
+        synchronized (batch) {
+            if (batch.closed) {
+                return;
+            }
+            try {
+                if (!batch.items.isEmpty()) {
+                    messagingTemplate.convertAndSend(destination, batch.drain());
+                }
+            } catch (Exception e) {
+                log.error("Failed to flush coalesced batch to {}: {}", destination, e.getMessage(), e);
+            } finally {
+                close(destination, batch);
+            }
+        }
+    }
+
+    // Only once the batch's frame is out: until then new payloads for the destination wait on this batch's
+    // lock instead of starting a batch whose frame could overtake it
+    private void close(String destination, Batch batch) {
+        batch.closed = true;
+        pending.remove(destination, batch);
+    }
+
+    /** Sends every coalescing batch now instead of at the end of its window. */
+    public void flushPending() {
+        pending.forEach(this::flush);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flushPending();
+        flusher.shutdownNow();
+    }
+
+    private static final class Batch {
+        private List<Object> items = new ArrayList<>();
+        private boolean scheduled;
+        private boolean closed;
+
+        private List<Object> drain() {
+            List<Object> drained = items;
+            items = new ArrayList<>();
+            return drained;
+        }
+    }
+}
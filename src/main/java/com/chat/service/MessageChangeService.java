@@ -0,0 +1,133 @@
+package com.chat.service;
+
+import com.chat.model.ChatMessage;
+import com.chat.model.MessageDelta;
+import com.chat.repo.ChatMessageRepo;
+import com.chat.repo.ReplicaRouting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Edits, deletes and reactions on existing messages. Each change is a single-document update of the
+ * stored message, stamped with a {@code changeSeq} from the chat's sequence, and is broadcast on the chat
+ * topic as a {@link MessageDelta} rather than making clients reload history. Deleted messages stay as
+ * tombstones so seq and id cursors keep lining up. Only hot messages can change; archived segments are
+ * immutable. Edits and deletes drop the link preview; an edited text is unfurled again.
+ */
+@Service
+public class MessageChangeService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageChangeService.class);
+
+    private static final int MAX_EMOJI_LENGTH = 32;
+
+    private final ChatMessageRepo chatMessageRepo;
+    private final ChatService chatService;
+    private final ChatSequenceAllocator sequenceAllocator;
+    private final MessageBroadcaster messageBroadcaster;
+    private final LinkPreviewService linkPreviewService;
+
+    @Autowired
+    public MessageChangeService(ChatMessageRepo chatMessageRepo, ChatService chatService,
+                                ChatSequenceAllocator sequenceAllocator, MessageBroadcaster messageBroadcaster,
+                                LinkPreviewService linkPreviewService) {
+        this.chatMessageRepo = chatMessageRepo;
+        this.chatService = chatService;
+        this.sequenceAllocator = sequenceAllocator;
+        this.messageBroadcaster = messageBroadcaster;
+        this.linkPreviewService = linkPreviewService;
+    }
+
+    /** Replaces the text of the caller's own TEXT message; false if it no longer exists. */
+    public boolean edit(Long chatId, String messageId, String username, String content) {
+        if (content == null || content.trim().isEmpty()) {
+            throw new IllegalArgumentException("Message content cannot be empty.");
+        }
+        ChatMessage message = ownMessage(chatId, messageId, username);
+        if (!"TEXT".equals(message.getType())) {
+            throw new IllegalArgumentException("Only text messages can be edited.");
+        }
+        long changeSeq = sequenceAllocator.next(chatId);
+        LocalDateTime editedAt = LocalDateTime.now();
+        long updated;
+        try {
+            updated = chatMessageRepo.updateContent(messageId, content, editedAt, changeSeq);
+        } finally {
+            sequenceAllocator.finished(chatId, changeSeq);
+        }
+        if (updated == 0) {
+            return false;
+        }
+        messageBroadcaster.broadcastToChat(chatId, MessageDelta.edited(chatId, messageId, changeSeq, content, editedAt));
+        message.setContent(content);
+        linkPreviewService.unfurl(message); // A new preview follows as a delta
+        return true;
+    }
+
+    /** Turns the caller's own message into a tombstone; false if it was already deleted. */
+    public boolean delete(Long chatId, String messageId, String username) {
+        ownMessage(chatId, messageId, username);
+        long changeSeq = sequenceAllocator.next(chatId);
+        long updated;
+        try {
+            updated = chatMessageRepo.markDeleted(messageId, changeSeq);
+        } finally {
+            sequenceAllocator.finished(chatId, changeSeq);
+        }
+        if (updated == 0) {
+            return false;
+        }
+        messageBroadcaster.broadcastToChat(chatId, MessageDelta.deleted(chatId, messageId, changeSeq));
+        return true;
+    }
+
+    /**
+     * Adds or removes the caller's reaction. Repeating an add or remove is a no-op and broadcasts
+     * nothing; returns whether anything changed.
+     */
+    public boolean react(Long chatId, String messageId, String username, String emoji, boolean add) {
+        if (emoji == null || emoji.isBlank() || emoji.length() > MAX_EMOJI_LENGTH) {
+            throw new IllegalArgumentException("Reaction must be between 1 and " + MAX_EMOJI_LENGTH + " characters.");
+        }
+        chatMessage(chatId, messageId, username);
+        long changeSeq = sequenceAllocator.next(chatId);
+        long changed;
+        try {
+            changed = add
+                    ? chatMessageRepo.addReaction(messageId, emoji, username, changeSeq)
+                    : chatMessageRepo.removeReaction(messageId, emoji, username, changeSeq);
+        } finally {
+            sequenceAllocator.finished(chatId, changeSeq);
+        }
+        if (changed == 0) {
+            return false;
+        }
+        messageBroadcaster.broadcastToChat(chatId,
+                MessageDelta.reaction(chatId, messageId, changeSeq, add, emoji, username));
+        return true;
+    }
+
+    private ChatMessage ownMessage(Long chatId, String messageId, String username) {
+        ChatMessage message = chatMessage(chatId, messageId, username);
+        if (!username.equals(message.getSender())) {
+            log.warn("User '{}' tried to change message {} sent by '{}'", username, messageId, message.getSender());
+            throw new AccessDeniedException("You can only change your own messages.");
+        }
+        return message;
+    }
+
+    private ChatMessage chatMessage(Long chatId, String messageId, String username) {
+        if (!chatService.isUserInChat(username, chatId)) {
+            throw new AccessDeniedException("Not authorized for this chat.");
+        }
+        // Read-modify-write: anyone may react to a message sent a moment ago
+        return ReplicaRouting.onPrimary(() -> chatMessageRepo.findById(messageId))
+                .filter(message -> chatId.equals(message.getChatId()))
+                .orElseThrow(() -> new RuntimeException("Message not found (archived messages cannot be changed): " + messageId));
+    }
+}
@@ -0,0 +1,103 @@
+package com.chat.service;
+
+import com.chat.model.ChatMessage;
+import com.chat.model.MessageAck;
+import com.chat.repo.ChatMessageRepo;
+import com.chat.repo.ReplicaRouting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recognizes resends of a message that was already stored, by the sender's {@code clientMessageId}.
+ * <p>
+ * Acks for messages stored on this node in the last {@code chat.messages.dedupe.window} (at most
+ * {@code chat.messages.dedupe.max-entries} of them) are kept in memory, so a retry is answered without touching
+ * the database or taking a seq. Anything else, a retry that reaches another node or outlives the window, is
+ * stopped by the unique {@code chat_client_message_idx}; only then is the stored copy looked up, so ordinary
+ * sends never pay for a lookup, and such a retry leaves its seq unused.
+ */
+@Service
+public class MessageDeduplicator {
+
+    public static final int MAX_CLIENT_MESSAGE_ID_LENGTH = 64;
+
+    private record Remembered(MessageAck ack, long rememberedAt) {
+    }
+
+    private final ChatMessageRepo chatMessageRepo;
+    private final long windowNanos;
+    private final Map<String, Remembered> recent;
+
+    @Autowired
+    public MessageDeduplicator(ChatMessageRepo chatMessageRepo,
+                               @Value("${chat.messages.dedupe.window:10m}") Duration window,
+                               @Value("${chat.messages.dedupe.max-entries:100000}") int maxEntries) {
+        this.chatMessageRepo = chatMessageRepo;
+        this.windowNanos = window.toNanos();
+        // Insertion order is age order, so the eldest entry is also the first to expire
+        this.recent = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Remembered> eldest) {
+                return size() > maxEntries || expired(eldest.getValue(), System.nanoTime());
+            }
+        };
+    }
+
+    public static boolean isValid(String clientMessageId) {
+        return !clientMessageId.isBlank() && clientMessageId.length() <= MAX_CLIENT_MESSAGE_ID_LENGTH;
+    }
+
+    /** The ack for an earlier send with this id within the window, marked as a duplicate; null if none is known. */
+    public MessageAck recentAck(Long chatId, String sender, String clientMessageId) {
+        String key = key(chatId, sender, clientMessageId);
+        Remembered remembered;
+        synchronized (recent) {
+            remembered = recent.get(key);
+            if (remembered != null && expired(remembered, System.nanoTime())) {
+                recent.remove(key);
+                remembered = null;
+            }
+        }
+        return remembered == null ? null : duplicateOf(remembered.ack);
+    }
+
+    public void remember(ChatMessage saved) {
+        MessageAck ack = MessageAck.of(saved, false);
+        synchronized (recent) {
+            recent.put(key(saved.getChatId(), saved.getSender(), saved.getClientMessageId()),
+                    new Remembered(ack, System.nanoTime()));
+        }
+    }
+
+    /**
+     * After an insert failed on the unique index: the ack for the copy stored first, marked as a duplicate,
+     * or null if the conflict was not on the client id.
+     */
+    public MessageAck storedAck(Long chatId, String sender, String clientMessageId) {
+        return ReplicaRouting.onPrimary(
+                        () -> chatMessageRepo.findByChatIdAndSenderAndClientMessageId(chatId, sender, clientMessageId))
+                .map(stored -> {
+                    remember(stored);
+                    return MessageAck.of(stored, true);
+                })
+                .orElse(null);
+    }
+
+    private boolean expired(Remembered remembered, long now) {
+        return now - remembered.rememberedAt > windowNanos;
+    }
+
+    private static MessageAck duplicateOf(MessageAck ack) {
+        return new MessageAck(ack.getClientMessageId(), ack.getId(), ack.getChatId(), ack.getSeq(),
+                ack.getTimestamp(), true);
+    }
+
+    private static String key(Long chatId, String sender, String clientMessageId) {
+        return chatId + ":" + sender + ":" + clientMessageId;
+    }
+}
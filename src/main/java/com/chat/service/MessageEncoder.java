@@ -0,0 +1,84 @@
+package com.chat.service;
+
+import com.chat.model.ChatMessage;
+import com.chat.model.ChatMessageDTO;
+import com.chat.model.EncodedMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Turns stored messages into {@link EncodedMessage}s, serializing each version of a message once.
+ * <p>
+ * Messages are encoded as they are persisted, and the most recent {@code chat.encoding.cache-size}
+ * encodings are kept by message id, so history and sync responses for recent traffic reuse the broadcast
+ * bytes. An entry only counts when its {@code changeSeq} still matches the stored message; any later edit,
+ * delete, reaction or preview stamps a new one and the message is encoded again.
+ */
+@Service
+public class MessageEncoder {
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, EncodedMessage> cache;
+
+    @Autowired
+    public MessageEncoder(ObjectMapper objectMapper, @Value("${chat.encoding.cache-size:50000}") int cacheSize) {
+        this.objectMapper = objectMapper;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EncodedMessage> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public EncodedMessage encode(ChatMessage message) {
+        String id = message.getId();
+        if (id != null) {
+            EncodedMessage cached;
+            synchronized (cache) {
+                cached = cache.get(id);
+            }
+            if (cached != null && Objects.equals(cached.changeSeq(), message.getChangeSeq())) {
+                return cached;
+            }
+        }
+        EncodedMessage encoded = new EncodedMessage(id, message.getChangeSeq(), serialize(message));
+        if (id != null) {
+            synchronized (cache) {
+                cache.put(id, encoded);
+            }
+        }
+        return encoded;
+    }
+
+    public List<EncodedMessage> encodeAll(List<ChatMessage> messages) {
+        List<EncodedMessage> encoded = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            encoded.add(encode(message));
+        }
+        return encoded;
+    }
+
+    /** The messages as a JSON array of DTOs, the body of a history response. */
+    public byte[] toJsonArray(List<ChatMessage> messages) {
+        return EncodedMessage.toJsonArray(encodeAll(messages));
+    }
+
+    private byte[] serialize(ChatMessage message) {
+        try {
+            return objectMapper.writeValueAsBytes(ChatMessageDTO.fromEntity(message));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Failed to encode message " + message.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.chat.service;
+
+import com.chat.model.ChatMessage;
+import com.chat.model.ChatModelCreation;
+import com.chat.model.ChatSyncResult;
+import com.chat.model.EncodedMessage;
+import com.chat.model.MessageSegment;
+import com.chat.repo.ChatMessageRepo;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Service
+public class MessageHistoryService {
+
+    private static final Comparator<ChatMessage> BY_SEQ = Comparator.comparing(ChatMessage::getSeq,
+            Comparator.nullsFirst(Comparator.naturalOrder()));
+    private static final Comparator<ChatMessage> BY_ID = Comparator.comparing(ChatMessage::getId);
+    // Same order as findByChatIdOrderBySeqAscTimestampAsc: legacy messages without a seq first, by time
+    private static final Comparator<ChatMessage> HISTORY_ORDER = BY_SEQ.thenComparing(ChatMessage::getTimestamp,
+            Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final ChatService chatService;
+    private final ChatMessageRepo chatMessageRepo;
+    private final MessageArchiveService archiveService;
+    private final MessageEncoder messageEncoder;
+    private final ChatSequenceAllocator sequenceAllocator;
+
+    @Value("${chat.sync.max-messages-per-chat:500}")
+    private int maxMessagesPerChat;
+
+    @Autowired
+    public MessageHistoryService(ChatService chatService, ChatMessageRepo chatMessageRepo,
+                                 MessageArchiveService archiveService, MessageEncoder messageEncoder,
+                                 ChatSequenceAllocator sequenceAllocator) {
+        this.chatService = chatService;
+        this.chatMessageRepo = chatMessageRepo;
+        this.archiveService = archiveService;
+        this.messageEncoder = messageEncoder;
+        this.sequenceAllocator = sequenceAllocator;
+    }
+
+    /** The chat's whole history, archived segments included, in seq order. */
+    public List<ChatMessage> fullHistory(Long chatId) {
+        List<ChatMessage> hot = chatMessageRepo.findByChatIdOrderBySeqAscTimestampAsc(chatId);
+        return merge(archiveService.readAll(chatId), hot, HISTORY_ORDER, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns, for every chat the user belongs to, only the messages newer than the client's cursor
+     * (a sequence number when the client has one, otherwise a message id).
+     * Chats whose cursor is absent are returned from the beginning, one page at a time;
+     * chats with nothing new are left out of the result. With a sequence cursor, edits, deletes and
+     * reactions to messages the client already has are returned separately as {@code changes}. Archived segments are only read for chats
+     * whose cursor is older than the newest archived message.
+     * <p>
+     * Seqs are taken before the insert or update, so a higher seq can be readable before a lower one. Sequence
+     * cursors are therefore only read up to the chat's watermark (see {@link ChatSequenceAllocator}), returned as
+     * {@code syncedThrough}; chats whose watermark has not passed the cursors cost no query.
+     */
+    public Map<Long, ChatSyncResult> syncChats(Long userId, Map<Long, String> lastSeenIds, Map<Long, Long> lastSeenSeqs,
+                                               Map<Long, Long> lastSeenChangeSeqs) {
+        Map<Long, String> cursors = lastSeenIds != null ? lastSeenIds : Map.of();
+        Map<Long, Long> seqCursors = lastSeenSeqs != null ? lastSeenSeqs : Map.of();
+        Map<Long, Long> changeCursors = lastSeenChangeSeqs != null ? lastSeenChangeSeqs : Map.of();
+        for (String cursor : cursors.values()) {
+            if (cursor != null && !ObjectId.isValid(cursor)) {
+                throw new IllegalArgumentException("Invalid message cursor: " + cursor);
+            }
+        }
+
+        // Fetch one extra row per chat so we can tell the client whether to keep paging
+        Pageable page = PageRequest.of(0, maxMessagesPerChat + 1);
+        int limit = page.getPageSize();
+        Map<Long, ChatSyncResult> results = new LinkedHashMap<>();
+        List<ChatModelCreation> chats = chatService.getChatsForUser(userId);
+        List<Long> chatIds = chats.stream().map(ChatModelCreation::getChatId).toList();
+        Map<Long, MessageSegment> archived = archiveService.archivedThrough(chatIds);
+        Map<Long, Long> watermarks = seqCursors.isEmpty() ? Map.of()
+                : sequenceAllocator.watermarks(chatIds.stream().filter(seqCursors::containsKey).toList());
+        for (ChatModelCreation chat : chats) {
+            Long chatId = chat.getChatId();
+            Long seqCursor = seqCursors.get(chatId);
+            String cursor = cursors.get(chatId);
+            MessageSegment cold = archived.get(chatId);
+            List<ChatMessage> missed = List.of();
+            List<ChatMessage> changed = List.of();
+            Long syncedThrough = null;
+            if (seqCursor != null) {
+                long changeCursor = changeCursors.getOrDefault(chatId, seqCursor);
+                long watermark = watermarks.getOrDefault(chatId, 0L);
+                if (watermark <= seqCursor && watermark <= changeCursor) {
+                    continue; // Nothing past the cursors is known to be readable yet
+                }
+                if (watermark > seqCursor) {
+                    missed = chatMessageRepo.findInSeqRange(chatId, seqCursor, watermark, page);
+                    if (cold != null && seqCursor < cold.getLastSeq()) {
+                        missed = merge(archiveService.readAfterSeq(chatId, seqCursor, limit), missed, BY_SEQ, limit);
+                    }
+                }
+                if (watermark > changeCursor) {
+                    changed = chatMessageRepo.findChangesInRange(chatId, changeCursor, watermark, seqCursor, page);
+                }
+                syncedThrough = watermark;
+            } else if (cursor != null) {
+                missed = chatMessageRepo.findByChatIdAndIdGreaterThanOrderByIdAsc(chatId, cursor, page);
+                if (cold != null && cursor.compareTo(cold.getLastMessageId()) < 0) {
+                    missed = merge(archiveService.readAfterId(chatId, cursor, limit), missed, BY_ID, limit);
+                }
+            } else {
+                missed = chatMessageRepo.findByChatIdOrderByIdAsc(chatId, page);
+                if (cold != null) {
+                    missed = merge(archiveService.readAfterId(chatId, null, limit), missed, BY_ID, limit);
+                }
+            }
+
+            if (missed.isEmpty() && changed.isEmpty() && syncedThrough == null) {
+                continue; // Client is up to date for this chat
+            }
+
+            // Paging continues from the cursors, so only the pages themselves decide hasMore
+            results.put(chatId, new ChatSyncResult(
+                    encode(limit(missed)), missed.size() > maxMessagesPerChat,
+                    encode(limit(changed)), changed.size() > maxMessagesPerChat, syncedThrough));
+        }
+        return results;
+    }
+
+    private List<EncodedMessage> encode(List<ChatMessage> messages) {
+        return messageEncoder.encodeAll(messages);
+    }
+
+    private List<ChatMessage> limit(List<ChatMessage> messages) {
+        return messages.size() > maxMessagesPerChat ? messages.subList(0, maxMessagesPerChat) : messages;
+    }
+
+    // Archived messages precede the hot ones; a run interrupted between sealing and deleting can leave both copies
+    private static List<ChatMessage> merge(List<ChatMessage> cold, List<ChatMessage> hot,
+                                           Comparator<ChatMessage> order, int limit) {
+        if (cold.isEmpty()) {
+            return hot;
+        }
+        Map<String, ChatMessage> byId = new LinkedHashMap<>();
+        cold.forEach(message -> byId.put(message.getId(), message));
+        hot.forEach(message -> byId.putIfAbsent(message.getId(), message));
+        return byId.values().stream().sorted(order).limit(limit).collect(Collectors.toList());
+    }
+}
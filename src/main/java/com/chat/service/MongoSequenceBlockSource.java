@@ -0,0 +1,108 @@
+package com.chat.service;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One {@code chat_sequences} document per chat: {@code next} is the highest reserved number and
+ * {@code floors.<node>} each node's floor with the time it was last published. A node that stops publishing
+ * (it crashed, or lost Mongo) stops holding the watermark back once its floor is older than
+ * {@code chat.sequence.floor-ttl}.
+ */
+@Service
+@Profile("!loadtest")
+public class MongoSequenceBlockSource implements SequenceBlockSource {
+
+    private static final String COLLECTION = "chat_sequences";
+
+    private final MongoOperations mongoOperations;
+    private final Duration floorTtl;
+
+    @Autowired
+    public MongoSequenceBlockSource(MongoOperations mongoOperations,
+                                    @Value("${chat.sequence.floor-ttl:30s}") Duration floorTtl) {
+        this.mongoOperations = mongoOperations;
+        this.floorTtl = floorTtl;
+    }
+
+    @Override
+    public long reserve(Long chatId, int size, String node) {
+        // One pipeline update, so the floor is pinned before anyone can see the new counter:
+        // next += size, floors.<node>.seq = min(its current value, old next + 1)
+        String floor = "floors." + node;
+        Document current = new Document("$ifNull", List.of("$next", 0L));
+        Document first = new Document("$add", List.of(current, 1L));
+        Document set = new Document("next", new Document("$add", List.of(current, (long) size)))
+                .append(floor, new Document("seq", new Document("$min", List.of("$" + floor + ".seq", first)))
+                        .append("at", new Date()));
+        Document counter = mongoOperations.findAndModify(
+                Query.query(Criteria.where("_id").is(chatId)),
+                AggregationUpdate.from(List.of(context -> new Document("$set", set))),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Document.class,
+                COLLECTION);
+        if (counter == null) {
+            throw new IllegalStateException("Failed to reserve sequence block for chat " + chatId);
+        }
+        long end = ((Number) counter.get("next")).longValue();
+        return end - size + 1;
+    }
+
+    @Override
+    public void publishFloors(String node, Map<Long, Long> floors, Collection<Long> released) {
+        String floor = "floors." + node;
+        BulkOperations updates = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+        Date now = new Date();
+        floors.forEach((chatId, seq) -> updates.updateOne(Query.query(Criteria.where("_id").is(chatId)),
+                new Update().set(floor, new Document("seq", seq).append("at", now))));
+        released.forEach(chatId -> updates.updateOne(Query.query(Criteria.where("_id").is(chatId)),
+                new Update().unset(floor)));
+        updates.execute();
+    }
+
+    @Override
+    public Map<Long, Long> watermarks(Collection<Long> chatIds) {
+        Map<Long, Long> watermarks = new HashMap<>();
+        if (chatIds.isEmpty()) {
+            return watermarks;
+        }
+        Date liveSince = new Date(System.currentTimeMillis() - floorTtl.toMillis());
+        for (Document counter : mongoOperations.find(Query.query(Criteria.where("_id").in(chatIds)),
+                Document.class, COLLECTION)) {
+            Object next = counter.get("next");
+            if (next == null) {
+                continue;
+            }
+            long watermark = ((Number) next).longValue();
+            Document floors = counter.get("floors", Document.class);
+            if (floors != null) {
+                for (Object value : floors.values()) {
+                    Document floor = (Document) value;
+                    Date at = floor.getDate("at");
+                    if (at != null && at.after(liveSince)) {
+                        watermark = Math.min(watermark, ((Number) floor.get("seq")).longValue() - 1);
+                    }
+                }
+            }
+            watermarks.put(((Number) counter.get("_id")).longValue(), watermark);
+        }
+        return watermarks;
+    }
+}
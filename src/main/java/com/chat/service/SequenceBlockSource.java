@@ -0,0 +1,28 @@
+package com.chat.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Hands out disjoint blocks of per-chat sequence numbers and tracks how far each chat's numbers are written.
+ * Implementations must guarantee that two callers (on any node) never receive overlapping blocks for the
+ * same chat, and that each reservation for a chat starts above every earlier one.
+ * <p>
+ * A node holding numbers it has not finished writing keeps a floor for the chat: the lowest number it may
+ * still write. A chat's watermark is one below its lowest live floor, or its highest reserved number when
+ * no node holds one, so every number at or below the watermark is either readable or will never be used.
+ */
+public interface SequenceBlockSource {
+
+    /**
+     * Reserves {@code size} consecutive numbers for the chat and returns the first one. In the same atomic
+     * step the node's floor for the chat is lowered to that first number if it was higher or unset.
+     */
+    long reserve(Long chatId, int size, String node);
+
+    /** Sets the node's floors for the given chats and drops its floors for the released ones. */
+    void publishFloors(String node, Map<Long, Long> floors, Collection<Long> released);
+
+    /** The watermark of each given chat that has ever had a number reserved. */
+    Map<Long, Long> watermarks(Collection<Long> chatIds);
+}
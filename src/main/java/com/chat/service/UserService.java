@@ -3,18 +3,23 @@ package com.chat.service;
 import com.chat.model.ChatModelCreation;
 import com.chat.model.UserModel;
 import com.chat.repo.ChatRepository;
+import com.chat.repo.ReplicaRouting;
 import com.chat.repo.UserRepo;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.userdetails.User; // Import Spring Security User
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class UserService implements UserDetailsService {
@@ -25,19 +30,32 @@ public class UserService implements UserDetailsService {
 
     private final ChatRepository chatRepository;
 
+    private final TransactionTemplate transactionTemplate;
+
+    private final UsernameIndex usernameIndex;
+
     @Value("${ai.user.id}")
     private Long aiUserId;
 
+    // The AI user is seeded by data.sql and never removed, so once seen it needn't be checked again
+    private volatile boolean aiUserPresent;
+    private volatile String aiUsername;
+
     @Autowired
-    public UserService(UserRepo userRepo, BCryptPasswordEncoder passwordEncoder, ChatRepository chatRepository) {
+    public UserService(UserRepo userRepo, BCryptPasswordEncoder passwordEncoder, ChatRepository chatRepository,
+                       TransactionTemplate transactionTemplate, UsernameIndex usernameIndex) {
         this.userRepo = userRepo;
         this.passwordEncoder = passwordEncoder;
         this.chatRepository = chatRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.usernameIndex = usernameIndex;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         UserModel userModel = userRepo.findByUsername(username)
+                // Someone who registered a moment ago may not have reached the replica yet
+                .or(() -> ReplicaRouting.onPrimary(() -> userRepo.findByUsername(username)))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
 
         return new User(
@@ -48,15 +66,25 @@ public class UserService implements UserDetailsService {
     }
 
     public boolean registerUser(String username, String password) {
-        if(userRepo.findByUsername(username).isPresent()) {
+        // Taken names are turned away before paying for a hash; the unique constraint still settles races
+        if (userRepo.findByUsername(username).isPresent()) {
             return false;
         }
+        // Hash before opening the transaction so no connection is held during BCrypt
         UserModel user = new UserModel();
         user.setUsername(username);
         user.setPassword(passwordEncoder.encode(password));
-        UserModel savedUser = userRepo.save(user);
-        createInitialAiChat(savedUser.getId());
-        return true;
+        try {
+            // One transaction: the unique constraint on username replaces the separate existence check
+            transactionTemplate.executeWithoutResult(status -> {
+                UserModel savedUser = userRepo.saveAndFlush(user);
+                createInitialAiChat(savedUser.getId());
+            });
+            usernameIndex.add(username);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
     }
 
     public Optional<UserModel> getUserModelByUsername(String username) {
@@ -64,9 +92,29 @@ public class UserService implements UserDetailsService {
         return userRepo.findByUsername(username);
     }
 
+    /**
+     * Usernames starting with {@code prefix} (ignoring case) that {@code requester} could start a chat with:
+     * everyone but themselves and the AI user. Served from the in-memory index.
+     */
+    public List<String> searchUsernames(String prefix, int limit, String requester) {
+        String aiUsername = aiUsername();
+        Set<String> excluded = aiUsername != null && !aiUsername.equals(requester)
+                ? Set.of(requester, aiUsername)
+                : Set.of(requester);
+        return usernameIndex.search(prefix, limit, excluded);
+    }
+
+    private String aiUsername() {
+        String name = aiUsername;
+        if (name == null) {
+            name = aiUsername = userRepo.findById(aiUserId).map(UserModel::getUsername).orElse(null);
+        }
+        return name;
+    }
+
     private void createInitialAiChat(Long newUserId) {
         // Check if the AI user exists
-        if (userRepo.existsById(aiUserId)) {
+        if (aiUserPresent || (aiUserPresent = userRepo.existsById(aiUserId))) {
             ChatModelCreation aiChat = new ChatModelCreation();
             aiChat.setChatName("Gemini AI");
             aiChat.setOwnerId(newUserId);
@@ -0,0 +1,186 @@
+package com.chat.service;
+
+import com.chat.repo.UserRepo;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Case-insensitive username prefix search, for picking a chat partner without knowing their exact name.
+ * <p>
+ * All usernames live in one array sorted case-insensitively, so the names with a given prefix are a
+ * contiguous run found by binary search. Names registered on this node are added straight away into a
+ * small sorted overflow array that is merged into the main one once it holds
+ * {@code chat.users.index.max-pending} names. The users table is read at startup and every
+ * {@code chat.users.index.refresh-interval}, which picks up users registered on other nodes; users are never
+ * deleted, so a reload only ever adds names. Readers never lock: they see an immutable snapshot.
+ */
+@Service
+public class UsernameIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UsernameIndex.class);
+
+    // Case-insensitive first, so prefixes match contiguous runs; exact order breaks ties between case variants
+    private static final Comparator<String> ORDER =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private record Snapshot(String[] names, String[] pending) {
+    }
+
+    private final UserRepo userRepo;
+    private final int maxPending;
+    private final int maxResults;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new String[0]);
+    private volatile boolean loaded;
+
+    @Autowired
+    public UsernameIndex(UserRepo userRepo,
+                         @Value("${chat.users.index.refresh-interval:5m}") Duration refreshInterval,
+                         @Value("${chat.users.index.max-pending:256}") int maxPending,
+                         @Value("${chat.users.search.max-results:20}") int maxResults) {
+        this.userRepo = userRepo;
+        this.maxPending = Math.max(1, maxPending);
+        this.maxResults = Math.max(1, maxResults);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "username-index");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, refreshInterval.toSeconds());
+        scheduler.scheduleWithFixedDelay(this::reload, 0, period, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /** Whether the first load from the users table has completed. */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current.names.length + current.pending.length;
+    }
+
+    /** Merges in every name from the users table. */
+    public void reload() {
+        try {
+            String[] names = userRepo.findAllUsernames().toArray(new String[0]);
+            Arrays.sort(names, ORDER);
+            synchronized (this) {
+                // Keeps names added while the table was being read
+                snapshot = new Snapshot(merge(merge(names, snapshot.names), snapshot.pending), new String[0]);
+            }
+            if (!loaded) {
+                loaded = true;
+                log.info("Username index loaded with {} names", names.length);
+            }
+        } catch (Exception e) {
+            log.warn("Reloading the username index failed: {}", e.getMessage());
+        }
+    }
+
+    public synchronized void add(String username) {
+        Snapshot current = snapshot;
+        int position = Arrays.binarySearch(current.pending, username, ORDER);
+        if (position >= 0 || Arrays.binarySearch(current.names, username, ORDER) >= 0) {
+            return;
+        }
+        int insertAt = -position - 1;
+        String[] pending = new String[current.pending.length + 1];
+        System.arraycopy(current.pending, 0, pending, 0, insertAt);
+        System.arraycopy(current.pending, insertAt, pending, insertAt + 1, current.pending.length - insertAt);
+        pending[insertAt] = username;
+        snapshot = pending.length >= maxPending
+                ? new Snapshot(merge(current.names, pending), new String[0])
+                : new Snapshot(current.names, pending);
+    }
+
+    /**
+     * Up to {@code limit} usernames starting with {@code prefix}, ignoring case, in case-insensitive order,
+     * leaving out {@code excluded}. The limit is capped at {@code chat.users.search.max-results}.
+     */
+    public List<String> search(String prefix, int limit, Set<String> excluded) {
+        int max = Math.min(Math.max(1, limit), maxResults);
+        Snapshot current = snapshot;
+        String[] names = current.names;
+        String[] pending = current.pending;
+        int i = lowerBound(names, prefix);
+        int j = lowerBound(pending, prefix);
+        List<String> results = new ArrayList<>(Math.min(max, 16));
+        while (results.size() < max) {
+            boolean fromNames = i < names.length && startsWith(names[i], prefix);
+            boolean fromPending = j < pending.length && startsWith(pending[j], prefix);
+            if (!fromNames && !fromPending) {
+                break;
+            }
+            String next = fromNames && (!fromPending || ORDER.compare(names[i], pending[j]) <= 0)
+                    ? names[i++]
+                    : pending[j++];
+            if (!excluded.contains(next)) {
+                results.add(next);
+            }
+        }
+        return results;
+    }
+
+    private static boolean startsWith(String name, String prefix) {
+        return name.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    // First index whose name is not case-insensitively below the prefix
+    private static int lowerBound(String[] names, String prefix) {
+        int low = 0;
+        int high = names.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(names[mid], prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Sorted union of two sorted arrays, dropping duplicates
+    private static String[] merge(String[] a, String[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        String[] merged = new String[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            int cmp = i == a.length ? 1 : j == b.length ? -1 : ORDER.compare(a[i], b[j]);
+            if (cmp <= 0) {
+                merged[n++] = a[i++];
+                if (cmp == 0) {
+                    j++;
+                }
+            } else {
+                merged[n++] = b[j++];
+            }
+        }
+        return n == merged.length ? merged : Arrays.copyOf(merged, n);
+    }
+}
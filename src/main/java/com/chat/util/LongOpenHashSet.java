@@ -0,0 +1,184 @@
+package com.chat.util;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing hash set of primitive longs (linear probing, backward-shift deletion).
+ * About 8-16 bytes per element against ~50 for a {@code HashSet<Long>}, and no boxing on lookup.
+ * Not thread-safe; callers publish copies instead of mutating a shared instance.
+ */
+public final class LongOpenHashSet {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys; // 0 marks a free slot; the value 0 itself is tracked by containsZero
+    private boolean containsZero;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    public LongOpenHashSet() {
+        this(8);
+    }
+
+    public LongOpenHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public static LongOpenHashSet of(long... values) {
+        LongOpenHashSet set = new LongOpenHashSet(values.length);
+        for (long value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    public LongOpenHashSet copy() {
+        LongOpenHashSet copy = new LongOpenHashSet(0);
+        copy.keys = keys.clone();
+        copy.containsZero = containsZero;
+        copy.size = size;
+        copy.mask = mask;
+        copy.resizeAt = resizeAt;
+        return copy;
+    }
+
+    public boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        for (int slot = slot(value); ; slot = (slot + 1) & mask) {
+            long key = keys[slot];
+            if (key == 0) {
+                return false;
+            }
+            if (key == value) {
+                return true;
+            }
+        }
+    }
+
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = slot(value);
+        while (keys[slot] != 0) {
+            if (keys[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean remove(long value) {
+        if (value == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        for (int slot = slot(value); ; slot = (slot + 1) & mask) {
+            long key = keys[slot];
+            if (key == 0) {
+                return false;
+            }
+            if (key == value) {
+                shiftBack(slot);
+                size--;
+                return true;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        if (containsZero) {
+            action.accept(0);
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    public long[] toArray() {
+        long[] values = new long[size];
+        int[] index = {0};
+        forEach(value -> values[index[0]++] = value);
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        long[] values = toArray();
+        Arrays.sort(values);
+        return Arrays.toString(values);
+    }
+
+    // Close the gap left at 'free' by moving back later entries of the same probe run
+    private void shiftBack(int free) {
+        int slot = free;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0) {
+                keys[free] = 0;
+                return;
+            }
+            int home = slot(key);
+            // Move the entry if its home slot is not in the cyclic range (free, slot]
+            if (free <= slot ? (home <= free || home > slot) : (home <= free && home > slot)) {
+                keys[free] = key;
+                free = slot;
+            }
+        }
+    }
+
+    private int slot(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private void rehash(int capacity) {
+        long[] old = keys;
+        allocate(capacity);
+        for (long key : old) {
+            if (key != 0) {
+                int slot = slot(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+}
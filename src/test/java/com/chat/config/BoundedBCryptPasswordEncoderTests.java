@@ -0,0 +1,114 @@
+package com.chat.config;
+
+import com.chat.config.BoundedBCryptPasswordEncoder.PasswordHashingBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedBCryptPasswordEncoderTests {
+
+    private final List<BoundedBCryptPasswordEncoder> encoders = new ArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        encoders.forEach(BoundedBCryptPasswordEncoder::shutdown);
+    }
+
+    private BoundedBCryptPasswordEncoder encoder(int threads, int queueCapacity, long timeoutMs) {
+        BoundedBCryptPasswordEncoder encoder = new BoundedBCryptPasswordEncoder(threads, queueCapacity, timeoutMs);
+        encoders.add(encoder);
+        return encoder;
+    }
+
+    /** A password whose hashing holds its pool thread until the test releases it. */
+    private static CharSequence heldPassword(CountDownLatch started, CountDownLatch release) {
+        return new CharSequence() {
+            @Override
+            public String toString() {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "held";
+            }
+
+            @Override
+            public int length() {
+                return 4;
+            }
+
+            @Override
+            public char charAt(int index) {
+                return "held".charAt(index);
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return "held".subSequence(start, end);
+            }
+        };
+    }
+
+    @Test
+    void hashesAndVerifiesOnThePool() {
+        BoundedBCryptPasswordEncoder encoder = encoder(1, 1, 5000);
+
+        String hash = encoder.encode("secret");
+
+        assertThat(encoder.matches("secret", hash)).isTrue();
+        assertThat(encoder.matches("wrong", hash)).isFalse();
+    }
+
+    @Test
+    void rejectsWorkOnceTheQueueIsFull() throws Exception {
+        BoundedBCryptPasswordEncoder encoder = encoder(1, 1, 5000);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode(heldPassword(started, release)));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("queued"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (encoder.queuedTasks() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertThatThrownBy(() -> encoder.encode("rejected"))
+                .isInstanceOf(PasswordHashingBusyException.class)
+                .hasMessageContaining("queue is full");
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isNotEmpty();
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isNotEmpty();
+    }
+
+    @Test
+    void givesUpWhenHashingDoesNotStartInTime() throws Exception {
+        BoundedBCryptPasswordEncoder encoder = encoder(1, 4, 100);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture.runAsync(() -> {
+            try {
+                encoder.encode(heldPassword(started, release));
+            } catch (PasswordHashingBusyException e) {
+                // Held past the timeout itself
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> encoder.encode("waiting"))
+                .isInstanceOf(PasswordHashingBusyException.class)
+                .hasMessageContaining("did not complete");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000);
+    }
+}
@@ -0,0 +1,114 @@
+package com.chat.controller;
+
+import com.chat.config.BoundedBCryptPasswordEncoder.PasswordHashingBusyException;
+import com.chat.loadtest.InMemoryChatRepository;
+import com.chat.loadtest.InMemoryUserRepo;
+import com.chat.loadtest.LoadTestTransactionManager;
+import com.chat.service.LoginThrottle;
+import com.chat.service.UserService;
+import com.chat.service.UsernameIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserControllerTests {
+
+    private InMemoryUserRepo userRepo;
+    private UsernameIndex usernameIndex;
+
+    @BeforeEach
+    void setUp() {
+        userRepo = new InMemoryUserRepo(0L);
+        usernameIndex = new UsernameIndex(userRepo, Duration.ofDays(1), 256, 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        usernameIndex.shutdown();
+    }
+
+    private UserController controller(BCryptPasswordEncoder encoder, LoginThrottle throttle) {
+        UserService userService = new UserService(userRepo, encoder, new InMemoryChatRepository(),
+                new TransactionTemplate(new LoadTestTransactionManager()), usernameIndex);
+        ReflectionTestUtils.setField(userService, "aiUserId", 0L);
+        return new UserController(userService, authentication -> {
+            throw new BadCredentialsException("Bad credentials");
+        }, throttle);
+    }
+
+    private static RegisterRequest register(String username, String password) {
+        RegisterRequest request = new RegisterRequest();
+        request.setUsername(username);
+        request.setPassword(password);
+        return request;
+    }
+
+    private static LoginRequest login(String username, String password) {
+        LoginRequest request = new LoginRequest();
+        request.setUsername(username);
+        request.setPassword(password);
+        return request;
+    }
+
+    @Test
+    void registrationAnswers503WhileHashingIsSaturated() {
+        // What BoundedBCryptPasswordEncoder throws when its queue is full or the work doesn't start in time
+        BCryptPasswordEncoder busyEncoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                throw new PasswordHashingBusyException("Password hashing queue is full");
+            }
+        };
+        UserController controller = controller(busyEncoder, new LoginThrottle(Duration.ofMinutes(1), 10, 50));
+
+        ResponseEntity<?> response = controller.register(register("carol", "secret"));
+
+        assertThat(response.getStatusCode().value()).isEqualTo(503);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(userRepo.findByUsername("carol")).isEmpty();
+    }
+
+    @Test
+    void aTakenUsernameIsRefusedWithoutHashing() {
+        AtomicInteger hashes = new AtomicInteger();
+        BCryptPasswordEncoder countingEncoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                hashes.incrementAndGet();
+                return super.encode(rawPassword);
+            }
+        };
+        UserController controller = controller(countingEncoder, new LoginThrottle(Duration.ofMinutes(1), 10, 50));
+
+        assertThat(controller.register(register("dave", "secret")).getStatusCode().value()).isEqualTo(200);
+        assertThat(controller.register(register("dave", "other")).getStatusCode().value()).isEqualTo(409);
+
+        assertThat(hashes.get()).isEqualTo(1);
+    }
+
+    @Test
+    void loginAnswers429OnceThrottled() {
+        UserController controller = controller(new BCryptPasswordEncoder(4), new LoginThrottle(Duration.ofMinutes(1), 2, 50));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("203.0.113.9");
+
+        assertThat(controller.login(login("erin", "wrong"), request).getStatusCode().value()).isEqualTo(401);
+        assertThat(controller.login(login("erin", "wrong"), request).getStatusCode().value()).isEqualTo(401);
+        ResponseEntity<?> throttled = controller.login(login("erin", "wrong"), request);
+
+        assertThat(throttled.getStatusCode().value()).isEqualTo(429);
+        assertThat(throttled.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("60");
+    }
+}
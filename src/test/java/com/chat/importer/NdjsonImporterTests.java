@@ -0,0 +1,290 @@
+package com.chat.importer;
+
+import com.chat.model.ChatMessage;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NdjsonImporterTests {
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 5, 1, 10, 0);
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private FakeMongo mongo;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "username VARCHAR(255) NOT NULL UNIQUE, password VARCHAR(255) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE chats (chat_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "chat_name VARCHAR(255) NOT NULL, owner_id BIGINT NOT NULL, receiver_id BIGINT NOT NULL, "
+                + "receiver_name VARCHAR(255))");
+        mongo = new FakeMongo();
+    }
+
+    // Batches of two on one writer, so the order of bulk inserts is the order of the file
+    private NdjsonImporter importer(long checkpointEvery) {
+        return new NdjsonImporter(jdbcTemplate, transactionTemplate, mongo.operations(),
+                Jackson2ObjectMapperBuilder.json().build(), 2, 1, checkpointEvery);
+    }
+
+    // Lines 1-3 are two users and their chat, lines 4-9 six messages between them
+    private Path dump(String name, String owner, String receiver) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("{\"kind\":\"user\",\"ref\":\"u1\",\"username\":\"" + owner + "\",\"passwordHash\":\"hash\"}");
+        lines.add("{\"kind\":\"user\",\"ref\":\"u2\",\"username\":\"" + receiver + "\",\"passwordHash\":\"hash\"}");
+        lines.add("{\"kind\":\"chat\",\"ref\":\"c1\",\"owner\":\"u1\",\"receiver\":\"u2\"}");
+        for (int i = 0; i < 6; i++) {
+            lines.add("{\"kind\":\"message\",\"chat\":\"c1\",\"sender\":\"" + (i % 2 == 0 ? "u1" : "u2")
+                    + "\",\"content\":\"" + name + " " + i + "\",\"timestamp\":\"" + START.plusMinutes(i) + "\"}");
+        }
+        Path file = dir.resolve(name);
+        Files.write(file, lines);
+        return file;
+    }
+
+    private Path checkpointOf(Path file) {
+        return dir.resolve(file.getFileName() + ".checkpoint");
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private List<Long> storedSeqs() {
+        return mongo.messages.values().stream().map(ChatMessage::getSeq).sorted().toList();
+    }
+
+    @Test
+    void messageIdsAreStableAndSortByTimeThenLine() {
+        int source = "dump.ndjson".hashCode() & 0xFFFFFF;
+        ObjectId id = NdjsonImporter.messageId(START, source, 5);
+
+        assertThat(NdjsonImporter.messageId(START, source, 5)).isEqualTo(id);
+        assertThat(id.getTimestamp()).isEqualTo(START.atZone(ZoneId.systemDefault()).toEpochSecond());
+        assertThat(NdjsonImporter.messageId(START, source + 1, 5)).isNotEqualTo(id);
+        // All five line bytes count, so lines 2^32 apart don't collide
+        assertThat(NdjsonImporter.messageId(START, source, 5 + (1L << 32))).isNotEqualTo(id);
+
+        assertThat(id).isLessThan(NdjsonImporter.messageId(START, source, 6));
+        assertThat(NdjsonImporter.messageId(START, source, (1L << 40) - 1))
+                .isLessThan(NdjsonImporter.messageId(START.plusSeconds(1), source, 0));
+    }
+
+    @Test
+    void importsUsersChatsAndMessagesWithLineNumbersAsSeqs() throws IOException {
+        Path file = dump("a.ndjson", "alice", "bob");
+
+        NdjsonImporter.ImportSummary summary = importer(1000).importFile(file, checkpointOf(file), "a");
+
+        assertThat(summary.users()).isEqualTo(2);
+        assertThat(summary.chats()).isEqualTo(1);
+        assertThat(summary.messages()).isEqualTo(6);
+        assertThat(summary.skipped()).isZero();
+        assertThat(storedSeqs()).containsExactly(4L, 5L, 6L, 7L, 8L, 9L);
+        assertThat(mongo.messages.values()).extracting(ChatMessage::getSender).containsOnly("alice", "bob");
+        long chatId = jdbcTemplate.queryForObject("SELECT chat_id FROM chats", Long.class);
+        assertThat(mongo.sequences).containsEntry(chatId, 9L);
+        assertThat(Files.readString(checkpointOf(file))).isEqualTo("9");
+    }
+
+    @Test
+    void replaysWhatAFailedRunWroteBeforeItsFirstCheckpoint() throws IOException {
+        Path file = dump("a.ndjson", "alice", "bob");
+        mongo.failAfter(1); // Lines 4-5 are stored, then Mongo goes away
+
+        assertThatThrownBy(() -> importer(1000).importFile(file, checkpointOf(file), "a"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(checkpointOf(file)).doesNotExist();
+        assertThat(count("users")).isEqualTo(2);
+        assertThat(storedSeqs()).containsExactly(4L, 5L);
+
+        mongo.recover();
+        NdjsonImporter.ImportSummary summary = importer(1000).importFile(file, checkpointOf(file), "a");
+
+        // The users and chat committed by the failed run are reused rather than skipped as taken
+        assertThat(summary.users()).isZero();
+        assertThat(summary.chats()).isZero();
+        assertThat(summary.skipped()).isZero();
+        assertThat(summary.messages()).isEqualTo(4);
+        assertThat(summary.duplicates()).isEqualTo(2);
+        assertThat(count("users")).isEqualTo(2);
+        assertThat(count("chats")).isEqualTo(1);
+        assertThat(storedSeqs()).containsExactly(4L, 5L, 6L, 7L, 8L, 9L);
+    }
+
+    @Test
+    void resumesAfterTheLastCheckpointAndReplaysTheRest() throws IOException {
+        Path file = dump("a.ndjson", "alice", "bob");
+        // Checkpoints after lines 4 and 8; inserts are [4], [5, 6], [7, 8], so the third fails before line 8's
+        mongo.failAfter(2);
+
+        assertThatThrownBy(() -> importer(4).importFile(file, checkpointOf(file), "a"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("resume from line 4");
+        assertThat(storedSeqs()).containsExactly(4L, 5L, 6L);
+
+        mongo.recover();
+        NdjsonImporter.ImportSummary summary = importer(4).importFile(file, checkpointOf(file), "a");
+
+        assertThat(summary.lines()).isEqualTo(5);
+        assertThat(summary.skipped()).isZero();
+        assertThat(summary.messages()).isEqualTo(3);
+        assertThat(summary.duplicates()).isEqualTo(2);
+        assertThat(storedSeqs()).containsExactly(4L, 5L, 6L, 7L, 8L, 9L);
+        assertThat(Files.readString(checkpointOf(file))).isEqualTo("9");
+    }
+
+    @Test
+    void keepsTheRefsOfTwoSourcesApart() throws IOException {
+        // Both dumps number their users u1, u2 and their chat c1
+        Path first = dump("a.ndjson", "alice", "bob");
+        Path second = dump("b.ndjson", "carol", "dave");
+
+        importer(1000).importFile(first, checkpointOf(first), "a");
+        NdjsonImporter.ImportSummary summary = importer(1000).importFile(second, checkpointOf(second), "b");
+
+        assertThat(summary.users()).isEqualTo(2);
+        assertThat(summary.chats()).isEqualTo(1);
+        assertThat(summary.messages()).isEqualTo(6);
+        assertThat(count("users")).isEqualTo(4);
+        assertThat(count("import_refs")).isEqualTo(6);
+
+        long secondChat = jdbcTemplate.queryForObject("SELECT chat_id FROM chats WHERE receiver_name = 'dave'",
+                Long.class);
+        List<ChatMessage> secondMessages = mongo.messages.values().stream()
+                .filter(message -> message.getChatId() == secondChat)
+                .sorted(Comparator.comparing(ChatMessage::getSeq))
+                .toList();
+        assertThat(secondMessages).extracting(ChatMessage::getContent)
+                .containsExactly("b.ndjson 0", "b.ndjson 1", "b.ndjson 2", "b.ndjson 3", "b.ndjson 4", "b.ndjson 5");
+        assertThat(secondMessages).extracting(ChatMessage::getSender).containsOnly("carol", "dave");
+        assertThat(mongo.messages).hasSize(12);
+    }
+
+    /**
+     * Just enough of {@link MongoOperations} for the importer: unordered bulk inserts that reject duplicate
+     * ids the way the server reports them, and {@code $max} upserts of the sequence counters.
+     */
+    private static final class FakeMongo {
+
+        private final Map<String, ChatMessage> messages = new ConcurrentHashMap<>();
+        private final Map<Object, Long> sequences = new ConcurrentHashMap<>();
+        private final AtomicInteger insertsLeft = new AtomicInteger(Integer.MAX_VALUE);
+
+        /** Accepts this many more bulk inserts, then fails every later one as if the server had gone away. */
+        void failAfter(int bulkInserts) {
+            insertsLeft.set(bulkInserts);
+        }
+
+        void recover() {
+            insertsLeft.set(Integer.MAX_VALUE);
+        }
+
+        MongoOperations operations() {
+            return proxy(MongoOperations.class, (proxy, method, args) -> {
+                if (!method.getName().equals("bulkOps")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                return bulkOps();
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private BulkOperations bulkOps() {
+            List<ChatMessage> inserts = new ArrayList<>();
+            Map<Object, Long> maxima = new HashMap<>();
+            return proxy(BulkOperations.class, (proxy, method, args) -> switch (method.getName()) {
+                case "insert" -> {
+                    inserts.addAll((List<ChatMessage>) args[0]);
+                    yield proxy;
+                }
+                case "upsert" -> {
+                    Object id = ((Query) args[0]).getQueryObject().get("_id");
+                    Document max = (Document) ((Update) args[1]).getUpdateObject().get("$max");
+                    maxima.merge(id, (Long) max.get("next"), Math::max);
+                    yield proxy;
+                }
+                case "execute" -> inserts.isEmpty() ? upsert(maxima) : insert(inserts);
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private BulkWriteResult insert(List<ChatMessage> batch) {
+            if (insertsLeft.getAndDecrement() <= 0) {
+                throw new DataAccessResourceFailureException("Mongo went away");
+            }
+            List<BulkWriteError> errors = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                ChatMessage message = batch.get(i);
+                if (messages.putIfAbsent(message.getId(), message) != null) {
+                    errors.add(new BulkWriteError(11000, "E11000 duplicate key error collection: chat.messages "
+                            + "index: _id_ dup key: { _id: \"" + message.getId() + "\" }", new BsonDocument(), i));
+                }
+            }
+            BulkWriteResult result = BulkWriteResult.acknowledged(batch.size() - errors.size(), 0, 0, 0,
+                    List.of(), List.of());
+            if (!errors.isEmpty()) {
+                throw new BulkOperationException("Bulk write failed",
+                        new MongoBulkWriteException(result, errors, null, new ServerAddress(), Set.of()));
+            }
+            return result;
+        }
+
+        private BulkWriteResult upsert(Map<Object, Long> maxima) {
+            maxima.forEach((id, next) -> sequences.merge(id, next, Math::max));
+            return BulkWriteResult.acknowledged(0, maxima.size(), 0, 0, List.of(), List.of());
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.chat.loadtest;
+
+import com.chat.model.ChatModelCreation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.query.FluentQuery;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryRepositoryTests {
+
+    private InMemoryChatRepository chatRepository;
+
+    @BeforeEach
+    void setUp() {
+        chatRepository = new InMemoryChatRepository();
+        chat("Standup", 1L, true);
+        chat("standup notes", 1L, false);
+        chat("Lunch", 1L, false);
+        chat("Release", 2L, true);
+    }
+
+    private void chat(String name, long ownerId, boolean group) {
+        ChatModelCreation chat = new ChatModelCreation();
+        chat.setChatName(name);
+        chat.setOwnerId(ownerId);
+        chat.setGroupChat(group);
+        chatRepository.save(chat);
+    }
+
+    private static ChatModelCreation probe(String name, Long ownerId, Boolean group) {
+        ChatModelCreation probe = new ChatModelCreation();
+        probe.setChatName(name);
+        probe.setOwnerId(ownerId);
+        probe.setGroupChat(group);
+        return probe;
+    }
+
+    private static Sort byName() {
+        return Sort.by("chatName");
+    }
+
+    @Test
+    void matchesEveryNonNullProbeValue() {
+        assertThat(chatRepository.findAll(Example.of(probe(null, 1L, null)), byName()))
+                .extracting(ChatModelCreation::getChatName)
+                .containsExactly("Lunch", "Standup", "standup notes");
+        assertThat(chatRepository.findAll(Example.of(probe(null, 1L, true))))
+                .extracting(ChatModelCreation::getChatName)
+                .containsExactly("Standup");
+        assertThat(chatRepository.count(Example.of(probe(null, 3L, null)))).isZero();
+        assertThat(chatRepository.exists(Example.of(probe("Release", null, null)))).isTrue();
+        // An empty probe matches everything
+        assertThat(chatRepository.count(Example.of(new ChatModelCreation()))).isEqualTo(4);
+    }
+
+    @Test
+    void followsTheMatchersStringAndCaseRules() {
+        ExampleMatcher startingIgnoringCase = ExampleMatcher.matching()
+                .withStringMatcher(ExampleMatcher.StringMatcher.STARTING)
+                .withIgnoreCase();
+        assertThat(chatRepository.findAll(Example.of(probe("STAND", null, null), startingIgnoringCase), byName()))
+                .extracting(ChatModelCreation::getChatName)
+                .containsExactly("Standup", "standup notes");
+
+        ExampleMatcher containing = ExampleMatcher.matching()
+                .withMatcher("chatName", ExampleMatcher.GenericPropertyMatcher::contains);
+        assertThat(chatRepository.findAll(Example.of(probe("up", null, null), containing)))
+                .extracting(ChatModelCreation::getChatName)
+                .containsExactlyInAnyOrder("Standup", "standup notes");
+    }
+
+    @Test
+    void supportsAnyMatchingIgnoredPathsAndNullValues() {
+        ExampleMatcher any = ExampleMatcher.matchingAny();
+        assertThat(chatRepository.count(Example.of(probe("Lunch", 2L, null), any))).isEqualTo(2);
+
+        ExampleMatcher ignoringOwner = ExampleMatcher.matching().withIgnorePaths("ownerId");
+        assertThat(chatRepository.count(Example.of(probe(null, 2L, true), ignoringOwner))).isEqualTo(2);
+
+        // Including nulls means the unset receiver and retention have to be null too
+        ExampleMatcher includingNulls = ExampleMatcher.matching().withIncludeNullValues()
+                .withIgnorePaths("chatId", "chatName");
+        assertThat(chatRepository.count(Example.of(probe(null, 1L, false), includingNulls))).isEqualTo(2);
+    }
+
+    @Test
+    void findOneRejectsSeveralMatches() {
+        assertThat(chatRepository.findOne(Example.of(probe("Lunch", null, null))))
+                .get().extracting(ChatModelCreation::getOwnerId).isEqualTo(1L);
+        assertThat(chatRepository.findOne(Example.of(probe("Nothing", null, null)))).isEmpty();
+        assertThatThrownBy(() -> chatRepository.findOne(Example.of(probe(null, 1L, null))))
+                .isInstanceOf(IncorrectResultSizeDataAccessException.class);
+    }
+
+    @Test
+    void pagesAndRunsFluentQueries() {
+        Example<ChatModelCreation> ownedByOne = Example.of(probe(null, 1L, null));
+
+        assertThat(chatRepository.findAll(ownedByOne, PageRequest.of(1, 2, byName())))
+                .extracting(ChatModelCreation::getChatName)
+                .containsExactly("standup notes");
+        assertThat(chatRepository.findAll(ownedByOne, PageRequest.of(0, 2)).getTotalElements()).isEqualTo(3);
+
+        List<ChatModelCreation> lastTwo = chatRepository.findBy(ownedByOne,
+                query -> query.sortBy(byName().descending()).limit(2).all());
+        assertThat(lastTwo).extracting(ChatModelCreation::getChatName).containsExactly("standup notes", "Standup");
+        ChatModelCreation first = chatRepository.findBy(ownedByOne, query -> query.sortBy(byName()).firstValue());
+        assertThat(first.getChatName()).isEqualTo("Lunch");
+        long owned = chatRepository.findBy(ownedByOne, FluentQuery.FetchableFluentQuery::count);
+        assertThat(owned).isEqualTo(3);
+        Object release = chatRepository.findBy(Example.of(probe("Release", null, null)),
+                query -> query.as(Object.class).oneValue());
+        assertThat(release).isInstanceOf(ChatModelCreation.class);
+    }
+}
@@ -0,0 +1,107 @@
+package com.chat.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeavyHitterSketchTests {
+
+    // A window of four 250ns slices; the tests pass the clock themselves
+    private static final long WINDOW = 1000;
+    private static final int BUCKETS = 4;
+
+    private static HeavyHitterSketch<String> sketch(int k) {
+        return new HeavyHitterSketch<>(4, 1024, k, WINDOW, BUCKETS);
+    }
+
+    private static List<String> keys(List<HeavyHitterSketch.Entry<String>> entries) {
+        return entries.stream().map(HeavyHitterSketch.Entry::key).toList();
+    }
+
+    @Test
+    void findsTheHeavyKeysOfASkewedStream() {
+        HeavyHitterSketch<String> sketch = sketch(5);
+        long total = 0;
+        // Interleaved so the heavy keys have to win their place against a long tail, not just arrive first
+        for (int i = 0; i < 2000; i++) {
+            sketch.add("tail-" + i, 1, 0);
+            total++;
+            if (i % 2 == 0) {
+                sketch.add("hot-1", 5, 0);
+                sketch.add("hot-2", 3, 0);
+                total += 8;
+            }
+            if (i % 4 == 0) {
+                sketch.add("hot-3", 4, 0);
+                total += 4;
+            }
+        }
+
+        List<HeavyHitterSketch.Entry<String>> top = sketch.top(3, 0);
+
+        assertThat(keys(top)).containsExactly("hot-1", "hot-2", "hot-3");
+        assertThat(sketch.total(0)).isEqualTo(total);
+        // Never under, and over by at most e / width of the total
+        long slack = (long) Math.ceil(Math.E / 1024 * total);
+        assertThat(top.get(0).count()).isBetween(5000L, 5000L + slack);
+        assertThat(top.get(1).count()).isBetween(3000L, 3000L + slack);
+        assertThat(top.get(2).count()).isBetween(2000L, 2000L + slack);
+    }
+
+    @Test
+    void slicesLeaveTheWindowAsItSlides() {
+        HeavyHitterSketch<String> sketch = sketch(5);
+        sketch.add("early", 5, 0);   // Slice 0
+        sketch.add("middle", 3, 500); // Slice 2
+
+        assertThat(sketch.estimate("early", WINDOW - 1)).isEqualTo(5);
+        assertThat(sketch.total(WINDOW - 1)).isEqualTo(8);
+
+        // The ring is back at slice 0: its first slice has left the window, without anything new written yet
+        assertThat(sketch.estimate("early", WINDOW)).isZero();
+        assertThat(sketch.estimate("middle", WINDOW)).isEqualTo(3);
+        assertThat(keys(sketch.top(5, WINDOW))).containsExactly("middle");
+
+        // Reusing slice 0 starts it from empty rather than adding to the old counts
+        sketch.add("late", 2, WINDOW);
+        assertThat(sketch.estimate("early", WINDOW)).isZero();
+        assertThat(sketch.total(WINDOW)).isEqualTo(5);
+
+        assertThat(sketch.total(WINDOW + 750)).isEqualTo(2);
+        assertThat(keys(sketch.top(5, WINDOW + 750))).containsExactly("late");
+        assertThat(sketch.total(2 * WINDOW)).isZero();
+    }
+
+    @Test
+    void refreshesStaleHeapEntriesBeforeEvictingACandidate() {
+        HeavyHitterSketch<String> sketch = sketch(2);
+        sketch.add("a", 1, 0);
+        sketch.add("b", 1, 0);
+        // The heap still holds a at 1, below b
+        sketch.add("a", 10, 0);
+
+        // Beats b, but not a's current count: b must be the one to go
+        sketch.add("c", 5, 0);
+
+        List<HeavyHitterSketch.Entry<String>> top = sketch.top(5, 0);
+        assertThat(keys(top)).containsExactly("a", "c");
+        assertThat(top.get(0).count()).isEqualTo(11);
+        assertThat(top.get(1).count()).isEqualTo(5);
+    }
+
+    @Test
+    void aKeyLighterThanEveryCandidateDoesNotJoin() {
+        HeavyHitterSketch<String> sketch = sketch(2);
+        sketch.add("a", 4, 0);
+        sketch.add("b", 3, 0);
+
+        sketch.add("c", 3, 0);
+
+        assertThat(keys(sketch.top(5, 0))).containsExactly("a", "b");
+        // Its count is still kept, so it can get in once it overtakes
+        sketch.add("c", 2, 0);
+        assertThat(keys(sketch.top(5, 0))).containsExactly("c", "a");
+    }
+}
@@ -0,0 +1,130 @@
+package com.chat.repo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JdbcSessionRepositoryTests {
+
+    private JdbcTemplate jdbcTemplate;
+    private JdbcSessionRepository nodeA;
+    private JdbcSessionRepository nodeB;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        nodeA = repository();
+        nodeB = repository();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+    }
+
+    private JdbcSessionRepository repository() {
+        return new JdbcSessionRepository(jdbcTemplate, Duration.ofMinutes(30), Duration.ofSeconds(60),
+                Duration.ofMinutes(5));
+    }
+
+
+    @Test
+    void sessionSavedOnOneNodeIsVisibleOnAnother() {
+        JdbcSessionRepository.StoredSession session = nodeA.createSession();
+        session.setAttribute("user", "alice");
+        nodeA.save(session);
+
+        JdbcSessionRepository.StoredSession found = nodeB.findById(session.getId());
+
+        assertThat(found).isNotNull();
+        assertThat((String) found.getAttribute("user")).isEqualTo("alice");
+        assertThat(found.getMaxInactiveInterval()).isEqualTo(Duration.ofMinutes(30));
+    }
+
+    @Test
+    void changedSessionIdReplacesTheStoredRow() {
+        JdbcSessionRepository.StoredSession session = nodeA.createSession();
+        nodeA.save(session);
+        String oldId = session.getId();
+
+        JdbcSessionRepository.StoredSession loaded = nodeA.findById(oldId);
+        String newId = loaded.changeSessionId();
+        nodeA.save(loaded);
+
+        assertThat(nodeB.findById(oldId)).isNull();
+        assertThat(nodeB.findById(newId)).isNotNull();
+    }
+
+    @Test
+    void unchangedSessionIsNotRewrittenWithinTheAccessInterval() {
+        JdbcSessionRepository.StoredSession session = nodeA.createSession();
+        nodeA.save(session);
+        Instant persisted = session.getLastAccessedTime();
+
+        JdbcSessionRepository.StoredSession loaded = nodeA.findById(session.getId());
+        loaded.setLastAccessedTime(persisted.plusSeconds(10));
+        nodeA.save(loaded);
+        assertThat(jdbcTemplate.queryForObject("SELECT last_access_time FROM chat_sessions WHERE session_id = ?",
+                Long.class, session.getId())).isEqualTo(persisted.toEpochMilli());
+
+        loaded = nodeA.findById(session.getId());
+        loaded.setLastAccessedTime(persisted.plusSeconds(90));
+        nodeA.save(loaded);
+        assertThat(jdbcTemplate.queryForObject("SELECT last_access_time FROM chat_sessions WHERE session_id = ?",
+                Long.class, session.getId())).isEqualTo(persisted.plusSeconds(90).toEpochMilli());
+    }
+
+    @Test
+    void logoutOnAnotherNodeAppliesOnTheNextRequest() {
+        JdbcSessionRepository.StoredSession session = nodeA.createSession();
+        session.setAttribute("user", "alice");
+        nodeA.save(session);
+        assertThat(nodeA.findById(session.getId())).isNotNull();
+
+        nodeB.deleteById(session.getId());
+
+        assertThat(nodeA.findById(session.getId())).isNull();
+    }
+
+    @Test
+    void attributeChangesOnAnotherNodeAreSeenOnTheNextRequest() {
+        JdbcSessionRepository.StoredSession session = nodeA.createSession();
+        session.setAttribute("user", "alice");
+        nodeA.save(session);
+        assertThat((String) nodeA.findById(session.getId()).getAttribute("user")).isEqualTo("alice");
+
+        JdbcSessionRepository.StoredSession onB = nodeB.findById(session.getId());
+        onB.removeAttribute("user");
+        nodeB.save(onB);
+
+        assertThat((String) nodeA.findById(session.getId()).getAttribute("user")).isNull();
+    }
+
+    @Test
+    void expiredSessionsAreNotReturnedAndAreSwept() {
+        JdbcSessionRepository.StoredSession session = nodeA.createSession();
+        session.setMaxInactiveInterval(Duration.ofSeconds(1));
+        session.setLastAccessedTime(Instant.now().minusSeconds(5));
+        nodeA.save(session);
+
+        JdbcSessionRepository.StoredSession other = nodeA.createSession();
+        other.setMaxInactiveInterval(Duration.ofSeconds(1));
+        other.setLastAccessedTime(Instant.now().minusSeconds(5));
+        nodeA.save(other);
+
+        assertThat(nodeB.findById(session.getId())).isNull();
+        nodeA.deleteExpired();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_sessions", Integer.class)).isZero();
+    }
+}
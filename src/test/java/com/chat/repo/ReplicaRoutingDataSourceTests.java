@@ -0,0 +1,106 @@
+package com.chat.repo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRoutingDataSourceTests {
+
+    private ReplicaRouting routing;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        // Two separate databases, each knowing which one it is
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+        routing = new ReplicaRouting(Duration.ofMillis(200));
+        DataSource routed = ReplicaRoutingDataSource.lazy(primary, replica, routing);
+        jdbcTemplate = new JdbcTemplate(routed);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routed);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table node (name varchar(16))");
+        jdbc.update("insert into node (name) values (?)", name);
+        return dataSource;
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("select name from node", String.class);
+    }
+
+    private String nodeIn(TransactionTemplate transaction) {
+        return transaction.execute(status -> node());
+    }
+
+    private static void signIn(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(username, null, List.of()));
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplica() {
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+    }
+
+    @Test
+    void readWriteTransactionsAndPlainStatementsGoToThePrimary() {
+        assertThat(nodeIn(readWrite)).isEqualTo("primary");
+        assertThat(node()).isEqualTo("primary");
+    }
+
+    @Test
+    void writesInReadWriteTransactionsLandOnThePrimary() {
+        readWrite.executeWithoutResult(status -> jdbcTemplate.update("update node set name = 'written'"));
+
+        assertThat(node()).isEqualTo("written");
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+    }
+
+    @Test
+    void recentWriterReadsThePrimaryUntilTheWindowPasses() throws InterruptedException {
+        routing.wrote("alice");
+
+        signIn("alice");
+        assertThat(nodeIn(readOnly)).isEqualTo("primary");
+        signIn("bob");
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+
+        Thread.sleep(300);
+        signIn("alice");
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+    }
+
+    @Test
+    void pinnedReadsGoToThePrimary() {
+        assertThat(ReplicaRouting.onPrimary(() -> nodeIn(readOnly))).isEqualTo("primary");
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+    }
+}
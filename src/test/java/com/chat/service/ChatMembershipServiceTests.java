@@ -0,0 +1,153 @@
+package com.chat.service;
+
+import com.chat.loadtest.InMemoryChatMemberRepo;
+import com.chat.loadtest.InMemoryChatRepository;
+import com.chat.loadtest.InMemoryUserRepo;
+import com.chat.model.ChatMember;
+import com.chat.model.ChatModelCreation;
+import com.chat.util.LongOpenHashSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatMembershipServiceTests {
+
+    // Group member loads for the slow chat wait until the test lets them through
+    private static final class SlowMemberRepo extends InMemoryChatMemberRepo {
+        private final AtomicInteger loads = new AtomicInteger();
+        private final CountDownLatch loading = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile Long slowChatId;
+        private volatile RuntimeException failure;
+
+        @Override
+        public List<Long> findUserIdsByChatId(Long chatId) {
+            loads.incrementAndGet();
+            if (chatId.equals(slowChatId)) {
+                loading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+            return super.findUserIdsByChatId(chatId);
+        }
+    }
+
+    private InMemoryChatRepository chatRepository;
+    private SlowMemberRepo chatMemberRepo;
+    private ChatMembershipService membership;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        chatRepository = new InMemoryChatRepository();
+        chatMemberRepo = new SlowMemberRepo();
+        membership = new ChatMembershipService(chatRepository, chatMemberRepo, new InMemoryUserRepo(0L),
+                Duration.ofMinutes(1), 100);
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatMemberRepo.release.countDown();
+        callers.shutdownNow();
+    }
+
+    private Long group(long... userIds) {
+        ChatModelCreation chat = new ChatModelCreation();
+        chat.setChatName("group");
+        chat.setOwnerId(userIds[0]);
+        chat.setReceiverId(userIds[0]);
+        chat.setReceiverName("group");
+        chat.setGroupChat(true);
+        Long chatId = chatRepository.save(chat).getChatId();
+        for (long userId : userIds) {
+            chatMemberRepo.save(new ChatMember(chatId, userId));
+        }
+        return chatId;
+    }
+
+    private Future<LongOpenHashSet> membersLater(Long chatId) throws InterruptedException {
+        Future<LongOpenHashSet> members = callers.submit(() -> membership.members(chatId));
+        assertThat(chatMemberRepo.loading.await(5, TimeUnit.SECONDS)).isTrue();
+        return members;
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        Long chatId = group(1, 2);
+        chatMemberRepo.slowChatId = chatId;
+
+        Future<LongOpenHashSet> first = membersLater(chatId);
+        Future<LongOpenHashSet> second = callers.submit(() -> membership.members(chatId));
+        chatMemberRepo.release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).contains(2)).isTrue();
+        assertThat(second.get(5, TimeUnit.SECONDS).contains(2)).isTrue();
+        assertThat(chatMemberRepo.loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void aSlowLoadDoesNotHoldUpOtherChats() throws Exception {
+        Long slow = group(1, 2);
+        Long other = group(3, 4);
+        chatMemberRepo.slowChatId = slow;
+
+        Future<LongOpenHashSet> pending = membersLater(slow);
+
+        assertThat(membership.isMember(other, 3)).isTrue();
+        assertThat(pending.isDone()).isFalse();
+        chatMemberRepo.release.countDown();
+        assertThat(pending.get(5, TimeUnit.SECONDS).contains(1)).isTrue();
+    }
+
+    @Test
+    void changesMadeDuringALoadLandOnTheLoadedSet() throws Exception {
+        Long chatId = group(1, 2);
+        chatMemberRepo.slowChatId = chatId;
+
+        Future<LongOpenHashSet> pending = membersLater(chatId);
+        membership.added(chatId, 5);
+        membership.removed(chatId, 1);
+        chatMemberRepo.release.countDown();
+        pending.get(5, TimeUnit.SECONDS);
+
+        assertThat(membership.isMember(chatId, 5)).isTrue();
+        assertThat(membership.isMember(chatId, 1)).isFalse();
+        assertThat(membership.isMember(chatId, 2)).isTrue();
+        assertThat(chatMemberRepo.loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void aFailedLoadIsRetriedByTheNextCaller() throws Exception {
+        Long chatId = group(1, 2);
+        chatMemberRepo.slowChatId = chatId;
+        chatMemberRepo.failure = new IllegalStateException("database down");
+
+        Future<LongOpenHashSet> pending = membersLater(chatId);
+        membership.added(chatId, 5);
+        chatMemberRepo.release.countDown();
+        assertThatThrownBy(() -> pending.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+
+        chatMemberRepo.failure = null;
+        assertThat(membership.isMember(chatId, 2)).isTrue();
+        assertThat(chatMemberRepo.loads.get()).isEqualTo(2);
+    }
+}
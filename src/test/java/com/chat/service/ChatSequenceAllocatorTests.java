@@ -0,0 +1,111 @@
+package com.chat.service;
+
+import com.chat.loadtest.InMemorySequenceBlockSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatSequenceAllocatorTests {
+
+    private static final long CHAT = 1L;
+
+    private InMemorySequenceBlockSource blockSource;
+    private final List<ChatSequenceAllocator> allocators = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        blockSource = new InMemorySequenceBlockSource();
+    }
+
+    @AfterEach
+    void tearDown() {
+        allocators.forEach(ChatSequenceAllocator::shutdown);
+    }
+
+    // One per node; floors are only published when a test asks
+    private ChatSequenceAllocator node(int blockSize, Duration blockLifetime) {
+        ChatSequenceAllocator allocator = new ChatSequenceAllocator(blockSource, blockSize, blockLifetime,
+                Duration.ofDays(1));
+        allocators.add(allocator);
+        return allocator;
+    }
+
+    private long watermark() {
+        return blockSource.watermarks(List.of(CHAT)).get(CHAT);
+    }
+
+    @Test
+    void watermarkStaysBelowNumbersAnyNodeHasNotFinished() {
+        ChatSequenceAllocator a = node(100, Duration.ofDays(1));
+        ChatSequenceAllocator b = node(100, Duration.ofDays(1));
+
+        assertThat(a.next(CHAT)).isEqualTo(1);
+        assertThat(b.next(CHAT)).isEqualTo(101);
+        b.finished(CHAT, 101);
+        b.publishFloors();
+        // 101 is readable, but 1 is not yet
+        assertThat(watermark()).isZero();
+
+        a.finished(CHAT, 1);
+        a.publishFloors();
+        // a may still hand out 2..100 from its block
+        assertThat(watermark()).isEqualTo(1);
+        assertThat(a.next(CHAT)).isEqualTo(2);
+    }
+
+    @Test
+    void givesUpOldBlocksSoAnIdleNodeStopsHoldingTheWatermark() {
+        ChatSequenceAllocator a = node(100, Duration.ZERO);
+
+        long first = a.next(CHAT);
+        long second = a.next(CHAT);
+        a.finished(CHAT, second);
+        a.publishFloors(); // The block is given up, but the first write is still outstanding
+        assertThat(watermark()).isEqualTo(first - 1);
+
+        a.finished(CHAT, first);
+        a.publishFloors();
+        assertThat(watermark()).isEqualTo(100);
+        // The rest of the block is skipped
+        assertThat(a.next(CHAT)).isEqualTo(101);
+    }
+
+    @Test
+    void concurrentWritersGetDistinctNumbersAndTheWatermarkCatchesUp() throws Exception {
+        ChatSequenceAllocator a = node(10, Duration.ofDays(1));
+        Set<Long> seqs = ConcurrentHashMap.newKeySet();
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                done.add(writers.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        long seq = a.next(CHAT);
+                        seqs.add(seq);
+                        a.finished(CHAT, seq);
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+
+        assertThat(seqs).hasSize(4000);
+        a.publishFloors();
+        assertThat(watermark()).isEqualTo(4000);
+    }
+}
@@ -0,0 +1,215 @@
+package com.chat.service;
+
+import com.chat.loadtest.InMemoryChatMemberRepo;
+import com.chat.loadtest.InMemoryChatRepository;
+import com.chat.loadtest.InMemoryUserRepo;
+import com.chat.model.ChatMember;
+import com.chat.model.ChatModelCreation;
+import com.chat.model.UserModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatSubscriptionRegistryTests {
+
+    private static final long PAIR = 1L;
+    private static final long GROUP = 2L;
+
+    private InMemoryChatRepository chatRepository;
+    private InMemoryChatMemberRepo chatMemberRepo;
+    private InMemoryUserRepo userRepo;
+
+    @BeforeEach
+    void setUp() {
+        chatRepository = new InMemoryChatRepository();
+        chatMemberRepo = new InMemoryChatMemberRepo();
+        userRepo = new InMemoryUserRepo(100L);
+        user(1L, "alice");
+        user(2L, "bob");
+        user(3L, "carol");
+        chatRepository.save(chat(PAIR, false));
+        chatRepository.save(chat(GROUP, true));
+        chatMemberRepo.saveAll(List.of(new ChatMember(GROUP, 1L), new ChatMember(GROUP, 2L),
+                new ChatMember(GROUP, 3L)));
+    }
+
+    private void user(long id, String username) {
+        UserModel user = new UserModel();
+        user.setId(id);
+        user.setUsername(username);
+        user.setPassword("unused");
+        userRepo.save(user);
+    }
+
+    // Alice owns both; the two-party chat is with bob
+    private static ChatModelCreation chat(long chatId, boolean group) {
+        ChatModelCreation chat = new ChatModelCreation();
+        chat.setChatId(chatId);
+        chat.setOwnerId(1L);
+        chat.setReceiverId(2L);
+        chat.setGroupChat(group);
+        return chat;
+    }
+
+    private ChatSubscriptionRegistry registry(Duration membershipTtl) {
+        return new ChatSubscriptionRegistry(
+                new ChatMembershipService(chatRepository, chatMemberRepo, userRepo, membershipTtl, 100));
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String username, String subscriptionId,
+                                             String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        if (username != null) {
+            accessor.setUser(new UsernamePasswordAuthenticationToken(username, null));
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> unsubscribe(String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> send(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static String topic(long chatId) {
+        return ChatSubscriptionRegistry.CHAT_TOPIC_PREFIX + chatId;
+    }
+
+    @Test
+    void parsesOnlyPlainChatTopics() {
+        assertThat(ChatSubscriptionRegistry.chatIdOf("/topic/chat/42")).isEqualTo(42L);
+        assertThat(ChatSubscriptionRegistry.chatIdOf("/topic/chat/999999999999999999"))
+                .isEqualTo(999_999_999_999_999_999L);
+        assertThat(ChatSubscriptionRegistry.chatIdOf("/topic/chat/")).isNull();
+        assertThat(ChatSubscriptionRegistry.chatIdOf("/topic/chat/1000000000000000000")).isNull();
+        assertThat(ChatSubscriptionRegistry.chatIdOf("/topic/chat/4a")).isNull();
+        assertThat(ChatSubscriptionRegistry.chatIdOf("/topic/chat/*")).isNull();
+        assertThat(ChatSubscriptionRegistry.chatIdOf("/topic/chats/1")).isNull();
+        assertThat(ChatSubscriptionRegistry.chatIdOf(null)).isNull();
+    }
+
+    @Test
+    void findsAChatsSubscribersBySession() {
+        ChatSubscriptionRegistry registry = registry(Duration.ofMinutes(1));
+        registry.registerSubscription(subscribe("s1", "alice", "sub-1", topic(PAIR)));
+        registry.registerSubscription(subscribe("s1", "alice", "sub-2", topic(PAIR)));
+        registry.registerSubscription(subscribe("s2", "bob", "sub-1", topic(PAIR)));
+        registry.registerSubscription(subscribe("s2", "bob", "sub-2", topic(GROUP)));
+
+        assertThat(registry.findSubscriptions(send(topic(PAIR))))
+                .containsOnlyKeys("s1", "s2")
+                .containsEntry("s1", List.of("sub-1", "sub-2"))
+                .containsEntry("s2", List.of("sub-1"));
+        assertThat(registry.findSubscriptions(send(topic(GROUP)))).containsOnlyKeys("s2");
+        assertThat(registry.findSubscriptions(send(topic(3)))).isEmpty();
+        assertThat(registry.chatSubscriptionCount()).isEqualTo(4);
+    }
+
+    @Test
+    void leavesOtherDestinationsToTheDefaultRegistry() {
+        ChatSubscriptionRegistry registry = registry(Duration.ofMinutes(1));
+        registry.registerSubscription(subscribe("s1", "alice", "sub-1", "/queue/errors"));
+
+        assertThat(registry.findSubscriptions(send("/queue/errors"))).containsEntry("s1", List.of("sub-1"));
+        assertThat(registry.chatSubscriptionCount()).isZero();
+
+        registry.unregisterSubscription(unsubscribe("s1", "sub-1"));
+        assertThat(registry.findSubscriptions(send("/queue/errors"))).isEmpty();
+    }
+
+    @Test
+    void unregistersOneSubscriptionOrAWholeSession() {
+        ChatSubscriptionRegistry registry = registry(Duration.ofMinutes(1));
+        registry.registerSubscription(subscribe("s1", "alice", "sub-1", topic(PAIR)));
+        registry.registerSubscription(subscribe("s1", "alice", "sub-2", topic(GROUP)));
+        registry.registerSubscription(subscribe("s2", "bob", "sub-1", topic(PAIR)));
+
+        registry.unregisterSubscription(unsubscribe("s1", "sub-1"));
+        assertThat(registry.findSubscriptions(send(topic(PAIR)))).containsOnlyKeys("s2");
+        assertThat(registry.findSubscriptions(send(topic(GROUP)))).containsOnlyKeys("s1");
+
+        registry.unregisterAllSubscriptions("s1");
+        assertThat(registry.findSubscriptions(send(topic(GROUP)))).isEmpty();
+        assertThat(registry.chatSubscriptionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void revokeDropsOnlyThatUsersSubscriptionsOnTheChat() {
+        ChatSubscriptionRegistry registry = registry(Duration.ofMinutes(1));
+        registry.registerSubscription(subscribe("s1", "alice", "sub-1", topic(GROUP)));
+        registry.registerSubscription(subscribe("s2", "bob", "sub-1", topic(GROUP)));
+        registry.registerSubscription(subscribe("s3", "bob", "sub-1", topic(GROUP))); // Second tab
+        registry.registerSubscription(subscribe("s2", "bob", "sub-2", topic(PAIR)));
+
+        registry.revoke(GROUP, "bob");
+
+        assertThat(registry.findSubscriptions(send(topic(GROUP)))).containsOnlyKeys("s1");
+        assertThat(registry.findSubscriptions(send(topic(PAIR)))).containsOnlyKeys("s2");
+        assertThat(registry.chatSubscriptionCount()).isEqualTo(2);
+
+        // Unsubscribing what was revoked is harmless
+        registry.unregisterSubscription(unsubscribe("s2", "sub-1"));
+        assertThat(registry.findSubscriptions(send(topic(PAIR)))).containsOnlyKeys("s2");
+    }
+
+    @Test
+    void revokeAllDropsEverySubscriptionOnTheChat() {
+        ChatSubscriptionRegistry registry = registry(Duration.ofMinutes(1));
+        registry.registerSubscription(subscribe("s1", "alice", "sub-1", topic(GROUP)));
+        registry.registerSubscription(subscribe("s2", "bob", "sub-1", topic(GROUP)));
+        registry.registerSubscription(subscribe("s2", "bob", "sub-2", topic(PAIR)));
+
+        registry.revokeAll(GROUP);
+
+        assertThat(registry.findSubscriptions(send(topic(GROUP)))).isEmpty();
+        assertThat(registry.findSubscriptions(send(topic(PAIR)))).containsOnlyKeys("s2");
+        assertThat(registry.chatSubscriptionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void stopsDeliveringToMembersRemovedOnAnotherNodeOnceTheCacheReloads() {
+        // A zero TTL reloads membership on every lookup, as this node would once its entry expired
+        ChatSubscriptionRegistry registry = registry(Duration.ZERO);
+        registry.registerSubscription(subscribe("s1", "alice", "sub-1", topic(GROUP)));
+        registry.registerSubscription(subscribe("s2", "bob", "sub-1", topic(GROUP)));
+        registry.registerSubscription(subscribe("s3", "carol", "sub-1", topic(GROUP)));
+        assertThat(registry.findSubscriptions(send(topic(GROUP)))).containsOnlyKeys("s1", "s2", "s3");
+
+        // Another node removed bob and deleted the two-party chat; nothing was revoked here
+        chatMemberRepo.deleteByChatIdAndUserId(GROUP, 2L);
+        registry.registerSubscription(subscribe("s2", "bob", "sub-2", topic(PAIR)));
+        chatRepository.deleteByChatId(PAIR);
+
+        assertThat(registry.findSubscriptions(send(topic(GROUP)))).containsOnlyKeys("s1", "s3");
+        assertThat(registry.findSubscriptions(send(topic(PAIR)))).isEmpty();
+        assertThat(registry.chatSubscriptionCount()).isEqualTo(2);
+    }
+
+    @Test
+    void dropsChatSubscriptionsWithoutAUser() {
+        ChatSubscriptionRegistry registry = registry(Duration.ofMinutes(1));
+        registry.registerSubscription(subscribe("s1", null, "sub-1", topic(PAIR)));
+        registry.registerSubscription(subscribe("s2", "bob", "sub-1", topic(PAIR)));
+
+        assertThat(registry.findSubscriptions(send(topic(PAIR)))).containsOnlyKeys("s2");
+    }
+}
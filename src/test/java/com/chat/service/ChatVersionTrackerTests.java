@@ -0,0 +1,82 @@
+package com.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatVersionTrackerTests {
+
+    private static final byte[] BODY = "[]".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void remembersATagUntilTheKeyChanges() {
+        ChatVersionTracker tracker = new ChatVersionTracker(Duration.ofMinutes(1), 100);
+        String key = ChatVersionTracker.chatKey(1L);
+
+        String etag = tracker.tag(key, tracker.generation(), BODY);
+
+        assertThat(tracker.currentMatch(key, etag)).isEqualTo(etag);
+        assertThat(tracker.currentMatch(key, "W/" + etag + ", \"other\"")).isEqualTo(etag);
+        assertThat(tracker.currentMatch(key, "\"other\"")).isNull();
+        assertThat(tracker.currentMatch(ChatVersionTracker.chatKey(2L), etag)).isNull();
+
+        tracker.chatChanged(1L);
+        assertThat(tracker.currentMatch(key, etag)).isNull();
+    }
+
+    @Test
+    void doesNotRememberABodyReadBeforeAChange() {
+        ChatVersionTracker tracker = new ChatVersionTracker(Duration.ofMinutes(1), 100);
+        String key = ChatVersionTracker.inboxKey(7L);
+
+        long generation = tracker.generation();
+        tracker.inboxChanged(7L); // Lands while the body is being built
+        String etag = tracker.tag(key, generation, BODY);
+
+        assertThat(tracker.currentMatch(key, etag)).isNull();
+        // Changes to other keys don't matter
+        long next = tracker.generation();
+        tracker.inboxChanged(8L);
+        assertThat(tracker.currentMatch(key, tracker.tag(key, next, BODY))).isEqualTo(etag);
+    }
+
+    @Test
+    void zeroMaxAgeNeverAnswersFromMemory() {
+        ChatVersionTracker tracker = new ChatVersionTracker(Duration.ZERO, 100);
+        String key = ChatVersionTracker.chatKey(1L);
+
+        String etag = tracker.tag(key, tracker.generation(), BODY);
+
+        assertThat(tracker.currentMatch(key, etag)).isNull();
+    }
+
+    @Test
+    void staysBoundedAndStaysCorrectAfterForgettingChanges() {
+        ChatVersionTracker tracker = new ChatVersionTracker(Duration.ofMinutes(1), 2);
+        String key = ChatVersionTracker.chatKey(1L);
+
+        long before = tracker.generation();
+        for (long chatId = 1; chatId <= 10; chatId++) {
+            tracker.chatChanged(chatId);
+        }
+        // Chat 1's change may have been forgotten, but a body read before it is still not remembered
+        String stale = tracker.tag(key, before, BODY);
+        assertThat(tracker.currentMatch(key, stale)).isNull();
+
+        String fresh = tracker.tag(key, tracker.generation(), BODY);
+        assertThat(tracker.currentMatch(key, fresh)).isEqualTo(fresh);
+        for (long chatId = 2; chatId <= 10; chatId++) {
+            tracker.tag(ChatVersionTracker.chatKey(chatId), tracker.generation(), BODY);
+        }
+        int remembered = 0;
+        for (long chatId = 1; chatId <= 10; chatId++) {
+            if (tracker.currentMatch(ChatVersionTracker.chatKey(chatId), fresh) != null) {
+                remembered++;
+            }
+        }
+        assertThat(remembered).isLessThanOrEqualTo(2);
+    }
+}
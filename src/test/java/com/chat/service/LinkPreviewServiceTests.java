@@ -0,0 +1,278 @@
+package com.chat.service;
+
+import com.chat.loadtest.InMemoryChatMessageRepo;
+import com.chat.loadtest.InMemorySequenceBlockSource;
+import com.chat.model.ChatMessage;
+import com.chat.model.LinkPreview;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LinkPreviewServiceTests {
+
+    private static final String ARTICLE = """
+            <html><head>
+            <title>Fallback title</title>
+            <meta property="og:title" content="Release notes &amp; more">
+            <meta property="og:description" content='What changed in 2.0'>
+            <meta property="og:image" content="/img/cover.png">
+            <meta property="og:site_name" content="Stub">
+            </head><body>ignored</body></html>""";
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private String baseUrl;
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final AtomicInteger activeHolds = new AtomicInteger();
+    private final AtomicInteger maxActiveHolds = new AtomicInteger();
+
+    private InMemoryChatMessageRepo chatMessageRepo;
+    private final List<Message<?>> broadcasts = new CopyOnWriteArrayList<>();
+    private final List<LinkPreviewService> services = new ArrayList<>();
+    private final List<ChatSequenceAllocator> allocators = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/article", exchange -> respond(exchange, 200, "text/html; charset=utf-8", ARTICLE));
+        server.createContext("/missing", exchange -> respond(exchange, 404, "text/html", "nope"));
+        server.createContext("/image", exchange -> respond(exchange, 200, "image/png", "not html"));
+        server.createContext("/redirect", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/article");
+            respond(exchange, 302, "text/html", "");
+        });
+        server.createContext("/slow", exchange -> {
+            sleep(2000);
+            respond(exchange, 200, "text/html", ARTICLE);
+        });
+        server.createContext("/big", exchange -> respond(exchange, 200, "text/html",
+                "<html><head><title>Early</title>" + "x".repeat(100_000)
+                        + "<meta property=\"og:title\" content=\"Late\"></head></html>"));
+        server.createContext("/hold", exchange -> {
+            int active = activeHolds.incrementAndGet();
+            maxActiveHolds.accumulateAndGet(active, Math::max);
+            sleep(300);
+            activeHolds.decrementAndGet();
+            respond(exchange, 200, "text/html", ARTICLE);
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        chatMessageRepo = new InMemoryChatMessageRepo();
+    }
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(LinkPreviewService::shutdown);
+        allocators.forEach(ChatSequenceAllocator::shutdown);
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private LinkPreviewService service(boolean allowPrivateHosts) {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> broadcasts.add(message));
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        template.setMessageConverter(converter);
+        MessageBroadcaster broadcaster = new MessageBroadcaster(template, false, 5, 32,
+                MessageBroadcaster.DeliveryMode.TOPIC, null, new ChatVersionTracker(Duration.ofSeconds(30), 100_000));
+        ChatSequenceAllocator allocator = new ChatSequenceAllocator(new InMemorySequenceBlockSource(), 100,
+                Duration.ofDays(1), Duration.ofDays(1));
+        allocators.add(allocator);
+        LinkPreviewService service = new LinkPreviewService(chatMessageRepo, broadcaster, allocator, true, 4,
+                Duration.ofMillis(500), DataSize.ofKilobytes(16), 2, Duration.ofHours(1), Duration.ofMinutes(1),
+                100, allowPrivateHosts);
+        services.add(service);
+        return service;
+    }
+
+    private ChatMessage saved(String content) {
+        ChatMessage message = new ChatMessage(7L, "alice", content, "TEXT");
+        message.setSeq(1L);
+        return chatMessageRepo.save(message);
+    }
+
+    private static LinkPreview await(CompletableFuture<LinkPreview> future) throws Exception {
+        assertThat(future).isNotNull();
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void unfurlsOpenGraphTagsStoresThePreviewAndBroadcastsADelta() throws Exception {
+        LinkPreviewService service = service(true);
+        ChatMessage message = saved("look at " + baseUrl + "/article.");
+
+        LinkPreview preview = await(service.unfurl(message));
+
+        assertThat(preview.getTitle()).isEqualTo("Release notes & more");
+        assertThat(preview.getDescription()).isEqualTo("What changed in 2.0");
+        assertThat(preview.getImageUrl()).isEqualTo(baseUrl + "/img/cover.png");
+        assertThat(preview.getSiteName()).isEqualTo("Stub");
+        assertThat(chatMessageRepo.findById(message.getId()).orElseThrow().getLinkPreview()).isEqualTo(preview);
+        assertThat(chatMessageRepo.findById(message.getId()).orElseThrow().getChangeSeq()).isNotNull();
+        assertThat(broadcasts).hasSize(1);
+        String payload = new String((byte[]) broadcasts.get(0).getPayload(), StandardCharsets.UTF_8);
+        assertThat(payload).contains("\"op\":\"PREVIEW\"", "\"messageId\":\"" + message.getId() + "\"");
+        assertThat(payload).doesNotContain("\"sender\"");
+    }
+
+    @Test
+    void cachesPreviewsByUrl() throws Exception {
+        LinkPreviewService service = service(true);
+
+        await(service.unfurl(saved(baseUrl + "/article")));
+        LinkPreview second = await(service.unfurl(saved("again " + baseUrl + "/article")));
+
+        assertThat(second).isNotNull();
+        assertThat(hits.get("/article").get()).isEqualTo(1);
+        assertThat(broadcasts).hasSize(2);
+    }
+
+    @Test
+    void cachesFailuresToo() throws Exception {
+        LinkPreviewService service = service(true);
+
+        assertThat(await(service.unfurl(saved(baseUrl + "/missing")))).isNull();
+        assertThat(await(service.unfurl(saved(baseUrl + "/missing")))).isNull();
+        assertThat(await(service.unfurl(saved(baseUrl + "/image")))).isNull();
+
+        assertThat(hits.get("/missing").get()).isEqualTo(1);
+        assertThat(broadcasts).isEmpty();
+    }
+
+    @Test
+    void followsRedirects() throws Exception {
+        LinkPreview preview = await(service(true).unfurl(saved(baseUrl + "/redirect")));
+
+        assertThat(preview.getTitle()).isEqualTo("Release notes & more");
+        assertThat(hits.get("/article").get()).isEqualTo(1);
+    }
+
+    @Test
+    void givesUpOnSlowPages() throws Exception {
+        long start = System.nanoTime();
+
+        assertThat(await(service(true).unfurl(saved(baseUrl + "/slow")))).isNull();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+    }
+
+    @Test
+    void readsNoMoreThanTheSizeCap() throws Exception {
+        LinkPreview preview = await(service(true).unfurl(saved(baseUrl + "/big")));
+
+        assertThat(preview.getTitle()).isEqualTo("Early");
+    }
+
+    @Test
+    void limitsConcurrentFetchesPerHost() throws Exception {
+        LinkPreviewService service = service(true);
+        List<CompletableFuture<LinkPreview>> pending = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            pending.add(service.unfurl(saved(baseUrl + "/hold?page=" + i)));
+        }
+        for (CompletableFuture<LinkPreview> future : pending) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(hits.get("/hold").get()).isEqualTo(4);
+        assertThat(maxActiveHolds.get()).isEqualTo(2);
+    }
+
+    @Test
+    void refusesPrivateAddressesByDefault() throws Exception {
+        assertThat(await(service(false).unfurl(saved(baseUrl + "/article")))).isNull();
+
+        assertThat(hits).doesNotContainKey("/article");
+    }
+
+    @Test
+    void refusesHostNamesThatResolveToPrivateAddresses() throws Exception {
+        String byName = baseUrl.replace("127.0.0.1", "localhost");
+
+        assertThat(await(service(false).unfurl(saved(byName + "/article")))).isNull();
+
+        assertThat(hits).doesNotContainKey("/article");
+    }
+
+    @Test
+    void dropsAPreviewThatArrivesAfterTheMessageWasEdited() throws Exception {
+        LinkPreviewService service = service(true);
+        ChatMessage message = saved("slow one " + baseUrl + "/hold");
+
+        CompletableFuture<LinkPreview> pending = service.unfurl(message);
+        chatMessageRepo.updateContent(message.getId(), "no link any more", LocalDateTime.now(), 50L);
+
+        assertThat(await(pending)).isNull();
+        assertThat(chatMessageRepo.findById(message.getId()).orElseThrow().getLinkPreview()).isNull();
+        assertThat(broadcasts).isEmpty();
+    }
+
+    @Test
+    void editsAndDeletesDropTheStoredPreview() throws Exception {
+        LinkPreviewService service = service(true);
+        ChatMessage edited = saved(baseUrl + "/article");
+        ChatMessage deleted = saved("also " + baseUrl + "/article");
+        await(service.unfurl(edited));
+        await(service.unfurl(deleted));
+
+        chatMessageRepo.updateContent(edited.getId(), "changed", LocalDateTime.now(), 50L);
+        chatMessageRepo.markDeleted(deleted.getId(), 51L);
+
+        assertThat(chatMessageRepo.findById(edited.getId()).orElseThrow().getLinkPreview()).isNull();
+        assertThat(chatMessageRepo.findById(deleted.getId()).orElseThrow().getLinkPreview()).isNull();
+    }
+
+    @Test
+    void ignoresMessagesWithoutLinks() {
+        assertThat(service(true).unfurl(saved("no links here"))).isNull();
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        hits.computeIfAbsent(exchange.getRequestURI().getPath(), path -> new AtomicInteger()).incrementAndGet();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        } catch (IOException e) {
+            // The client hung up early, e.g. after reading up to its size cap
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginThrottleTests {
+
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    // Starts on a window boundary, so the fixed windows line up with the steps below
+    private final AtomicLong now = new AtomicLong(1000 * MINUTE);
+
+    private LoginThrottle throttle(int maxPerUsername, int maxPerIp) {
+        return new LoginThrottle(Duration.ofMinutes(1), maxPerUsername, maxPerIp, now::get);
+    }
+
+    private int allowed(LoginThrottle throttle, String username, String ip, int attempts) {
+        int allowed = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (throttle.tryAcquire(username, ip)) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    @Test
+    void limitsAttemptsPerUsernameAcrossAddressesAndCase() {
+        LoginThrottle throttle = throttle(3, 100);
+
+        assertThat(throttle.tryAcquire("alice", "10.0.0.1")).isTrue();
+        assertThat(throttle.tryAcquire("Alice", "10.0.0.2")).isTrue();
+        assertThat(throttle.tryAcquire("ALICE", "10.0.0.3")).isTrue();
+        assertThat(throttle.tryAcquire("alice", "10.0.0.4")).isFalse();
+
+        assertThat(throttle.tryAcquire("bob", "10.0.0.1")).isTrue();
+    }
+
+    @Test
+    void limitsAttemptsPerAddressAcrossUsernames() {
+        LoginThrottle throttle = throttle(100, 5);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(throttle.tryAcquire("user" + i, "10.0.0.1")).isTrue();
+        }
+        assertThat(throttle.tryAcquire("someone-else", "10.0.0.1")).isFalse();
+        assertThat(throttle.tryAcquire("someone-else", "10.0.0.2")).isTrue();
+    }
+
+    @Test
+    void theLockoutFadesAsTheWindowSlidesPastTheAttempts() {
+        LoginThrottle throttle = throttle(4, 100);
+        assertThat(allowed(throttle, "alice", "10.0.0.1", 4)).isEqualTo(4);
+
+        now.addAndGet(MINUTE - 1);
+        // Still within the minute; rejected tries are not counted, so hammering doesn't extend the lockout
+        assertThat(allowed(throttle, "alice", "10.0.0.1", 10)).isZero();
+
+        now.addAndGet(1);
+        // The earlier window still overlaps the sliding one completely
+        assertThat(throttle.tryAcquire("alice", "10.0.0.1")).isFalse();
+
+        now.addAndGet(MINUTE / 2);
+        // Half of it overlaps: 4 * 0.5 = 2 counted, room for 2 more
+        assertThat(allowed(throttle, "alice", "10.0.0.1", 5)).isEqualTo(2);
+
+        now.addAndGet(2 * MINUTE);
+        assertThat(allowed(throttle, "alice", "10.0.0.1", 5)).isEqualTo(4);
+    }
+
+    @Test
+    void retryAfterIsTheWindow() {
+        assertThat(throttle(1, 1).retryAfter()).isEqualTo(Duration.ofMinutes(1));
+    }
+}
@@ -0,0 +1,183 @@
+package com.chat.service;
+
+import com.chat.loadtest.InMemoryChatMessageRepo;
+import com.chat.loadtest.InMemoryChatRepository;
+import com.chat.loadtest.InMemoryMessageSegmentRepo;
+import com.chat.model.ChatMessage;
+import com.chat.model.ChatModelCreation;
+import com.chat.model.MessageSegment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageArchiveServiceTests {
+
+    private static final long CHAT = 1L;
+
+    private InMemoryChatRepository chatRepository;
+    private InMemoryChatMessageRepo chatMessageRepo;
+    private InMemoryMessageSegmentRepo segmentRepo;
+
+    @BeforeEach
+    void setUp() {
+        chatRepository = new InMemoryChatRepository();
+        chatMessageRepo = new InMemoryChatMessageRepo();
+        segmentRepo = new InMemoryMessageSegmentRepo();
+    }
+
+    // Cold after 30 days, three messages per segment, short tails sealed 7 days later still
+    private MessageArchiveService archiver(int defaultRetentionDays) {
+        return new MessageArchiveService(chatRepository, chatMessageRepo, segmentRepo,
+                Jackson2ObjectMapperBuilder.json().build(), new ChatVersionTracker(Duration.ofSeconds(30), 100_000),
+                false, Duration.ofDays(30), Duration.ofHours(1), 3, Duration.ofDays(7), defaultRetentionDays);
+    }
+
+    private ChatMessage store(long seq, int daysOld) {
+        ChatMessage message = new ChatMessage(CHAT, "alice", "message " + seq, "TEXT");
+        message.setSeq(seq);
+        message.setTimestamp(LocalDateTime.now().minusDays(daysOld).minusMinutes(1));
+        return chatMessageRepo.save(message);
+    }
+
+    private List<Long> hotSeqs() {
+        return chatMessageRepo.findByChatIdOrderBySeqAscTimestampAsc(CHAT).stream().map(ChatMessage::getSeq).toList();
+    }
+
+    private static List<Long> seqs(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getSeq).toList();
+    }
+
+    @Test
+    void sealsFullSegmentsOfColdMessagesAndKeepsAYoungTail() {
+        for (long seq = 1; seq <= 6; seq++) {
+            store(seq, 40);
+        }
+        store(7, 35); // Cold, but a short tail not yet past the partial-segment delay
+        store(8, 0);
+        MessageArchiveService archiver = archiver(0);
+
+        assertThat(archiver.archiveChat(CHAT)).isEqualTo(2);
+
+        assertThat(segmentRepo.findIndexByChatId(CHAT)).extracting(MessageSegment::getId)
+                .containsExactly("1:1", "1:4");
+        assertThat(seqs(archiver.readAll(CHAT))).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+        assertThat(hotSeqs()).containsExactly(7L, 8L);
+        assertThat(archiver.archiveChat(CHAT)).isZero();
+    }
+
+    @Test
+    void sealsAQuietChatsTailOncePastThePartialDelay() {
+        store(1, 40);
+        store(2, 38);
+        MessageArchiveService archiver = archiver(0);
+
+        assertThat(archiver.archiveChat(CHAT)).isEqualTo(1);
+
+        MessageSegment segment = segmentRepo.findById("1:1").orElseThrow();
+        assertThat(segment.getFirstSeq()).isEqualTo(1);
+        assertThat(segment.getLastSeq()).isEqualTo(2);
+        assertThat(segment.getMessageCount()).isEqualTo(2);
+        assertThat(hotSeqs()).isEmpty();
+    }
+
+    @Test
+    void deletesHotCopiesLeftByARunThatStoppedAfterSealing() {
+        List<ChatMessage> sealed = List.of(store(1, 40), store(2, 40), store(3, 40));
+        MessageArchiveService archiver = archiver(0);
+        archiver.archiveChat(CHAT);
+
+        // As if the node died between writing the segment and deleting the hot copies
+        sealed.forEach(chatMessageRepo::save);
+        assertThat(hotSeqs()).containsExactly(1L, 2L, 3L);
+
+        assertThat(archiver.archiveChat(CHAT)).isZero();
+
+        assertThat(hotSeqs()).isEmpty();
+        assertThat(segmentRepo.count()).isEqualTo(1);
+        assertThat(seqs(archiver.readAll(CHAT))).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void keepsAndLaterSealsMessagesThatBecameVisibleAfterTheirRange() {
+        store(1, 40);
+        store(3, 40);
+        store(4, 40);
+        MessageArchiveService archiver = archiver(0);
+        archiver.archiveChat(CHAT);
+
+        // Seq 2 was taken before seq 3 but stored after the range 1-4 was sealed
+        store(2, 40);
+        assertThat(hotSeqs()).containsExactly(2L);
+
+        assertThat(archiver.archiveChat(CHAT)).isEqualTo(1);
+
+        assertThat(hotSeqs()).isEmpty();
+        assertThat(segmentRepo.findIndexByChatId(CHAT)).extracting(MessageSegment::getId)
+                .containsExactly("1:1", "1:2");
+        assertThat(seqs(archiver.readAll(CHAT))).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(seqs(archiver.readAfterSeq(CHAT, 0, 2))).containsExactly(1L, 2L);
+        assertThat(seqs(archiver.readAfterSeq(CHAT, 1, 10))).containsExactly(2L, 3L, 4L);
+    }
+
+    @Test
+    void retentionDropsExpiredSegmentsAndHotMessagesButKeepsAStraddlingSegment() {
+        ChatModelCreation chat = new ChatModelCreation();
+        chat.setRetentionDays(45);
+        chatRepository.save(chat);
+        store(1, 60);
+        store(2, 60);
+        store(3, 60);
+        store(4, 60);
+        store(5, 50);
+        store(6, 40); // Segment 4-6 ends inside the limit
+        store(7, 10);
+        MessageArchiveService archiver = archiver(0);
+        archiver.archiveChat(CHAT);
+        chatMessageRepo.save(oldHot(8, 50)); // Stored after the pass
+
+        assertThat(archiver.applyRetention(chat)).isEqualTo(2);
+
+        assertThat(segmentRepo.findIndexByChatId(CHAT)).extracting(MessageSegment::getId).containsExactly("1:4");
+        assertThat(hotSeqs()).containsExactly(7L);
+    }
+
+    @Test
+    void retentionFallsBackToTheDefaultAndZeroKeepsEverything() {
+        ChatModelCreation chat = new ChatModelCreation();
+        chatRepository.save(chat);
+        store(1, 60);
+
+        assertThat(archiver(0).applyRetention(chat)).isZero();
+        assertThat(archiver(30).applyRetention(chat)).isEqualTo(1);
+        assertThat(hotSeqs()).isEmpty();
+    }
+
+    @Test
+    void archivePassAppliesRetentionThenSeals() {
+        ChatModelCreation chat = new ChatModelCreation();
+        chat.setRetentionDays(45);
+        chatRepository.save(chat);
+        store(1, 60);
+        store(2, 40);
+        store(3, 40);
+        store(4, 40);
+
+        archiver(0).archiveAll();
+
+        assertThat(segmentRepo.findIndexByChatId(CHAT)).extracting(MessageSegment::getId).containsExactly("1:2");
+        assertThat(hotSeqs()).isEmpty();
+    }
+
+    private static ChatMessage oldHot(long seq, int daysOld) {
+        ChatMessage message = new ChatMessage(CHAT, "bob", "message " + seq, "TEXT");
+        message.setSeq(seq);
+        message.setTimestamp(LocalDateTime.now().minusDays(daysOld));
+        return message;
+    }
+}
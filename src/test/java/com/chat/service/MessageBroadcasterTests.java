@@ -0,0 +1,134 @@
+package com.chat.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageBroadcasterTests {
+
+    private static final String TOPIC = "/topic/chat/7";
+
+    private final List<String> frames = new CopyOnWriteArrayList<>();
+    private final List<MessageBroadcaster> broadcasters = new ArrayList<>();
+    // When set, the first frame is held until the test releases it
+    private CountDownLatch sending;
+    private CountDownLatch release;
+
+    @AfterEach
+    void tearDown() {
+        if (release != null) {
+            release.countDown();
+        }
+        broadcasters.forEach(MessageBroadcaster::shutdown);
+    }
+
+    private MessageBroadcaster coalescing(long windowMs, int maxBatchSize) {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            if (sending != null && sending.getCount() > 0) {
+                sending.countDown();
+                await(release);
+            }
+            frames.add(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+            return true;
+        });
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        template.setMessageConverter(converter);
+        MessageBroadcaster broadcaster = new MessageBroadcaster(template, true, windowMs, maxBatchSize,
+                MessageBroadcaster.DeliveryMode.TOPIC, null, new ChatVersionTracker(Duration.ofSeconds(30), 100));
+        broadcasters.add(broadcaster);
+        return broadcaster;
+    }
+
+    @Test
+    void deliversPayloadsWithinTheWindowAsOneArray() throws Exception {
+        MessageBroadcaster broadcaster = coalescing(50, 32);
+
+        broadcaster.send(TOPIC, "a");
+        broadcaster.send(TOPIC, "b");
+        broadcaster.send("/topic/chat/8", "c");
+
+        waitForFrames(2);
+        assertThat(frames).containsExactlyInAnyOrder("[\"a\",\"b\"]", "[\"c\"]");
+        assertThat(broadcaster.pendingCount()).isZero();
+    }
+
+    @Test
+    void sendsAFullBatchAtOnceAndStartsTheNextPayloadInAFreshBatch() {
+        MessageBroadcaster broadcaster = coalescing(TimeUnit.MINUTES.toMillis(10), 2);
+
+        broadcaster.send(TOPIC, "a");
+        broadcaster.send(TOPIC, "b");
+        assertThat(frames).containsExactly("[\"a\",\"b\"]");
+        assertThat(broadcaster.pendingCount()).isZero();
+
+        broadcaster.send(TOPIC, "c");
+        assertThat(broadcaster.pendingCount()).isEqualTo(1);
+        assertThat(frames).hasSize(1);
+
+        broadcaster.flushPending();
+        assertThat(frames).containsExactly("[\"a\",\"b\"]", "[\"c\"]");
+    }
+
+    @Test
+    void framesForOneDestinationNeverOvertakeAFlushInProgress() throws Exception {
+        MessageBroadcaster broadcaster = coalescing(20, 2);
+        sending = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+
+        broadcaster.send(TOPIC, "a");
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue(); // The window's flush is now mid-send
+        CompletableFuture<Void> fullBatch = CompletableFuture.runAsync(() -> {
+            broadcaster.send(TOPIC, "b");
+            broadcaster.send(TOPIC, "c");
+        });
+
+        Thread.sleep(100);
+        assertThat(fullBatch).isNotDone();
+        release.countDown();
+        fullBatch.get(5, TimeUnit.SECONDS);
+        waitForFrames(2);
+        assertThat(frames).containsExactly("[\"a\"]", "[\"b\",\"c\"]");
+    }
+
+    @Test
+    void flushPendingSendsEveryOpenBatchNow() {
+        MessageBroadcaster broadcaster = coalescing(TimeUnit.MINUTES.toMillis(10), 32);
+
+        broadcaster.send(TOPIC, "a");
+        broadcaster.send("/user/alice/queue/messages", "b");
+        assertThat(frames).isEmpty();
+
+        broadcaster.flushPending();
+        assertThat(frames).containsExactlyInAnyOrder("[\"a\"]", "[\"b\"]");
+        assertThat(broadcaster.pendingCount()).isZero();
+    }
+
+    private void waitForFrames(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (frames.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
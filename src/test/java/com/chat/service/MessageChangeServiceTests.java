@@ -0,0 +1,173 @@
+package com.chat.service;
+
+import com.chat.loadtest.InMemoryChatMemberRepo;
+import com.chat.loadtest.InMemoryChatMessageRepo;
+import com.chat.loadtest.InMemoryChatRepository;
+import com.chat.loadtest.InMemoryMessageSegmentRepo;
+import com.chat.loadtest.InMemorySequenceBlockSource;
+import com.chat.loadtest.InMemoryUserRepo;
+import com.chat.model.ChatMessage;
+import com.chat.model.ChatModelCreation;
+import com.chat.model.UserModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageChangeServiceTests {
+
+    private static final long CHAT = 1L;
+
+    private final List<String> broadcasts = new CopyOnWriteArrayList<>();
+    private InMemoryChatMessageRepo chatMessageRepo;
+    private ChatSequenceAllocator allocator;
+    private LinkPreviewService linkPreviewService;
+    private MessageChangeService changes;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryChatRepository chatRepository = new InMemoryChatRepository();
+        InMemoryChatMemberRepo chatMemberRepo = new InMemoryChatMemberRepo();
+        InMemoryUserRepo userRepo = new InMemoryUserRepo(100L);
+        chatMessageRepo = new InMemoryChatMessageRepo();
+        user(userRepo, 1L, "alice");
+        user(userRepo, 2L, "bob");
+        user(userRepo, 3L, "carol");
+        ChatModelCreation chat = new ChatModelCreation();
+        chat.setChatId(CHAT);
+        chat.setOwnerId(1L);
+        chat.setReceiverId(2L);
+        chatRepository.save(chat);
+
+        ChatMembershipService membership = new ChatMembershipService(chatRepository, chatMemberRepo, userRepo,
+                Duration.ofMinutes(1), 100);
+        ChatVersionTracker versionTracker = new ChatVersionTracker(Duration.ofSeconds(30), 100);
+        ChatService chatService = new ChatService(chatRepository, userRepo, chatMessageRepo, chatMemberRepo,
+                membership, new ChatSubscriptionRegistry(membership), new InMemoryMessageSegmentRepo(), versionTracker);
+
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) ->
+                broadcasts.add(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)));
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        template.setMessageConverter(converter);
+        MessageBroadcaster broadcaster = new MessageBroadcaster(template, false, 5, 32,
+                MessageBroadcaster.DeliveryMode.TOPIC, null, versionTracker);
+        allocator = new ChatSequenceAllocator(new InMemorySequenceBlockSource(), 100, Duration.ofDays(1),
+                Duration.ofDays(1));
+        // Disabled: edits must still drop the old preview without fetching anything
+        linkPreviewService = new LinkPreviewService(chatMessageRepo, broadcaster, allocator, false, 1,
+                Duration.ofMillis(500), DataSize.ofKilobytes(16), 1, Duration.ofHours(1), Duration.ofMinutes(1),
+                100, false);
+        changes = new MessageChangeService(chatMessageRepo, chatService, allocator, broadcaster, linkPreviewService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        linkPreviewService.shutdown();
+        allocator.shutdown();
+    }
+
+    private static void user(InMemoryUserRepo userRepo, long id, String username) {
+        UserModel user = new UserModel();
+        user.setId(id);
+        user.setUsername(username);
+        user.setPassword("unused");
+        userRepo.save(user);
+    }
+
+    private String sent(String sender, String content) {
+        ChatMessage message = new ChatMessage(CHAT, sender, content, "TEXT");
+        message.setSeq(allocator.next(CHAT));
+        return chatMessageRepo.save(message).getId();
+    }
+
+    private ChatMessage stored(String id) {
+        return chatMessageRepo.findById(id).orElseThrow();
+    }
+
+    @Test
+    void editsTheSendersOwnMessageAndDropsItsPreview() {
+        String id = sent("alice", "see https://example.com/a");
+        chatMessageRepo.setLinkPreview(id, "see https://example.com/a", "https://example.com/a", "A", null, null,
+                null, allocator.next(CHAT));
+        assertThat(stored(id).getLinkPreview()).isNotNull();
+
+        assertThat(changes.edit(CHAT, id, "alice", "never mind")).isTrue();
+
+        ChatMessage message = stored(id);
+        assertThat(message.getContent()).isEqualTo("never mind");
+        assertThat(message.getEditedAt()).isNotNull();
+        assertThat(message.getLinkPreview()).isNull();
+        assertThat(message.getChangeSeq()).isGreaterThan(message.getSeq());
+        assertThat(broadcasts).singleElement().asString().contains("\"op\":\"EDIT\"", "\"content\":\"never mind\"");
+    }
+
+    @Test
+    void cannotEditOrDeleteSomeoneElsesMessage() {
+        String id = sent("alice", "hello");
+
+        assertThatThrownBy(() -> changes.edit(CHAT, id, "bob", "hijacked")).isInstanceOf(AccessDeniedException.class);
+        assertThatThrownBy(() -> changes.delete(CHAT, id, "bob")).isInstanceOf(AccessDeniedException.class);
+        // Not a member of the chat at all
+        assertThatThrownBy(() -> changes.react(CHAT, id, "carol", "👍", true))
+                .isInstanceOf(AccessDeniedException.class);
+
+        ChatMessage message = stored(id);
+        assertThat(message.getContent()).isEqualTo("hello");
+        assertThat(message.getDeleted()).isNull();
+        assertThat(message.getChangeSeq()).isNull();
+        assertThat(broadcasts).isEmpty();
+    }
+
+    @Test
+    void aTombstoneCannotBeEditedDeletedOrReactedTo() {
+        String id = sent("alice", "oops");
+        assertThat(changes.delete(CHAT, id, "alice")).isTrue();
+        Long deletedAt = stored(id).getChangeSeq();
+
+        assertThat(changes.edit(CHAT, id, "alice", "back again")).isFalse();
+        assertThat(changes.delete(CHAT, id, "alice")).isFalse();
+        assertThat(changes.react(CHAT, id, "bob", "👍", true)).isFalse();
+
+        ChatMessage message = stored(id);
+        assertThat(message.getDeleted()).isTrue();
+        assertThat(message.getContent()).isNull();
+        assertThat(message.getReactions()).isEmpty();
+        assertThat(message.getChangeSeq()).isEqualTo(deletedAt);
+        assertThat(broadcasts).singleElement().asString().contains("\"op\":\"DELETE\"");
+    }
+
+    @Test
+    void repeatedReactionsChangeAndBroadcastOnce() {
+        String id = sent("alice", "lunch?");
+
+        assertThat(changes.react(CHAT, id, "bob", "👍", true)).isTrue();
+        assertThat(changes.react(CHAT, id, "bob", "👍", true)).isFalse();
+        assertThat(stored(id).getReactions()).hasSize(1);
+
+        assertThat(changes.react(CHAT, id, "bob", "👍", false)).isTrue();
+        assertThat(changes.react(CHAT, id, "bob", "👍", false)).isFalse();
+        assertThat(stored(id).getReactions()).isEmpty();
+
+        // Added again after the remove, it counts as a change
+        assertThat(changes.react(CHAT, id, "bob", "👍", true)).isTrue();
+        assertThat(stored(id).getReactions()).hasSize(1);
+
+        assertThat(broadcasts).hasSize(3);
+        assertThat(broadcasts.get(0)).contains("\"op\":\"REACT\"", "\"user\":\"bob\"");
+        assertThat(broadcasts.get(1)).contains("\"op\":\"UNREACT\"");
+        assertThat(broadcasts.get(2)).contains("\"op\":\"REACT\"");
+    }
+}
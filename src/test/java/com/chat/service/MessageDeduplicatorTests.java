@@ -0,0 +1,108 @@
+package com.chat.service;
+
+import com.chat.loadtest.InMemoryChatMessageRepo;
+import com.chat.model.ChatMessage;
+import com.chat.model.MessageAck;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageDeduplicatorTests {
+
+    private InMemoryChatMessageRepo chatMessageRepo;
+
+    @BeforeEach
+    void setUp() {
+        chatMessageRepo = new InMemoryChatMessageRepo();
+    }
+
+    private ChatMessage store(Long chatId, String sender, String clientMessageId, long seq) {
+        ChatMessage message = new ChatMessage(chatId, sender, "hi", "TEXT");
+        message.setClientMessageId(clientMessageId);
+        message.setSeq(seq);
+        return chatMessageRepo.save(message);
+    }
+
+    @Test
+    void validatesClientMessageIds() {
+        assertThat(MessageDeduplicator.isValid("c-1")).isTrue();
+        assertThat(MessageDeduplicator.isValid(" ")).isFalse();
+        assertThat(MessageDeduplicator.isValid("x".repeat(MessageDeduplicator.MAX_CLIENT_MESSAGE_ID_LENGTH))).isTrue();
+        assertThat(MessageDeduplicator.isValid("x".repeat(MessageDeduplicator.MAX_CLIENT_MESSAGE_ID_LENGTH + 1)))
+                .isFalse();
+    }
+
+    @Test
+    void remembersStoredMessagesAsDuplicates() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(chatMessageRepo, Duration.ofMinutes(10), 100);
+        ChatMessage saved = store(1L, "alice", "c-1", 7);
+
+        assertThat(deduplicator.recentAck(1L, "alice", "c-1")).isNull();
+        deduplicator.remember(saved);
+
+        MessageAck ack = deduplicator.recentAck(1L, "alice", "c-1");
+        assertThat(ack.isDuplicate()).isTrue();
+        assertThat(ack.getId()).isEqualTo(saved.getId());
+        assertThat(ack.getSeq()).isEqualTo(7);
+        // The key is per chat and sender
+        assertThat(deduplicator.recentAck(2L, "alice", "c-1")).isNull();
+        assertThat(deduplicator.recentAck(1L, "bob", "c-1")).isNull();
+    }
+
+    @Test
+    void forgetsEntriesPastTheWindow() throws InterruptedException {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(chatMessageRepo, Duration.ofMillis(50), 100);
+        deduplicator.remember(store(1L, "alice", "c-1", 1));
+
+        Thread.sleep(100);
+
+        assertThat(deduplicator.recentAck(1L, "alice", "c-1")).isNull();
+    }
+
+    @Test
+    void evictsTheEldestPastMaxEntries() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(chatMessageRepo, Duration.ofMinutes(10), 2);
+        deduplicator.remember(store(1L, "alice", "c-1", 1));
+        deduplicator.remember(store(1L, "alice", "c-2", 2));
+        deduplicator.remember(store(1L, "alice", "c-3", 3));
+
+        assertThat(deduplicator.recentAck(1L, "alice", "c-1")).isNull();
+        assertThat(deduplicator.recentAck(1L, "alice", "c-2")).isNotNull();
+        assertThat(deduplicator.recentAck(1L, "alice", "c-3")).isNotNull();
+    }
+
+    @Test
+    void storedAckFindsACopyThisNodeDoesNotRemember() {
+        // Stored by another node, or before this node's window
+        MessageDeduplicator deduplicator = new MessageDeduplicator(chatMessageRepo, Duration.ofMinutes(10), 100);
+        ChatMessage saved = store(1L, "alice", "c-1", 4);
+        assertThat(deduplicator.recentAck(1L, "alice", "c-1")).isNull();
+
+        MessageAck ack = deduplicator.storedAck(1L, "alice", "c-1");
+
+        assertThat(ack.isDuplicate()).isTrue();
+        assertThat(ack.getId()).isEqualTo(saved.getId());
+        assertThat(ack.getSeq()).isEqualTo(4);
+        // Remembered from then on
+        assertThat(deduplicator.recentAck(1L, "alice", "c-1")).isNotNull();
+        assertThat(deduplicator.storedAck(1L, "alice", "c-2")).isNull();
+    }
+
+    @Test
+    void storedAckFindsTheCopyAfterARacingInsertFails() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(chatMessageRepo, Duration.ofMinutes(10), 100);
+        ChatMessage original = store(1L, "alice", "c-1", 1);
+
+        assertThatThrownBy(() -> store(1L, "alice", "c-1", 2)).isInstanceOf(DuplicateKeyException.class);
+
+        MessageAck ack = deduplicator.storedAck(1L, "alice", "c-1");
+        assertThat(ack.getId()).isEqualTo(original.getId());
+        assertThat(ack.getSeq()).isEqualTo(1);
+        assertThat(ack.isDuplicate()).isTrue();
+    }
+}
@@ -1,19 +0,0 @@
-package com.chat.service;
-
-import com.chat.repo.UserRepo;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.stereotype.Service;
-
-@Service
-public class UserService {
-    @Autowired
-    private final UserRepo userRepo;
-
-    @Autowired
-    private BCryptPasswordEncoder passwordEncoder;
-
-    public UserService(UserRepo userRepo) {
-        this.userRepo = userRepo;
-    }
-}
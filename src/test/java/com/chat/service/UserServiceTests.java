@@ -0,0 +1,48 @@
+package com.chat.service;
+
+import com.chat.loadtest.InMemoryChatRepository;
+import com.chat.loadtest.InMemoryUserRepo;
+import com.chat.loadtest.LoadTestTransactionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserServiceTests {
+
+    private UsernameIndex usernameIndex;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        // The in-memory repo seeds the AI user as GeminiAI, like data.sql
+        InMemoryUserRepo userRepo = new InMemoryUserRepo(0L);
+        usernameIndex = new UsernameIndex(userRepo, Duration.ofDays(1), 256, 3);
+        userService = new UserService(userRepo, new BCryptPasswordEncoder(4), new InMemoryChatRepository(),
+                new TransactionTemplate(new LoadTestTransactionManager()), usernameIndex);
+        ReflectionTestUtils.setField(userService, "aiUserId", 0L);
+        usernameIndex.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        usernameIndex.shutdown();
+    }
+
+    @Test
+    void searchLeavesOutTheRequesterAndTheAiUser() {
+        for (String username : new String[]{"Gemma", "gerd", "Geoff", "george"}) {
+            assertThat(userService.registerUser(username, "secret")).isTrue();
+        }
+
+        // A full page even though GeminiAI and the requester both match
+        assertThat(userService.searchUsernames("ge", 3, "gerd")).containsExactly("Gemma", "Geoff", "george");
+        assertThat(userService.searchUsernames("gem", 3, "george")).containsExactly("Gemma");
+    }
+}
@@ -0,0 +1,103 @@
+package com.chat.service;
+
+import com.chat.loadtest.InMemoryUserRepo;
+import com.chat.model.UserModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsernameIndexTests {
+
+    private InMemoryUserRepo userRepo;
+    private final List<UsernameIndex> indexes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userRepo = new InMemoryUserRepo(0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        indexes.forEach(UsernameIndex::shutdown);
+    }
+
+    private void register(String... usernames) {
+        for (String username : usernames) {
+            UserModel user = new UserModel();
+            user.setUsername(username);
+            user.setPassword("unused");
+            userRepo.save(user);
+        }
+    }
+
+    // Refreshes only when asked, so each test decides what the table holds at load time
+    private UsernameIndex index(int maxPending, int maxResults) {
+        UsernameIndex index = new UsernameIndex(userRepo, Duration.ofDays(1), maxPending, maxResults);
+        indexes.add(index);
+        index.reload();
+        return index;
+    }
+
+    @Test
+    void matchesPrefixesIgnoringCaseUpToTheRunsEnd() {
+        register("ak", "Al", "al", "alb", "ALZ", "am", "Alice");
+        UsernameIndex index = index(256, 20);
+
+        assertThat(index.search("AL", 20, Set.of())).containsExactly("Al", "al", "alb", "Alice", "ALZ");
+        assertThat(index.search("alz", 20, Set.of())).containsExactly("ALZ");
+        assertThat(index.search("alzz", 20, Set.of())).isEmpty();
+        assertThat(index.search("a", 20, Set.of())).startsWith("ak").endsWith("am");
+        // Below the first name and past the last
+        assertThat(index.search("0", 20, Set.of())).isEmpty();
+        assertThat(index.search("zz", 20, Set.of())).isEmpty();
+    }
+
+    @Test
+    void mergesAddedNamesWithTheTableWithoutDuplicates() {
+        register("bob", "dave");
+        UsernameIndex index = index(256, 20);
+
+        index.add("carol");
+        index.add("Bobby");
+        index.add("bob"); // Already loaded
+        register("carol", "erin"); // Another node registered erin; carol is this node's own
+        index.reload();
+
+        assertThat(index.search("", 20, Set.of())).containsExactly("bob", "Bobby", "carol", "dave", "erin",
+                "GeminiAI");
+        assertThat(index.size()).isEqualTo(6);
+    }
+
+    @Test
+    void foldsPendingNamesInOnceTheOverflowIsFull() {
+        register("anna", "cleo");
+        UsernameIndex index = index(2, 20);
+
+        index.add("bea");
+        assertThat(index.search("", 20, Set.of())).containsExactly("anna", "bea", "cleo", "GeminiAI");
+        index.add("Abe"); // Fills the overflow: merged into the main array
+        index.add("dan");
+
+        assertThat(index.search("", 20, Set.of())).containsExactly("Abe", "anna", "bea", "cleo", "dan", "GeminiAI");
+        assertThat(index.search("a", 20, Set.of())).containsExactly("Abe", "anna");
+        assertThat(index.size()).isEqualTo(6);
+    }
+
+    @Test
+    void leavesOutExcludedNamesWithoutComingUpShort() {
+        register("sam1", "sam2", "sam3", "sam4", "sam5");
+        UsernameIndex index = index(256, 3);
+
+        assertThat(index.search("sam", 3, Set.of("sam1", "sam3"))).containsExactly("sam2", "sam4", "sam5");
+        // The cap still applies to larger limits
+        assertThat(index.search("sam", 10, Set.of("sam2"))).containsExactly("sam1", "sam3", "sam4");
+        assertThat(index.search("sam", 0, Set.of())).containsExactly("sam1");
+    }
+}
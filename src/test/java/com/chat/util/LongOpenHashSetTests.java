@@ -0,0 +1,150 @@
+package com.chat.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongOpenHashSetTests {
+
+    // Sixteen slots and room for eight values before the first rehash
+    private static final int EXPECTED_SIZE = 9;
+    private static final int MASK = 15;
+
+    // Mirrors LongOpenHashSet.slot so the tests can build probe runs on purpose
+    private static int home(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & MASK;
+    }
+
+    private static List<Long> valuesWithHome(int slot, int count) {
+        List<Long> values = new ArrayList<>();
+        for (long value = 1; values.size() < count; value++) {
+            if (home(value) == slot) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    @Test
+    void addsAndRemovesValues() {
+        LongOpenHashSet set = new LongOpenHashSet();
+
+        assertThat(set.add(42)).isTrue();
+        assertThat(set.add(42)).isFalse();
+        assertThat(set.add(-7)).isTrue();
+        assertThat(set.contains(42)).isTrue();
+        assertThat(set.contains(-7)).isTrue();
+        assertThat(set.contains(43)).isFalse();
+        assertThat(set.size()).isEqualTo(2);
+
+        assertThat(set.remove(42)).isTrue();
+        assertThat(set.remove(42)).isFalse();
+        assertThat(set.contains(42)).isFalse();
+        assertThat(set.contains(-7)).isTrue();
+        assertThat(set.size()).isEqualTo(1);
+        assertThat(set.isEmpty()).isFalse();
+    }
+
+    @Test
+    void tracksZeroApartFromTheFreeSlotMarker() {
+        LongOpenHashSet set = LongOpenHashSet.of(5);
+
+        assertThat(set.contains(0)).isFalse();
+        assertThat(set.add(0)).isTrue();
+        assertThat(set.add(0)).isFalse();
+        assertThat(set.contains(0)).isTrue();
+        assertThat(set.size()).isEqualTo(2);
+        assertThat(set.toArray()).containsExactlyInAnyOrder(0L, 5L);
+
+        assertThat(set.remove(0)).isTrue();
+        assertThat(set.remove(0)).isFalse();
+        assertThat(set.contains(0)).isFalse();
+        assertThat(set.toArray()).containsExactly(5L);
+    }
+
+    @Test
+    void keepsProbeRunsThatWrapAroundTheEndIntact() {
+        // Three values homed in the last slot fill 15, 0 and 1; one homed in slot 0 is pushed to 2
+        List<Long> last = valuesWithHome(MASK, 3);
+        long first = valuesWithHome(0, 1).get(0);
+        LongOpenHashSet set = new LongOpenHashSet(EXPECTED_SIZE);
+        last.forEach(set::add);
+        set.add(first);
+
+        assertThat(set.contains(first)).isTrue();
+        last.forEach(value -> assertThat(set.contains(value)).isTrue());
+
+        // Removing the head of the run has to shift the wrapped entries back, without stranding 'first'
+        assertThat(set.remove(last.get(0))).isTrue();
+        assertThat(set.contains(last.get(0))).isFalse();
+        assertThat(set.contains(last.get(1))).isTrue();
+        assertThat(set.contains(last.get(2))).isTrue();
+        assertThat(set.contains(first)).isTrue();
+
+        // And from the middle of the run, past the wrap
+        assertThat(set.remove(last.get(1))).isTrue();
+        assertThat(set.contains(last.get(2))).isTrue();
+        assertThat(set.contains(first)).isTrue();
+        assertThat(set.size()).isEqualTo(2);
+    }
+
+    @Test
+    void keepsEverythingAcrossRehashes() {
+        LongOpenHashSet set = new LongOpenHashSet(0);
+        for (long value = -500; value <= 500; value++) {
+            set.add(value * 31);
+        }
+
+        assertThat(set.size()).isEqualTo(1001);
+        for (long value = -500; value <= 500; value++) {
+            assertThat(set.contains(value * 31)).isTrue();
+            assertThat(set.contains(value * 31 + 1)).isFalse();
+        }
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        LongOpenHashSet original = LongOpenHashSet.of(0, 1, 2, 3);
+        LongOpenHashSet copy = original.copy();
+
+        copy.remove(1);
+        copy.add(4);
+        for (long value = 100; value < 200; value++) {
+            copy.add(value); // Rehashes the copy only
+        }
+
+        assertThat(original.toArray()).containsExactlyInAnyOrder(0L, 1L, 2L, 3L);
+        assertThat(copy.contains(1)).isFalse();
+        assertThat(copy.contains(0)).isTrue();
+        assertThat(copy.contains(4)).isTrue();
+        assertThat(copy.size()).isEqualTo(104);
+    }
+
+    @Test
+    void matchesAHashSetUnderRandomChurn() {
+        Random random = new Random(7);
+        LongOpenHashSet set = new LongOpenHashSet();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            long value = random.nextInt(512) - 256; // Small range so collisions, zero and removals are frequent
+            if (random.nextBoolean()) {
+                assertThat(set.add(value)).isEqualTo(expected.add(value));
+            } else {
+                assertThat(set.remove(value)).isEqualTo(expected.remove(value));
+            }
+        }
+
+        assertThat(set.size()).isEqualTo(expected.size());
+        assertThat(set.toArray()).containsExactlyInAnyOrder(expected.stream().mapToLong(Long::longValue).toArray());
+        for (long value = -256; value < 256; value++) {
+            assertThat(set.contains(value)).isEqualTo(expected.contains(value));
+        }
+    }
+}